@@ -0,0 +1,35 @@
+package com.abiogenesis.benchmark;
+
+import com.abiogenesis.model.AminoAcidMolecule;
+import com.abiogenesis.simulation.PrimordialSoup;
+import java.util.random.RandomGenerator;
+
+/**
+ * Builds reproducible soups for the benchmarks.
+ */
+final class BenchmarkSoups {
+    static final long SEED = 42L;
+
+    private BenchmarkSoups() {
+    }
+
+    /**
+     * Creates a seeded soup filled with random chains up to the given population, which also becomes its cap.
+     * The area grows with the population so that density stays close to the GUI default.
+     * @param population The number of chains.
+     * @return The populated soup.
+     */
+    static PrimordialSoup create(int population) {
+        int side = (int) Math.max(600, Math.sqrt(population * 10_000.0));
+        PrimordialSoup soup = new PrimordialSoup(side, side, 300.0, 7.0, SEED);
+        soup.setMaxAminoAcids(population);
+        RandomGenerator random = soup.getRandom();
+        while (soup.getMolecules().size() < population) {
+            AminoAcidMolecule aa = AminoAcidMolecule.generateRandom(5, 20, random);
+            aa.getPosition().setX(random.nextDouble() * (side - 1));
+            aa.getPosition().setY(random.nextDouble() * (side - 1));
+            soup.addMolecule(aa);
+        }
+        return soup;
+    }
+}
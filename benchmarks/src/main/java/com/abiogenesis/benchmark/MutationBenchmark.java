@@ -0,0 +1,62 @@
+package com.abiogenesis.benchmark;
+
+import com.abiogenesis.model.AminoAcidMolecule;
+import com.abiogenesis.model.SplitMixRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the AminoAcidMolecule mutation and crossover operators for several chain lengths.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MutationBenchmark {
+    @Param({"5", "20", "100"})
+    private int length;
+
+    private SplitMixRandom random;
+    private AminoAcidMolecule chain;
+    private AminoAcidMolecule partner;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        random = new SplitMixRandom(BenchmarkSoups.SEED);
+        chain = AminoAcidMolecule.generateRandom(length, length, random);
+        partner = AminoAcidMolecule.generateRandom(length, length, random);
+    }
+
+    @Benchmark
+    public AminoAcidMolecule substitution() {
+        return chain.mutateSubstitution(random);
+    }
+
+    @Benchmark
+    public AminoAcidMolecule insertion() {
+        return chain.mutateInsertion(random);
+    }
+
+    @Benchmark
+    public AminoAcidMolecule deletion() {
+        return chain.mutateDeletion(random);
+    }
+
+    @Benchmark
+    public AminoAcidMolecule crossover() {
+        return chain.crossover(partner, random);
+    }
+}
@@ -0,0 +1,84 @@
+package com.abiogenesis.benchmark;
+
+import com.abiogenesis.model.AminoAcidMolecule;
+import com.abiogenesis.model.AminoAcidSequence;
+import com.abiogenesis.model.Molecule;
+import com.abiogenesis.model.SplitMixRandom;
+import com.abiogenesis.simulation.MotifMatcher;
+import com.abiogenesis.simulation.PrimordialSoup;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures scanning every chain of a population for the target pattern, and for a larger motif set
+ * with the Aho-Corasick matcher used by the soup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatternScanBenchmark {
+    private static final AminoAcidSequence TARGET_PATTERN = AminoAcidSequence.of("METHINKS");
+
+    @Param({"1000", "100000"})
+    private int population;
+
+    @Param({"1", "100"})
+    private int motifCount;
+
+    private List<AminoAcidSequence> sequences;
+    private MotifMatcher matcher;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PrimordialSoup soup = BenchmarkSoups.create(population);
+        sequences = new ArrayList<>();
+        for (Molecule molecule : soup.getMolecules()) {
+            if (molecule instanceof AminoAcidMolecule) {
+                sequences.add(((AminoAcidMolecule) molecule).getPackedSequence());
+            }
+        }
+        List<String> motifs = new ArrayList<>();
+        motifs.add("METHINKS");
+        SplitMixRandom random = new SplitMixRandom(BenchmarkSoups.SEED);
+        while (motifs.size() < motifCount) {
+            motifs.add(AminoAcidSequence.random(4 + random.nextInt(5), random).toString());
+        }
+        matcher = new MotifMatcher(motifs);
+    }
+
+    @Benchmark
+    public int containsTargetPattern() {
+        int hits = 0;
+        for (AminoAcidSequence sequence : sequences) {
+            if (sequence.contains(TARGET_PATTERN)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int matchMotifSet() {
+        int[] hits = {0};
+        for (AminoAcidSequence sequence : sequences) {
+            matcher.scan(sequence, (motifIndex, end) -> hits[0]++);
+        }
+        return hits[0];
+    }
+}
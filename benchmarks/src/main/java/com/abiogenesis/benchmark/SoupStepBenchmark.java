@@ -0,0 +1,57 @@
+package com.abiogenesis.benchmark;
+
+import com.abiogenesis.simulation.PrimordialSoup;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a full soup step and the Brownian motion pass at several population sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SoupStepBenchmark {
+    @Param({"1000", "10000", "100000"})
+    private int population;
+
+    @Param({"1"})
+    private int threads;
+
+    private PrimordialSoup soup;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        soup = BenchmarkSoups.create(population);
+        soup.setParallelism(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        soup.close();
+    }
+
+    @Benchmark
+    public void simulateStep() {
+        soup.simulateStep();
+    }
+
+    @Benchmark
+    public void moveMolecules() {
+        soup.moveMolecules();
+    }
+}
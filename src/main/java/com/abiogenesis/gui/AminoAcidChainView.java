@@ -1,6 +1,7 @@
 package com.abiogenesis.gui;
 
 import com.abiogenesis.model.AminoAcidChainGenerator;
+import com.abiogenesis.model.SplitMixRandom;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -11,6 +12,7 @@ import java.util.List;
 public class AminoAcidChainView {
     private static final int CHAIN_COUNT = 20;
     private VBox chainBox;
+    private final SplitMixRandom random = new SplitMixRandom(System.nanoTime());
 
     public void show(Stage stage) {
         chainBox = new VBox(5);
@@ -30,7 +32,7 @@ public class AminoAcidChainView {
 
     private void displayChains() {
         chainBox.getChildren().clear();
-        List<String> chains = AminoAcidChainGenerator.generateRandomChains(CHAIN_COUNT);
+        List<String> chains = AminoAcidChainGenerator.generateRandomChains(CHAIN_COUNT, random);
         for (String chain : chains) {
             Label label = new Label(chain);
             label.setStyle("-fx-font-size: 16px; -fx-text-fill: #b3e5fc; -fx-font-family: 'monospace';");
@@ -8,6 +8,7 @@ import javafx.stage.Stage;
 import com.abiogenesis.simulation.PrimordialSoup;
 import com.abiogenesis.model.Molecule;
 import com.abiogenesis.model.Atom;
+import java.util.List;
 
 public class Launcher extends Application {
     @Override
@@ -19,22 +20,15 @@ public class Launcher extends Application {
             // Launch Molecule Simulation with initialized molecules
             PrimordialSoup soup = new PrimordialSoup(800, 600, 300.0, 7.0);
             for (int i = 0; i < 50; i++) {
-                Molecule water = new Molecule("H2O", 1.0);
-                water.addAtom(new Atom("H", 1, 1.008));
-                water.addAtom(new Atom("H", 1, 1.008));
-                water.addAtom(new Atom("O", 8, 15.999));
-                water.getPosition().setX(Math.random() * soup.getWidth());
-                water.getPosition().setY(Math.random() * soup.getHeight());
+                Molecule water = new Molecule("H2O", 1.0, List.of(Atom.HYDROGEN, Atom.HYDROGEN, Atom.OXYGEN));
+                water.getPosition().setX(soup.getRandom().nextDouble() * soup.getWidth());
+                water.getPosition().setY(soup.getRandom().nextDouble() * soup.getHeight());
                 soup.addMolecule(water);
 
-                Molecule methane = new Molecule("CH4", 1.5);
-                methane.addAtom(new Atom("C", 6, 12.011));
-                methane.addAtom(new Atom("H", 1, 1.008));
-                methane.addAtom(new Atom("H", 1, 1.008));
-                methane.addAtom(new Atom("H", 1, 1.008));
-                methane.addAtom(new Atom("H", 1, 1.008));
-                methane.getPosition().setX(Math.random() * soup.getWidth());
-                methane.getPosition().setY(Math.random() * soup.getHeight());
+                Molecule methane = new Molecule("CH4", 1.5,
+                    List.of(Atom.CARBON, Atom.HYDROGEN, Atom.HYDROGEN, Atom.HYDROGEN, Atom.HYDROGEN));
+                methane.getPosition().setX(soup.getRandom().nextDouble() * soup.getWidth());
+                methane.getPosition().setY(soup.getRandom().nextDouble() * soup.getHeight());
                 soup.addMolecule(methane);
             }
             SimulationView simView = new SimulationView(soup);
@@ -0,0 +1,283 @@
+package com.abiogenesis.gui;
+
+import com.abiogenesis.simulation.FrameSnapshot;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Renders frame snapshots into a {@link WritableImage} backed by an {@code int[]} through a
+ * {@link PixelBuffer}, so a whole frame reaches the canvas with a single drawImage call.
+ *
+ * Each molecule is a blit of a pre-rendered sprite (core disc plus glow halo, premultiplied ARGB) looked up by
+ * colour and size bucket; sprites are built once and reused for every frame. Above a population threshold,
+ * individual sprites stop being readable anyway, so the renderer switches to a density heatmap that costs
+ * one increment per molecule.
+ */
+public class MoleculeRenderer {
+    /**
+     * How molecules are drawn.
+     */
+    public enum Mode {
+        /** Sprites up to the population threshold, heatmap above it. */
+        AUTO,
+        /** Always draw individual sprites. */
+        SPRITES,
+        /** Always draw the density heatmap. */
+        HEATMAP
+    }
+
+    // Background colour (premultiplied ARGB)
+    private static final int BACKGROUND = 0xFF0A0A14;
+    // Population above which AUTO mode switches to the heatmap
+    private static final int HEATMAP_THRESHOLD = 20_000;
+    // Side of a heatmap cell in pixels
+    private static final int HEATMAP_CELL = 4;
+    // Sprites are bucketed by whole-pixel core diameter, up to this size
+    private static final int MAX_SPRITE_SIZE = 48;
+    // Radius of the glow halo relative to the core, and its opacity
+    private static final double GLOW_SCALE = 1.4;
+    private static final double GLOW_ALPHA = 0.3;
+    // Heatmap colour ramp, indexed by scaled log density
+    private static final int[] HEAT_RAMP = buildHeatRamp();
+
+    private int width;
+    private int height;
+    private int[] pixels = new int[0];
+    private PixelBuffer<IntBuffer> buffer;
+    private WritableImage image;
+    private int[] density = new int[0];
+    private final Map<Long, Sprite> sprites = new HashMap<>();
+    private Mode mode = Mode.AUTO;
+
+    /**
+     * A pre-rendered molecule: a square of premultiplied ARGB pixels centred on the molecule.
+     */
+    private static final class Sprite {
+        final int size;
+        final int[] pixels;
+
+        Sprite(int size, int[] pixels) {
+            this.size = size;
+            this.pixels = pixels;
+        }
+    }
+
+    /**
+     * Renders a frame. Must be called on the FX thread.
+     * @param frame The frame to draw.
+     * @param baseSize The core diameter of a molecule with zero energy.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @return The image holding the rendered frame (reused across calls of the same size).
+     */
+    public WritableImage render(FrameSnapshot frame, double baseSize, int width, int height) {
+        paint(frame, baseSize, width, height);
+        if (image == null) {
+            buffer = new PixelBuffer<>(this.width, this.height, IntBuffer.wrap(pixels), PixelFormat.getIntArgbPreInstance());
+            image = new WritableImage(buffer);
+        }
+        buffer.updateBuffer(b -> null);
+        return image;
+    }
+
+    /**
+     * Renders a frame into the pixel array only; the image is wrapped around it by {@link #render}.
+     * @param frame The frame to draw.
+     * @param baseSize The core diameter of a molecule with zero energy.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @return The premultiplied ARGB pixels, row by row.
+     */
+    int[] paint(FrameSnapshot frame, double baseSize, int width, int height) {
+        ensureSize(Math.max(1, width), Math.max(1, height));
+        boolean heatmap = mode == Mode.HEATMAP || (mode == Mode.AUTO && frame.getCount() > HEATMAP_THRESHOLD);
+        if (heatmap) {
+            renderHeatmap(frame);
+        } else {
+            renderSprites(frame, baseSize);
+        }
+        return pixels;
+    }
+
+    private void ensureSize(int width, int height) {
+        if (pixels.length > 0 && width == this.width && height == this.height) return;
+        this.width = width;
+        this.height = height;
+        pixels = new int[width * height];
+        // Rewrapped around the new array on the next render
+        buffer = null;
+        image = null;
+    }
+
+    private void renderSprites(FrameSnapshot frame, double baseSize) {
+        Arrays.fill(pixels, BACKGROUND);
+        double[] xs = frame.getXArray();
+        double[] ys = frame.getYArray();
+        double[] energies = frame.getEnergyArray();
+        int[] colors = frame.getColorArray();
+        for (int i = 0, n = frame.getCount(); i < n; i++) {
+            int bucket = (int) Math.round(baseSize + energies[i] * 2);
+            bucket = Math.max(1, Math.min(MAX_SPRITE_SIZE, bucket));
+            Sprite sprite = sprite(colors[i], bucket);
+            int half = sprite.size / 2;
+            blit(sprite, (int) Math.round(xs[i]) - half, (int) Math.round(ys[i]) - half);
+        }
+    }
+
+    private Sprite sprite(int argb, int coreSize) {
+        long key = ((long) argb << 8) | coreSize;
+        Sprite sprite = sprites.get(key);
+        if (sprite == null) {
+            sprite = createSprite(argb, coreSize);
+            sprites.put(key, sprite);
+        }
+        return sprite;
+    }
+
+    /**
+     * Draws the same picture as the original two fillOval calls: a glow disc at 30% opacity under a core disc,
+     * with one pixel of anti-aliasing at each edge.
+     */
+    private static Sprite createSprite(int argb, int coreSize) {
+        double coreRadius = coreSize * 0.5;
+        double glowRadius = coreRadius * GLOW_SCALE;
+        int size = (int) Math.ceil(glowRadius * 2) + 1;
+        double centre = size * 0.5;
+        double baseAlpha = ((argb >>> 24) & 0xFF) / 255.0;
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+        int[] pixels = new int[size * size];
+        for (int py = 0; py < size; py++) {
+            for (int px = 0; px < size; px++) {
+                double distance = Math.hypot(px + 0.5 - centre, py + 0.5 - centre);
+                double core = coverage(coreRadius - distance);
+                double glow = coverage(glowRadius - distance) * GLOW_ALPHA;
+                double alpha = (core + glow * (1 - core)) * baseAlpha;
+                pixels[py * size + px] = premultiply(alpha, r, g, b);
+            }
+        }
+        return new Sprite(size, pixels);
+    }
+
+    private static double coverage(double edgeDistance) {
+        return Math.max(0.0, Math.min(1.0, edgeDistance + 0.5));
+    }
+
+    private static int premultiply(double alpha, int r, int g, int b) {
+        int a = (int) Math.round(alpha * 255);
+        return a << 24
+            | (int) Math.round(r * alpha) << 16
+            | (int) Math.round(g * alpha) << 8
+            | (int) Math.round(b * alpha);
+    }
+
+    /**
+     * Composites a sprite over the image (premultiplied source-over), clipped to the image bounds.
+     */
+    private void blit(Sprite sprite, int left, int top) {
+        int size = sprite.size;
+        int x0 = Math.max(0, left);
+        int y0 = Math.max(0, top);
+        int x1 = Math.min(width, left + size);
+        int y1 = Math.min(height, top + size);
+        int[] src = sprite.pixels;
+        for (int y = y0; y < y1; y++) {
+            int srcRow = (y - top) * size - left;
+            int dstRow = y * width;
+            for (int x = x0; x < x1; x++) {
+                int s = src[srcRow + x];
+                int sa = s >>> 24;
+                if (sa == 0) continue;
+                if (sa == 255) {
+                    pixels[dstRow + x] = s;
+                    continue;
+                }
+                int d = pixels[dstRow + x];
+                int inv = 255 - sa;
+                int a = sa + ((d >>> 24) * inv + 127) / 255;
+                int r = ((s >> 16) & 0xFF) + (((d >> 16) & 0xFF) * inv + 127) / 255;
+                int g = ((s >> 8) & 0xFF) + (((d >> 8) & 0xFF) * inv + 127) / 255;
+                int b = (s & 0xFF) + ((d & 0xFF) * inv + 127) / 255;
+                pixels[dstRow + x] = a << 24 | r << 16 | g << 8 | b;
+            }
+        }
+    }
+
+    private void renderHeatmap(FrameSnapshot frame) {
+        int cols = (width + HEATMAP_CELL - 1) / HEATMAP_CELL;
+        int rows = (height + HEATMAP_CELL - 1) / HEATMAP_CELL;
+        int cells = cols * rows;
+        if (density.length < cells) {
+            density = new int[cells];
+        } else {
+            Arrays.fill(density, 0, cells, 0);
+        }
+        double[] xs = frame.getXArray();
+        double[] ys = frame.getYArray();
+        int max = 0;
+        for (int i = 0, n = frame.getCount(); i < n; i++) {
+            int col = (int) (xs[i] / HEATMAP_CELL);
+            int row = (int) (ys[i] / HEATMAP_CELL);
+            if (col < 0 || col >= cols || row < 0 || row >= rows) continue;
+            int count = ++density[row * cols + col];
+            if (count > max) max = count;
+        }
+        // Log scale, so sparse regions stay visible next to dense clusters
+        double scale = max > 0 ? (HEAT_RAMP.length - 1) / Math.log1p(max) : 0;
+        for (int row = 0; row < rows; row++) {
+            int y0 = row * HEATMAP_CELL;
+            int y1 = Math.min(height, y0 + HEATMAP_CELL);
+            for (int col = 0; col < cols; col++) {
+                int count = density[row * cols + col];
+                int color = count == 0 ? BACKGROUND : HEAT_RAMP[(int) (Math.log1p(count) * scale)];
+                int x0 = col * HEATMAP_CELL;
+                int x1 = Math.min(width, x0 + HEATMAP_CELL);
+                for (int y = y0; y < y1; y++) {
+                    Arrays.fill(pixels, y * width + x0, y * width + x1, color);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds a 256-entry ramp from the background through blue, magenta and orange to white.
+     */
+    private static int[] buildHeatRamp() {
+        int[][] stops = {
+            {0x0A, 0x0A, 0x14}, {0x20, 0x30, 0xA0}, {0xB0, 0x30, 0xB0}, {0xFF, 0x90, 0x20}, {0xFF, 0xFF, 0xFF}
+        };
+        int[] ramp = new int[256];
+        for (int i = 0; i < ramp.length; i++) {
+            double t = (double) i / (ramp.length - 1) * (stops.length - 1);
+            int stop = Math.min(stops.length - 2, (int) t);
+            double f = t - stop;
+            int r = (int) Math.round(stops[stop][0] + (stops[stop + 1][0] - stops[stop][0]) * f);
+            int g = (int) Math.round(stops[stop][1] + (stops[stop + 1][1] - stops[stop][1]) * f);
+            int b = (int) Math.round(stops[stop][2] + (stops[stop + 1][2] - stops[stop][2]) * f);
+            ramp[i] = 0xFF000000 | r << 16 | g << 8 | b;
+        }
+        return ramp;
+    }
+
+    /**
+     * Gets the rendering mode.
+     * @return The mode.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Sets the rendering mode.
+     * @param mode The mode.
+     */
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+}
@@ -0,0 +1,48 @@
+package com.abiogenesis.gui;
+
+import com.abiogenesis.simulation.TrajectoryReplay;
+import javafx.application.Application;
+import javafx.stage.Stage;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Plays back a recorded trajectory in the simulation view, without re-running the simulation:
+ *
+ * <pre>
+ * java com.abiogenesis.gui.ReplayLauncher &lt;trajectory directory&gt; [start step]
+ * </pre>
+ */
+public class ReplayLauncher extends Application {
+    private TrajectoryReplay replay;
+
+    @Override
+    public void start(Stage primaryStage) throws IOException {
+        List<String> args = getParameters().getRaw();
+        if (args.isEmpty()) {
+            System.err.println("Usage: ReplayLauncher <trajectory directory> [start step]");
+            System.exit(2);
+        }
+        replay = new TrajectoryReplay(Paths.get(args.get(0)));
+        if (args.size() > 1) {
+            replay.seek(Long.parseLong(args.get(1)));
+        }
+        System.out.printf("Replaying steps %d to %d (%d keyframes)%n",
+            replay.getFirstStep(), replay.getLastStep(), replay.getKeyframeCount());
+        SimulationView view = new SimulationView(replay.getSoup(), replay::next);
+        view.show(primaryStage);
+        primaryStage.setOnCloseRequest(event -> view.stop());
+    }
+
+    @Override
+    public void stop() throws IOException {
+        if (replay != null) {
+            replay.close();
+        }
+    }
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
@@ -0,0 +1,218 @@
+package com.abiogenesis.gui;
+
+import com.abiogenesis.simulation.PrimordialSoup;
+import javafx.application.Platform;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a PrimordialSoup on its own thread at a fixed simulation rate, independently of rendering.
+ *
+ * The loop advances in ticks of 1/stepsPerSecond seconds; each tick runs stepsPerFrame steps, so the
+ * multiplier fast-forwards without changing the tick rate. If the simulation falls behind (a slow step,
+ * a paused debugger), it catches up by running the missed ticks, but never more than
+ * {@link #MAX_CATCH_UP_TICKS} at once; the rest of the backlog is dropped rather than spiralling.
+ * A rate of zero or less runs flat out.
+ *
+ * Rendering is decoupled: a frame snapshot is published and a draw requested at most once per display
+ * frame, and only when the previous draw has run, so at most one draw is ever queued on the FX thread
+ * and a slow renderer simply skips frames instead of backing up the queue.
+ */
+public class SimulationLoop {
+    // Most ticks run back-to-back to catch up after the loop fell behind
+    private static final int MAX_CATCH_UP_TICKS = 5;
+    // Interval between published frames (about 60 per second)
+    private static final long FRAME_NANOS = 1_000_000_000L / 60;
+
+    private final PrimordialSoup soup;
+    private final Runnable step;
+    private final Runnable draw;
+    private final Runnable tick;
+    private final AtomicBoolean drawPending = new AtomicBoolean();
+    private final AtomicLong stepsRun = new AtomicLong();
+    private volatile double stepsPerSecond = 60.0;
+    private volatile int stepsPerFrame = 1;
+    private volatile boolean running;
+    // Size requested from the FX thread, applied between steps; -1 when there is none
+    private volatile long pendingSize = -1;
+    private Thread thread;
+
+    /**
+     * Creates a loop for a soup.
+     * @param soup The soup to advance.
+     * @param draw Draws the latest snapshot; run on the FX thread.
+     * @param tick Run on the simulation thread after each batch of steps (for example to print statistics).
+     */
+    public SimulationLoop(PrimordialSoup soup, Runnable draw, Runnable tick) {
+        this(soup, soup::simulateStep, draw, tick);
+    }
+
+    /**
+     * Creates a loop that advances a soup some other way than by simulating it, for example by replaying
+     * a recorded trajectory into it.
+     * @param soup The soup whose snapshots are published.
+     * @param step Advances the soup by one step; run on the simulation thread.
+     * @param draw Draws the latest snapshot; run on the FX thread.
+     * @param tick Run on the simulation thread after each batch of steps.
+     */
+    public SimulationLoop(PrimordialSoup soup, Runnable step, Runnable draw, Runnable tick) {
+        this.soup = soup;
+        this.step = step;
+        this.draw = draw;
+        this.tick = tick;
+    }
+
+    /**
+     * Starts the simulation thread. Does nothing if the loop is already running.
+     */
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this::run, "simulation-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the simulation thread after its current step.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            thread = null;
+        }
+    }
+
+    private void run() {
+        long last = System.nanoTime();
+        long lastFrame = last - FRAME_NANOS;
+        long accumulated = 0;
+        while (running) {
+            applyPendingSize();
+            double rate = stepsPerSecond;
+            long now = System.nanoTime();
+            int ticks;
+            long tickNanos = 0;
+            if (rate <= 0) {
+                ticks = 1;
+                accumulated = 0;
+            } else {
+                tickNanos = Math.max(1, (long) (1e9 / rate));
+                accumulated += now - last;
+                long due = accumulated / tickNanos;
+                if (due > MAX_CATCH_UP_TICKS) {
+                    // Too far behind: run the cap and forget the rest of the backlog
+                    ticks = MAX_CATCH_UP_TICKS;
+                    accumulated = 0;
+                } else {
+                    ticks = (int) due;
+                    accumulated -= due * tickNanos;
+                }
+            }
+            last = now;
+
+            int multiplier = stepsPerFrame;
+            for (int t = 0; t < ticks && running; t++) {
+                for (int s = 0; s < multiplier; s++) {
+                    step.run();
+                }
+                stepsRun.addAndGet(multiplier);
+            }
+            if (ticks > 0) {
+                tick.run();
+                now = System.nanoTime();
+                if (now - lastFrame >= FRAME_NANOS && !drawPending.get()) {
+                    lastFrame = now;
+                    soup.publishSnapshot();
+                    requestDraw();
+                }
+            }
+            if (rate > 0) {
+                LockSupport.parkNanos(tickNanos - accumulated);
+            }
+        }
+    }
+
+    private void requestDraw() {
+        if (drawPending.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                drawPending.set(false);
+                draw.run();
+            });
+        }
+    }
+
+    private void applyPendingSize() {
+        long size = pendingSize;
+        if (size >= 0) {
+            pendingSize = -1;
+            int width = (int) (size >>> 32);
+            int height = (int) size;
+            if (width != soup.getWidth()) soup.setWidth(width);
+            if (height != soup.getHeight()) soup.setHeight(height);
+        }
+    }
+
+    /**
+     * Asks the simulation thread to resize the soup before its next step.
+     * Safe to call from any thread; only the latest request is applied.
+     * @param width The new width.
+     * @param height The new height.
+     */
+    public void requestResize(int width, int height) {
+        pendingSize = ((long) width << 32) | (height & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the number of ticks per second.
+     * @return The tick rate, or zero or less when running flat out.
+     */
+    public double getStepsPerSecond() {
+        return stepsPerSecond;
+    }
+
+    /**
+     * Sets the number of ticks per second.
+     * @param stepsPerSecond The tick rate; zero or less runs as fast as possible.
+     */
+    public void setStepsPerSecond(double stepsPerSecond) {
+        this.stepsPerSecond = stepsPerSecond;
+    }
+
+    /**
+     * Gets the number of steps run per tick.
+     * @return The fast-forward multiplier.
+     */
+    public int getStepsPerFrame() {
+        return stepsPerFrame;
+    }
+
+    /**
+     * Sets the number of steps run per tick, for fast-forward.
+     * @param stepsPerFrame The multiplier (at least 1).
+     */
+    public void setStepsPerFrame(int stepsPerFrame) {
+        if (stepsPerFrame < 1) {
+            throw new IllegalArgumentException("Steps per frame must be at least 1: " + stepsPerFrame);
+        }
+        this.stepsPerFrame = stepsPerFrame;
+    }
+
+    /**
+     * Returns the number of steps run since the loop was created.
+     * @return The step count.
+     */
+    public long getStepsRun() {
+        return stepsRun.get();
+    }
+
+    /**
+     * Checks whether the simulation thread is running.
+     * @return True if running.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -2,40 +2,74 @@ package com.abiogenesis.gui;
 
 import com.abiogenesis.model.Molecule;
 import com.abiogenesis.model.AminoAcidMolecule;
+import com.abiogenesis.simulation.FrameSnapshot;
+import com.abiogenesis.simulation.PopulationCounters;
 import com.abiogenesis.simulation.PrimordialSoup;
-import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.scene.control.Tooltip;
 import javafx.stage.Stage;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.List;
-import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SimulationView {
     private final PrimordialSoup soup;
     private final Canvas canvas;
     private final GraphicsContext gc;
-    private boolean isRunning = false;
-    private static final int FPS = 60; // Increased FPS for smoother animation
+    private final SimulationLoop loop;
+    private static final int STEPS_PER_SECOND = 60;
+    // Upper bound for the fast-forward multiplier
+    private static final int MAX_STEPS_PER_FRAME = 1024;
     private static final double BASE_MOLECULE_SIZE = 6.0;
+    // How far from the cursor to look for a molecule when showing tooltips
+    private static final double HIT_SEARCH_RADIUS = 40.0;
+    // Chain colours by length; the hue wraps every 18 residues (20 degrees per residue)
+    private static final int[] CHAIN_COLORS = new int[18];
+    private static final int H2O_COLOR = toArgb(Color.AQUA);
+    private static final int CH4_COLOR = toArgb(Color.LIGHTGREEN);
+    private static final int CH3OH_COLOR = toArgb(Color.PURPLE);
+    private static final int DEFAULT_COLOR = toArgb(Color.WHITE);
+
+    static {
+        for (int i = 0; i < CHAIN_COLORS.length; i++) {
+            CHAIN_COLORS[i] = toArgb(Color.hsb(i * 20, 0.8, 1.0));
+        }
+    }
     
     // Debug statistics
-    private long lastFrameTime = 0;
-    private int frameCount = 0;
+    private final AtomicInteger framesDrawn = new AtomicInteger();
+    private long lastStatsSteps = 0;
     private long lastStatsTime = 0;
-    private Map<String, Integer> moleculeCounts = new HashMap<>();
     private Tooltip moleculeTooltip = new Tooltip();
+    private final MoleculeRenderer renderer = new MoleculeRenderer();
 
     public SimulationView(PrimordialSoup soup) {
+        this(soup, soup::simulateStep);
+    }
+
+    /**
+     * Creates a view whose soup is advanced by a custom step, such as a trajectory replay.
+     * @param soup The soup to display.
+     * @param step Advances the soup by one step; run on the simulation thread.
+     */
+    public SimulationView(PrimordialSoup soup, Runnable step) {
         this.soup = soup;
         this.canvas = new Canvas(soup.getWidth(), soup.getHeight());
         this.gc = canvas.getGraphicsContext2D();
         setupCanvas();
+        // Colours are resolved on the simulation thread when a frame is published
+        soup.setColorScheme(SimulationView::colorOf);
+        this.loop = new SimulationLoop(soup, step, this::draw, this::updateDebugStats);
+        loop.setStepsPerSecond(STEPS_PER_SECOND);
+        // Announce each tracked motif the first time it emerges
+        soup.getMotifTracker().addListener(hit -> {
+            if (hit.isFirstSighting()) {
+                System.out.println(hit);
+            }
+        });
     }
 
     private void setupCanvas() {
@@ -54,13 +88,13 @@ public class SimulationView {
         scene.widthProperty().addListener((obs, oldVal, newVal) -> {
             double width = newVal.doubleValue();
             canvas.setWidth(width);
-            soup.setWidth((int) width);
+            loop.requestResize((int) width, (int) canvas.getHeight());
             draw();
         });
         scene.heightProperty().addListener((obs, oldVal, newVal) -> {
             double height = newVal.doubleValue();
             canvas.setHeight(height);
-            soup.setHeight((int) height);
+            loop.requestResize((int) canvas.getWidth(), (int) height);
             draw();
         });
 
@@ -69,28 +103,29 @@ public class SimulationView {
             double x = event.getX();
             double y = event.getY();
             boolean found = false;
-            for (Molecule molecule : new ArrayList<>(soup.getMolecules())) {
-                double moleculeX = molecule.getPosition().getX();
-                double moleculeY = molecule.getPosition().getY();
-                double size = BASE_MOLECULE_SIZE + (molecule.getEnergy() * 2);
+            // Hit-test against the last published frame, never the live soup
+            FrameSnapshot frame = soup.getLatestSnapshot();
+            int index = frame.nearest(x, y, HIT_SEARCH_RADIUS);
+            if (index >= 0) {
+                Molecule molecule = frame.getMolecule(index);
+                double moleculeX = frame.getXArray()[index];
+                double moleculeY = frame.getYArray()[index];
+                double energy = frame.getEnergyArray()[index];
+                double size = BASE_MOLECULE_SIZE + (energy * 2);
                 if (Math.hypot(x - moleculeX, y - moleculeY) < size) {
                     StringBuilder tooltipText = new StringBuilder();
                     if (molecule instanceof AminoAcidMolecule) {
                         AminoAcidMolecule aa = (AminoAcidMolecule) molecule;
                         tooltipText.append(String.format("Amino Acid Chain\n"));
                         tooltipText.append(String.format("Sequence: %s\n", aa.getSequence()));
-                        tooltipText.append(String.format("Length: %d\n", aa.getSequence().length()));
+                        tooltipText.append(String.format("Length: %d\n", aa.getLength()));
                     } else {
                         tooltipText.append(String.format("Molecule: %s\n", molecule.getName()));
                     }
-                    tooltipText.append(String.format("Energy: %.2f\n", molecule.getEnergy()));
-                    tooltipText.append(String.format("Position: (%.1f, %.1f)\n", 
-                        molecule.getPosition().getX(), molecule.getPosition().getY()));
+                    tooltipText.append(String.format("Energy: %.2f\n", energy));
+                    tooltipText.append(String.format("Position: (%.1f, %.1f)\n", moleculeX, moleculeY));
                     tooltipText.append("\nAtomic Composition:\n");
-                    Map<String, Integer> atomCounts = new HashMap<>();
-                    molecule.getAtoms().forEach(atom -> 
-                        atomCounts.merge(atom.getElement(), 1, Integer::sum));
-                    atomCounts.forEach((element, count) -> 
+                    molecule.getElementCounts().forEach((element, count) -> 
                         tooltipText.append(String.format("  %s: %d\n", element, count)));
                     
                     if (!(molecule instanceof AminoAcidMolecule)) {
@@ -111,7 +146,6 @@ public class SimulationView {
                     moleculeTooltip.setStyle("-fx-font-size: 12px;");
                     moleculeTooltip.show(canvas, event.getScreenX() + 10, event.getScreenY() + 10);
                     found = true;
-                    break;
                 }
             }
             if (!found) {
@@ -122,56 +156,62 @@ public class SimulationView {
         // Hide tooltip when mouse exits canvas
         canvas.setOnMouseExited(event -> moleculeTooltip.hide());
 
+        // '+' and '-' change the fast-forward multiplier, 'F' toggles running flat out,
+        // 'H' cycles the rendering mode (automatic, sprites, heatmap)
+        scene.setOnKeyPressed(event -> {
+            switch (event.getCode()) {
+                case PLUS:
+                case EQUALS:
+                case ADD:
+                    loop.setStepsPerFrame(Math.min(MAX_STEPS_PER_FRAME, loop.getStepsPerFrame() * 2));
+                    break;
+                case MINUS:
+                case SUBTRACT:
+                    loop.setStepsPerFrame(Math.max(1, loop.getStepsPerFrame() / 2));
+                    break;
+                case F:
+                    loop.setStepsPerSecond(loop.getStepsPerSecond() > 0 ? 0 : STEPS_PER_SECOND);
+                    break;
+                case H:
+                    MoleculeRenderer.Mode[] modes = MoleculeRenderer.Mode.values();
+                    renderer.setMode(modes[(renderer.getMode().ordinal() + 1) % modes.length]);
+                    draw();
+                    break;
+                default:
+                    break;
+            }
+        });
+
         // Start simulation loop
         startSimulation();
     }
 
     private void startSimulation() {
-        isRunning = true;
-        lastFrameTime = System.nanoTime();
         lastStatsTime = System.nanoTime();
-        
-        new Thread(() -> {
-            while (isRunning) {
-                long currentTime = System.nanoTime();
-                long frameTime = currentTime - lastFrameTime;
-                lastFrameTime = currentTime;
-                
-                soup.simulateStep();
-                Platform.runLater(this::draw);
-                
-                // Update debug statistics
-                updateDebugStats();
-                
-                try {
-                    Thread.sleep(Math.max(0, (1000 / FPS) - (frameTime / 1_000_000)));
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-        }).start();
+        // Show the initial state before the first tick
+        soup.publishSnapshot();
+        loop.start();
     }
 
+    /**
+     * Prints statistics once per second. Runs on the simulation thread, so it can read the soup safely.
+     */
     private void updateDebugStats() {
-        frameCount++;
         long currentTime = System.nanoTime();
         
-        // Update molecule counts
-        moleculeCounts.clear();
-        for (Molecule molecule : soup.getMolecules()) {
-            moleculeCounts.merge(molecule.getName(), 1, Integer::sum);
-        }
-        
         // Print statistics every second
         if (currentTime - lastStatsTime >= 1_000_000_000) { // 1 second in nanoseconds
-            double fps = frameCount * 1_000_000_000.0 / (currentTime - lastStatsTime);
+            double seconds = (currentTime - lastStatsTime) / 1_000_000_000.0;
+            long steps = loop.getStepsRun();
             System.out.println("\n=== Simulation Statistics ===");
-            System.out.printf("FPS: %.2f%n", fps);
+            System.out.printf("FPS: %.2f%n", framesDrawn.getAndSet(0) / seconds);
+            System.out.printf("Steps/sec: %.1f (x%d per tick)%n", (steps - lastStatsSteps) / seconds, loop.getStepsPerFrame());
+            // Counts are maintained incrementally by the soup, so reading them is cheap
+            PopulationCounters counters = soup.getPopulationCounters();
             System.out.println("Molecule Counts:");
-            moleculeCounts.forEach((name, count) -> 
+            counters.getNameCounts().forEach((name, count) -> 
                 System.out.printf("  %s: %d%n", name, count));
-            System.out.printf("Total Molecules: %d%n", soup.getMolecules().size());
+            System.out.printf("Total Molecules: %d%n", counters.getTotal());
             System.out.printf("Temperature: %.1fK%n", soup.getTemperature());
             System.out.printf("pH: %.1f%n", soup.getPH());
             System.out.printf("Total Reactions: %d%n", soup.getTotalReactions());
@@ -179,59 +219,58 @@ public class SimulationView {
             System.out.println("========================\n");
             
             // Reset counters
-            frameCount = 0;
+            lastStatsSteps = steps;
             lastStatsTime = currentTime;
         }
     }
 
     private void draw() {
-        // Clear canvas with a dark background
-        gc.setFill(Color.rgb(10, 10, 20)); // Dark blue-black background
-        gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
-
-        // Create a thread-safe copy of molecules for drawing
-        List<Molecule> moleculesCopy = new ArrayList<>(soup.getMolecules());
-
-        // Draw molecules with glow effect
-        for (Molecule molecule : moleculesCopy) {
-            double x = molecule.getPosition().getX();
-            double y = molecule.getPosition().getY();
-            double size = BASE_MOLECULE_SIZE + (molecule.getEnergy() * 2);
-            
-            // Determine molecule color
-            Color color;
-            if (molecule instanceof AminoAcidMolecule) {
-                AminoAcidMolecule aa = (AminoAcidMolecule) molecule;
-                // Color based on chain length
-                double hue = (aa.getSequence().length() * 20) % 360;
-                color = Color.hsb(hue, 0.8, 1.0);
-            } else {
-                switch (molecule.getName()) {
-                    case "H2O":
-                        color = Color.AQUA;
-                        break;
-                    case "CH4":
-                        color = Color.LIGHTGREEN;
-                        break;
-                    case "CH3OH":
-                        color = Color.PURPLE;
-                        break;
-                    default:
-                        color = Color.WHITE;
-                }
-            }
+        framesDrawn.incrementAndGet();
+        // Render the latest published frame off-screen, then hand it to the canvas in one call
+        FrameSnapshot frame = soup.getLatestSnapshot();
+        WritableImage image = renderer.render(frame, BASE_MOLECULE_SIZE, (int) canvas.getWidth(), (int) canvas.getHeight());
+        gc.drawImage(image, 0, 0);
+    }
 
-            // Draw glow effect
-            gc.setFill(color.deriveColor(1, 1, 1, 0.3));
-            gc.fillOval(x - size * 0.7, y - size * 0.7, size * 1.4, size * 1.4);
-            
-            // Draw molecule
-            gc.setFill(color);
-            gc.fillOval(x - size * 0.5, y - size * 0.5, size, size);
+    /**
+     * Determines a molecule's colour: chains by length, small molecules by name.
+     * Called on the simulation thread for every molecule of every published frame.
+     * @param molecule The molecule.
+     * @return The colour as 0xAARRGGBB.
+     */
+    private static int colorOf(Molecule molecule) {
+        if (molecule instanceof AminoAcidMolecule) {
+            // Color based on chain length
+            return CHAIN_COLORS[((AminoAcidMolecule) molecule).getLength() % CHAIN_COLORS.length];
+        }
+        switch (molecule.getName()) {
+            case "H2O":
+                return H2O_COLOR;
+            case "CH4":
+                return CH4_COLOR;
+            case "CH3OH":
+                return CH3OH_COLOR;
+            default:
+                return DEFAULT_COLOR;
         }
     }
 
+    private static int toArgb(Color color) {
+        return (int) Math.round(color.getOpacity() * 255) << 24
+            | (int) Math.round(color.getRed() * 255) << 16
+            | (int) Math.round(color.getGreen() * 255) << 8
+            | (int) Math.round(color.getBlue() * 255);
+    }
+
+    /**
+     * Returns the loop driving the simulation, for adjusting its rate and fast-forward multiplier.
+     * @return The simulation loop.
+     */
+    public SimulationLoop getSimulationLoop() {
+        return loop;
+    }
+
     public void stop() {
-        isRunning = false;
+        loop.stop();
     }
 } 
\ No newline at end of file
@@ -0,0 +1,551 @@
+package com.abiogenesis.headless;
+
+import com.abiogenesis.model.AminoAcidMolecule;
+import com.abiogenesis.model.AminoAcidSequence;
+import com.abiogenesis.model.Molecule;
+import com.abiogenesis.simulation.Compartment;
+import com.abiogenesis.simulation.CompartmentSystem;
+import com.abiogenesis.simulation.EnvironmentField;
+import com.abiogenesis.simulation.LineageRecord;
+import com.abiogenesis.simulation.MotifTracker;
+import com.abiogenesis.simulation.PopulationCounters;
+import com.abiogenesis.simulation.PrimordialSoup;
+import com.abiogenesis.simulation.Schedule;
+import com.abiogenesis.simulation.Schedules;
+import com.abiogenesis.simulation.SequenceCache;
+import com.abiogenesis.simulation.SoupCheckpoint;
+import com.abiogenesis.simulation.TrajectoryRecorder;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Headless entry point that runs a PrimordialSoup for a fixed number of steps as fast as the CPU allows.
+ * It depends only on the model and simulation packages, so it runs without JavaFX on the classpath:
+ *
+ * <pre>
+ * java -cp target/classes com.abiogenesis.headless.BatchRunner --steps 1000000 --seed 42
+ * </pre>
+ *
+ * Progress is reported periodically, followed by throughput (steps/sec, molecule updates/sec)
+ * and final population statistics.
+ */
+public class BatchRunner {
+    // Fraction of each grid cell's shorter side taken by a protocell's radius
+    private static final double COMPARTMENT_RADIUS_FRACTION = 0.35;
+    // Probability that a chain short enough to pass crosses a protocell membrane in one step
+    private static final double MEMBRANE_CROSSING = 0.5;
+
+    private static final String USAGE = String.join("\n",
+        "Usage: BatchRunner [options]",
+        "  --steps N             Number of steps to run (default 100000)",
+        "  --width N             Width of the soup (default 800)",
+        "  --height N            Height of the soup (default 600)",
+        "  --temperature T       Temperature in Kelvin (default 300)",
+        "  --ph P                pH of the soup (default 7)",
+        "  --seed S              Random seed (default: random)",
+        "  --max-population N    Maximum number of amino acid chains (default 50)",
+        "  --mutation-rate R     Probability per step that a chain mutates (default 0.01)",
+        "  --combination-rate R  Chance that a drawn pair of nearby chains recombines, 0 to disable (default 0.01)",
+        "  --threads N           Worker threads for the partitioned passes (default: all cores)",
+        "  --report-every N      Print progress every N steps, 0 to disable (default 0)",
+        "  --motifs M1,M2,...    Motifs to track (default METHINKS)",
+        "  --resume FILE         Continue from a checkpoint (soup options above are taken from the file)",
+        "  --checkpoint FILE     Save a checkpoint to FILE at the end of the run",
+        "  --checkpoint-every N  Also save the checkpoint every N steps (default 0, only at the end)",
+        "  --record DIR          Record the trajectory (births, mutations, positions) into DIR",
+        "  --record-positions N  Record positions every N steps (default 10)",
+        "  --record-keyframes N  Record a full keyframe every N steps, for seeking (default 1000)",
+        "  --sequence-cache N    Distinct sequences kept for sharing and scan reuse, 0 to disable (default 4096)",
+        "  --lineage N           Track lineage and print up to N ancestors of each motif's first carrier",
+        "  --field CxR           Give the soup a grid of CxR cells of local temperature, pH and nutrient",
+        "  --kinetics K          stepped, gillespie or tau-leaping (default stepped)",
+        "  --leap N              Steps covered per leap with gillespie or tau-leaping kinetics (default 100)",
+        "  --compartments N      Enclose N protocells, laid out on a grid, each with its own interior soup;",
+        "                        not checkpointed, so not allowed with --checkpoint or --resume",
+        "  --membrane-cutoff L   Longest chain that can cross a protocell membrane (default 3)",
+        "  --temperature-cycle S Temperature schedule in Kelvin, e.g. sin:300,20,1000 (see below)",
+        "  --ph-cycle S          pH schedule, e.g. step:7,500,5,500",
+        "  --wet-dry S           Wetness schedule from 1 (wet) to 0 (dry), e.g. step:1,900,0,100",
+        "  --help                Show this message",
+        "Schedules: V | sin:MEAN,AMPLITUDE,PERIOD[,PHASE] | step:FIRST,STEPS,SECOND,STEPS",
+        "           | linear:STEP=V,STEP=V,...[,repeat] | trace:FILE[,repeat] (lines of: step value)");
+
+    private long steps = 100_000;
+    private int width = 800;
+    private int height = 600;
+    private double temperature = 300.0;
+    private double pH = 7.0;
+    private Long seed;
+    private Integer maxPopulation;
+    private Double mutationRate;
+    private Double combinationRate;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long reportEvery = 0;
+    private List<String> motifs;
+    private Path resumeFile;
+    private Path checkpointFile;
+    private long checkpointEvery = 0;
+    private Path recordDirectory;
+    private int recordPositionInterval = 10;
+    private int recordKeyframeInterval = 1000;
+    private int lineageDepth = 0;
+    private Integer sequenceCacheSize;
+    private PrimordialSoup.Kinetics kinetics;
+    private int fieldColumns;
+    private int fieldRows;
+    private Integer leapSteps;
+    // Schedules and the descriptions they were parsed from, for the report
+    private Schedule temperatureSchedule;
+    private Schedule pHSchedule;
+    private Schedule wetnessSchedule;
+    private final List<String> cycles = new ArrayList<>();
+    private int compartmentCount;
+    private int membraneCutoff = 3;
+
+    public static void main(String[] args) {
+        BatchRunner runner = new BatchRunner();
+        try {
+            if (!runner.parseArguments(args)) {
+                System.out.println(USAGE);
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        try {
+            runner.run();
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parses command line options into this runner's settings.
+     * @param args The command line arguments.
+     * @return False if help was requested, true otherwise.
+     * @throws IllegalArgumentException If an option is unknown or its value is invalid.
+     */
+    boolean parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--help") || option.equals("-h")) {
+                return false;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--steps":
+                        steps = Long.parseLong(value);
+                        break;
+                    case "--width":
+                        width = Integer.parseInt(value);
+                        break;
+                    case "--height":
+                        height = Integer.parseInt(value);
+                        break;
+                    case "--temperature":
+                        temperature = Double.parseDouble(value);
+                        break;
+                    case "--ph":
+                        pH = Double.parseDouble(value);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--max-population":
+                        maxPopulation = Integer.parseInt(value);
+                        break;
+                    case "--mutation-rate":
+                        mutationRate = Double.parseDouble(value);
+                        break;
+                    case "--combination-rate":
+                        combinationRate = Double.parseDouble(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--report-every":
+                        reportEvery = Long.parseLong(value);
+                        break;
+                    case "--motifs":
+                        motifs = Arrays.asList(value.split(","));
+                        break;
+                    case "--resume":
+                        resumeFile = Paths.get(value);
+                        break;
+                    case "--checkpoint":
+                        checkpointFile = Paths.get(value);
+                        break;
+                    case "--checkpoint-every":
+                        checkpointEvery = Long.parseLong(value);
+                        break;
+                    case "--record":
+                        recordDirectory = Paths.get(value);
+                        break;
+                    case "--record-positions":
+                        recordPositionInterval = Integer.parseInt(value);
+                        break;
+                    case "--record-keyframes":
+                        recordKeyframeInterval = Integer.parseInt(value);
+                        break;
+                    case "--sequence-cache":
+                        sequenceCacheSize = Integer.parseInt(value);
+                        break;
+                    case "--lineage":
+                        lineageDepth = Integer.parseInt(value);
+                        break;
+                    case "--field": {
+                        String[] size = value.split("x");
+                        if (size.length != 2) throw new NumberFormatException();
+                        fieldColumns = Integer.parseInt(size[0]);
+                        fieldRows = Integer.parseInt(size[1]);
+                        break;
+                    }
+                    case "--kinetics":
+                        kinetics = parseKinetics(value);
+                        break;
+                    case "--leap":
+                        leapSteps = Integer.parseInt(value);
+                        break;
+                    case "--compartments":
+                        compartmentCount = Integer.parseInt(value);
+                        break;
+                    case "--membrane-cutoff":
+                        membraneCutoff = Integer.parseInt(value);
+                        break;
+                    case "--temperature-cycle":
+                        temperatureSchedule = parseSchedule(value);
+                        cycles.add("temperature " + value);
+                        break;
+                    case "--ph-cycle":
+                        pHSchedule = parseSchedule(value);
+                        cycles.add("pH " + value);
+                        break;
+                    case "--wet-dry":
+                        wetnessSchedule = parseSchedule(value);
+                        cycles.add("wetness " + value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+            }
+        }
+        if (steps < 0 || width <= 0 || height <= 0 || threads < 1) {
+            throw new IllegalArgumentException("Steps must be non-negative; width, height and threads must be positive");
+        }
+        if (checkpointEvery < 0 || (checkpointEvery > 0 && checkpointFile == null)) {
+            throw new IllegalArgumentException("--checkpoint-every must be non-negative and needs --checkpoint");
+        }
+        if (recordPositionInterval < 0 || recordKeyframeInterval < 1) {
+            throw new IllegalArgumentException("--record-positions must be non-negative and --record-keyframes positive");
+        }
+        if (lineageDepth < 0 || (sequenceCacheSize != null && sequenceCacheSize < 0)) {
+            throw new IllegalArgumentException("--lineage and --sequence-cache must be non-negative");
+        }
+        if (!isProbability(mutationRate) || !isProbability(combinationRate)) {
+            throw new IllegalArgumentException("--mutation-rate and --combination-rate must be between 0 and 1");
+        }
+        if (leapSteps != null && leapSteps < 1) {
+            throw new IllegalArgumentException("--leap must be positive");
+        }
+        if (compartmentCount < 0 || membraneCutoff < 0) {
+            throw new IllegalArgumentException("--compartments and --membrane-cutoff must be non-negative");
+        }
+        // Checkpoints hold the outer soup only, so a resumed run would lose the protocell interiors
+        if (compartmentCount > 0 && (resumeFile != null || checkpointFile != null)) {
+            throw new IllegalArgumentException("--compartments cannot be combined with --checkpoint or --resume");
+        }
+        if (fieldColumns < 0 || fieldRows < 0 || (fieldColumns == 0) != (fieldRows == 0)) {
+            throw new IllegalArgumentException("--field needs a positive number of columns and rows");
+        }
+        return true;
+    }
+
+    private static boolean isProbability(Double value) {
+        return value == null || (value >= 0 && value <= 1);
+    }
+
+    static PrimordialSoup.Kinetics parseKinetics(String value) {
+        switch (value) {
+            case "stepped":
+                return PrimordialSoup.Kinetics.STEPPED;
+            case "gillespie":
+                return PrimordialSoup.Kinetics.GILLESPIE;
+            case "tau-leaping":
+                return PrimordialSoup.Kinetics.TAU_LEAPING;
+            default:
+                throw new IllegalArgumentException("Unknown kinetics " + value);
+        }
+    }
+
+    private static Schedule parseSchedule(String value) {
+        try {
+            return Schedules.parse(value);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /**
+     * Builds (or restores) the soup, runs all steps and prints the report.
+     * @throws IOException If a checkpoint or the trajectory cannot be read or written.
+     */
+    void run() throws IOException {
+        PrimordialSoup soup;
+        if (resumeFile != null) {
+            long start = System.nanoTime();
+            soup = SoupCheckpoint.load(resumeFile);
+            System.out.printf("Resumed %s at step %d (%d molecules) in %.3f s%n",
+                resumeFile, soup.getStepCount(), soup.getMolecules().size(), (System.nanoTime() - start) / 1e9);
+        } else {
+            soup = seed != null
+                ? new PrimordialSoup(width, height, temperature, pH, seed)
+                : new PrimordialSoup(width, height, temperature, pH);
+            if (maxPopulation != null) {
+                soup.setMaxAminoAcids(maxPopulation);
+            }
+            if (motifs != null) {
+                soup.setMotifs(motifs);
+            }
+            if (fieldColumns > 0) {
+                soup.setEnvironment(
+                    new EnvironmentField(fieldColumns, fieldRows, soup.getTemperature(), soup.getPH(), 1.0));
+            }
+        }
+        soup.setParallelism(threads);
+        if (mutationRate != null) {
+            soup.setMutationRate(mutationRate);
+        }
+        if (combinationRate != null) {
+            soup.setCombinationRate(combinationRate);
+        }
+        if (kinetics != null) {
+            soup.setKinetics(kinetics);
+        }
+        if (leapSteps != null) {
+            soup.setLeapSteps(leapSteps);
+        }
+        // Schedules are not checkpointed, so they apply to resumed soups as well
+        soup.setTemperatureSchedule(temperatureSchedule);
+        soup.setPHSchedule(pHSchedule);
+        soup.setWetnessSchedule(wetnessSchedule);
+        if (sequenceCacheSize != null) {
+            soup.getSequenceCache().setCapacity(sequenceCacheSize);
+        }
+        if (lineageDepth > 0) {
+            soup.setLineageTracking(true);
+            soup.getMotifTracker().addListener(hit -> {
+                if (!hit.isFirstSighting()) return;
+                System.out.printf("Motif '%s' first seen at step %d; ancestry:%n", hit.getMotif(), hit.getStep());
+                for (LineageRecord record : soup.getLineage().getAncestry(hit.getLineageId(), lineageDepth)) {
+                    System.out.println("  " + record);
+                }
+            });
+        }
+        try {
+            simulate(soup);
+        } finally {
+            soup.close();
+        }
+    }
+
+    /**
+     * Forms the compartments, if any, then runs all steps on a configured soup and prints the report.
+     * @param soup The soup.
+     * @throws IOException If a checkpoint or the trajectory cannot be written.
+     */
+    private void simulate(PrimordialSoup soup) throws IOException {
+        System.out.printf("Running %d steps (%dx%d, %.1fK, pH %.1f, seed %d, %d threads, %s kinetics)%n",
+            steps, soup.getWidth(), soup.getHeight(), soup.getTemperature(), soup.getPH(),
+            soup.getSeed(), soup.getParallelism(), soup.getKinetics().name().toLowerCase().replace('_', '-'));
+        if (!cycles.isEmpty()) {
+            System.out.println("Cycles: " + String.join("; ", cycles));
+        }
+        CompartmentSystem compartments = compartmentCount == 0 ? null : createCompartments(soup);
+        try {
+            runSteps(soup, compartments);
+        } finally {
+            if (compartments != null) {
+                compartments.close();
+            }
+        }
+    }
+
+    /**
+     * Runs all steps on a soup and its compartments, if any, and prints the report.
+     * @param soup The soup.
+     * @param compartments The compartments, or null.
+     * @throws IOException If a checkpoint or the trajectory cannot be written.
+     */
+    private void runSteps(PrimordialSoup soup, CompartmentSystem compartments) throws IOException {
+        TrajectoryRecorder recorder = recordDirectory == null ? null
+            : new TrajectoryRecorder(soup, recordDirectory, recordPositionInterval, recordKeyframeInterval);
+
+        long moleculeUpdates = 0;
+        double seconds;
+        // Closed however the run ends, so the last trajectory segment is always finalised
+        try {
+            long start = System.nanoTime();
+            long lastReport = start;
+            // With event-driven kinetics each call covers a whole leap, so progress is tracked by the soup's step count
+            long first = soup.getStepCount();
+            long step = 0;
+            long lastReportStep = 0;
+            while (step < steps) {
+                long previous = step;
+                if (compartments != null) {
+                    // Membranes are enforced after every step, or after every leap with event-driven kinetics
+                    compartments.advance(soup.getKinetics() == PrimordialSoup.Kinetics.STEPPED ? 1
+                        : (int) Math.min(soup.getLeapSteps(), steps - step));
+                } else if (soup.getKinetics() == PrimordialSoup.Kinetics.STEPPED) {
+                    soup.simulateStep();
+                } else {
+                    soup.advance((int) Math.min(soup.getLeapSteps(), steps - step));
+                }
+                step = soup.getStepCount() - first;
+                moleculeUpdates += moleculeCount(soup, compartments) * (step - previous);
+                if (reportEvery > 0 && step / reportEvery != previous / reportEvery) {
+                    long now = System.nanoTime();
+                    System.out.printf("step %d: %d molecules, %.0f steps/sec%n",
+                        step, soup.getMolecules().size(), (step - lastReportStep) * 1e9 / (now - lastReport));
+                    lastReport = now;
+                    lastReportStep = step;
+                }
+                if (checkpointEvery > 0 && step / checkpointEvery != previous / checkpointEvery && step < steps) {
+                    saveCheckpoint(soup);
+                }
+            }
+            seconds = (System.nanoTime() - start) / 1e9;
+        } finally {
+            if (recorder != null) {
+                recorder.close();
+            }
+        }
+
+        System.out.println("\n=== Throughput ===");
+        System.out.printf("Elapsed: %.3f s%n", seconds);
+        System.out.printf("Steps/sec: %.1f%n", steps / seconds);
+        System.out.printf("Molecule updates/sec: %.1f%n", moleculeUpdates / seconds);
+        printStatistics(soup);
+        if (compartments != null) {
+            printCompartments(compartments);
+        }
+        if (checkpointFile != null) {
+            saveCheckpoint(soup);
+        }
+    }
+
+    /**
+     * Encloses the requested number of protocells, one in the middle of each cell of a grid laid over the soup.
+     * Their interiors start at the soup's conditions and use its kinetics.
+     * @param soup The soup to form the protocells in.
+     * @return The compartment system.
+     */
+    private CompartmentSystem createCompartments(PrimordialSoup soup) {
+        CompartmentSystem system = new CompartmentSystem(soup, soup.getSeed() ^ soup.getStepCount());
+        system.setParallelism(threads);
+        int columns = (int) Math.ceil(Math.sqrt(compartmentCount));
+        int rows = (compartmentCount + columns - 1) / columns;
+        double cellWidth = (double) soup.getWidth() / columns;
+        double cellHeight = (double) soup.getHeight() / rows;
+        double radius = COMPARTMENT_RADIUS_FRACTION * Math.min(cellWidth, cellHeight);
+        for (int i = 0; i < compartmentCount; i++) {
+            Compartment compartment = system.addCompartment((i % columns + 0.5) * cellWidth,
+                (i / columns + 0.5) * cellHeight, radius, soup.getTemperature(), soup.getPH(),
+                Compartment.Permeability.byLength(membraneCutoff, MEMBRANE_CROSSING));
+            compartment.getSoup().setKinetics(soup.getKinetics());
+            compartment.getSoup().setLeapSteps(soup.getLeapSteps());
+            compartment.getSoup().setMutationRate(soup.getMutationRate());
+            compartment.getSoup().setCombinationRate(soup.getCombinationRate());
+        }
+        return system;
+    }
+
+    private static long moleculeCount(PrimordialSoup soup, CompartmentSystem compartments) {
+        long count = soup.getMolecules().size();
+        if (compartments != null) {
+            for (Compartment compartment : compartments.getCompartments()) {
+                count += compartment.getSoup().getMolecules().size();
+            }
+        }
+        return count;
+    }
+
+    private void printCompartments(CompartmentSystem compartments) {
+        System.out.println("Compartments (chains inside, longest, motif chains, crossings in/out):");
+        for (Compartment compartment : compartments.getCompartments()) {
+            PrimordialSoup interior = compartment.getSoup();
+            MotifTracker tracker = interior.getMotifTracker();
+            long motifChains = 0;
+            for (int i = 0; i < tracker.getMatcher().getMotifCount(); i++) {
+                motifChains += tracker.getChainCount(i);
+            }
+            System.out.printf("  at %.0f,%.0f r %.0f: %d chains, longest %d, %d motif chains, %d/%d%n",
+                compartment.getX(), compartment.getY(), compartment.getRadius(),
+                interior.getPopulationCounters().getAminoAcidCount(), interior.getPopulationCounters().getMaxLength(),
+                motifChains, compartment.getMoleculesIn(), compartment.getMoleculesOut());
+        }
+    }
+
+    private void saveCheckpoint(PrimordialSoup soup) throws IOException {
+        long start = System.nanoTime();
+        SoupCheckpoint.save(soup, checkpointFile);
+        System.out.printf("Checkpoint at step %d written to %s in %.3f s%n",
+            soup.getStepCount(), checkpointFile, (System.nanoTime() - start) / 1e9);
+    }
+
+    private static void printStatistics(PrimordialSoup soup) {
+        PopulationCounters counters = soup.getPopulationCounters();
+        Set<AminoAcidSequence> distinctSequences = new HashSet<>();
+        for (Molecule molecule : soup.getMolecules()) {
+            if (molecule instanceof AminoAcidMolecule) {
+                distinctSequences.add(((AminoAcidMolecule) molecule).getPackedSequence());
+            }
+        }
+        System.out.println("\n=== Final Statistics ===");
+        System.out.printf("Total Molecules: %d%n", counters.getTotal());
+        System.out.printf("Distinct Sequences: %d%n", distinctSequences.size());
+        System.out.printf("Longest Chain: %d%n", counters.getMaxLength());
+        System.out.printf("Total Reactions: %d%n", soup.getTotalReactions());
+        System.out.println("Molecule Counts:");
+        counters.getNameCounts().forEach((name, count) -> System.out.printf("  %s: %d%n", name, count));
+        SequenceCache cache = soup.getSequenceCache();
+        long scans = cache.getScanHits() + cache.getScanMisses();
+        if (soup.getWetnessSchedule() != null || soup.getWetness() < 1.0) {
+            System.out.printf("Wetness: %.2f%n", soup.getWetness());
+        }
+        System.out.printf("Sequence Cache: %d sequences, %.1f%% of scans reused%n",
+            cache.size(), scans == 0 ? 0.0 : 100.0 * cache.getScanHits() / scans);
+        EnvironmentField environment = soup.getEnvironment();
+        if (environment != null) {
+            System.out.printf("Environment: %dx%d cells, mean %.1fK, pH %.2f, nutrient %.3f%n",
+                environment.getColumns(), environment.getRows(),
+                environment.getMean(EnvironmentField.Quantity.TEMPERATURE),
+                environment.getMean(EnvironmentField.Quantity.PH),
+                environment.getMean(EnvironmentField.Quantity.NUTRIENT));
+        }
+        MotifTracker tracker = soup.getMotifTracker();
+        System.out.printf("Motifs (%d chains scanned):%n", tracker.getChainsScanned());
+        for (int i = 0; i < tracker.getMatcher().getMotifCount(); i++) {
+            long firstSeen = tracker.getFirstSeenStep(i);
+            System.out.printf("  %s: first seen %s, %d chains, %d occurrences%n",
+                tracker.getMatcher().getMotif(i),
+                firstSeen < 0 ? "never" : "at step " + firstSeen,
+                tracker.getChainCount(i), tracker.getOccurrenceCount(i));
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package com.abiogenesis.headless;
+
+import com.abiogenesis.model.AminoAcidMolecule;
+import com.abiogenesis.model.AminoAcidSequence;
+import com.abiogenesis.model.Molecule;
+import com.abiogenesis.model.SplitMixRandom;
+import com.abiogenesis.simulation.MotifTracker;
+import com.abiogenesis.simulation.PrimordialSoup;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless entry point that runs a parameter sweep: one independent soup for every combination of the given
+ * mutation rates, recombination rates, temperatures and population caps, repeated for a number of replicates.
+ * Each run stops once all tracked motifs have been seen (or after a fixed number of steps) and adds one row
+ * to a CSV file:
+ *
+ * <pre>
+ * java -cp target/classes com.abiogenesis.headless.SweepRunner --steps 200000 --replicates 20 \
+ *     --mutation-rate 0.005,0.01,0.02 --temperature 280,300,320 --output sweep.csv
+ * </pre>
+ *
+ * Runs are spread over a fixed pool of worker threads, one soup per worker at a time, and every soup steps
+ * on its own worker (parallelism 1). With many more runs than cores this keeps every core busy without
+ * splitting individual steps, and only as many soups as workers are alive at once. Rows are written in run
+ * order as soon as all earlier runs have finished, so the file does not depend on the number of threads.
+ *
+ * Replicate r uses the same seed at every grid point (common random numbers), so differences between grid
+ * points are not drowned in seed-to-seed noise. A summary per grid point is printed at the end.
+ */
+public class SweepRunner {
+    private static final String USAGE = String.join("\n",
+        "Usage: SweepRunner [options]",
+        "  --steps N             Steps per run; motifs not seen by then count as never seen (default 100000)",
+        "  --replicates N        Runs per combination of parameters (default 10)",
+        "  --seed S              Seed the replicate seeds are derived from (default 1)",
+        "  --threads N           Worker threads, one soup each (default: all cores)",
+        "  --mutation-rate L     Mutation probabilities per step to sweep, comma-separated (default 0.01)",
+        "  --combination-rate L  Recombination probabilities per drawn pair to sweep (default 0.01)",
+        "  --temperature L       Temperatures in Kelvin to sweep (default 300)",
+        "  --max-population L    Population caps to sweep (default 50)",
+        "  --ph P                pH of every soup (default 7)",
+        "  --width N             Width of every soup (default 800)",
+        "  --height N            Height of every soup (default 600)",
+        "  --motifs M1,M2,...    Motifs to track (default METHINKS); the first is summarised",
+        "  --stop-on-hit B       true to stop a run once every motif has been seen (default true)",
+        "  --kinetics K          stepped, gillespie or tau-leaping (default stepped)",
+        "  --leap N              Steps covered per leap with gillespie or tau-leaping kinetics (default 100)",
+        "  --output FILE         CSV file to write (default: standard output)",
+        "  --help                Show this message");
+
+    private long steps = 100_000;
+    private int replicates = 10;
+    private long seed = 1;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private double[] mutationRates = {0.01};
+    private double[] combinationRates = {0.01};
+    private double[] temperatures = {300.0};
+    private int[] maxPopulations = {50};
+    private double pH = 7.0;
+    private int width = 800;
+    private int height = 600;
+    private List<String> motifs = List.of("METHINKS");
+    private boolean stopOnHit = true;
+    private PrimordialSoup.Kinetics kinetics = PrimordialSoup.Kinetics.STEPPED;
+    private Integer leapSteps;
+    private Path outputFile;
+
+    public static void main(String[] args) {
+        SweepRunner runner = new SweepRunner();
+        try {
+            if (!runner.parseArguments(args)) {
+                System.out.println(USAGE);
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        try {
+            runner.run();
+        } catch (IOException | ExecutionException e) {
+            System.err.println("Error: " + (e instanceof ExecutionException ? e.getCause() : e.getMessage()));
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parses command line options into this runner's settings.
+     * @param args The command line arguments.
+     * @return False if help was requested, true otherwise.
+     * @throws IllegalArgumentException If an option is unknown or its value is invalid.
+     */
+    boolean parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--help") || option.equals("-h")) {
+                return false;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--steps":
+                        steps = Long.parseLong(value);
+                        break;
+                    case "--replicates":
+                        replicates = Integer.parseInt(value);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--mutation-rate":
+                        mutationRates = parseDoubles(value);
+                        break;
+                    case "--combination-rate":
+                        combinationRates = parseDoubles(value);
+                        break;
+                    case "--temperature":
+                        temperatures = parseDoubles(value);
+                        break;
+                    case "--max-population":
+                        maxPopulations = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                        break;
+                    case "--ph":
+                        pH = Double.parseDouble(value);
+                        break;
+                    case "--width":
+                        width = Integer.parseInt(value);
+                        break;
+                    case "--height":
+                        height = Integer.parseInt(value);
+                        break;
+                    case "--motifs":
+                        motifs = Arrays.asList(value.split(","));
+                        break;
+                    case "--stop-on-hit":
+                        if (!value.equals("true") && !value.equals("false")) throw new NumberFormatException();
+                        stopOnHit = Boolean.parseBoolean(value);
+                        break;
+                    case "--kinetics":
+                        kinetics = BatchRunner.parseKinetics(value);
+                        break;
+                    case "--leap":
+                        leapSteps = Integer.parseInt(value);
+                        break;
+                    case "--output":
+                        outputFile = Paths.get(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+            }
+        }
+        if (steps < 1 || replicates < 1 || threads < 1 || width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Steps, replicates, threads, width and height must be positive");
+        }
+        for (double rate : mutationRates) {
+            checkProbability("--mutation-rate", rate);
+        }
+        for (double rate : combinationRates) {
+            checkProbability("--combination-rate", rate);
+        }
+        for (int cap : maxPopulations) {
+            if (cap < 0) throw new IllegalArgumentException("--max-population must be non-negative");
+        }
+        if (leapSteps != null && leapSteps < 1) {
+            throw new IllegalArgumentException("--leap must be positive");
+        }
+        return true;
+    }
+
+    private static double[] parseDoubles(String value) {
+        return Arrays.stream(value.split(",")).mapToDouble(Double::parseDouble).toArray();
+    }
+
+    private static void checkProbability(String option, double value) {
+        if (!(value >= 0 && value <= 1)) {
+            throw new IllegalArgumentException(option + " values must be between 0 and 1: " + value);
+        }
+    }
+
+    /**
+     * Runs every combination of parameters and replicate, writing the rows as they complete in order, and
+     * prints the summary.
+     * @throws IOException If the output cannot be written.
+     * @throws ExecutionException If a run fails.
+     * @throws InterruptedException If the thread is interrupted while waiting for runs.
+     */
+    void run() throws IOException, ExecutionException, InterruptedException {
+        List<double[]> points = new ArrayList<>();
+        for (double mutationRate : mutationRates) {
+            for (double combinationRate : combinationRates) {
+                for (double temperature : temperatures) {
+                    for (int maxPopulation : maxPopulations) {
+                        points.add(new double[] {mutationRate, combinationRate, temperature, maxPopulation});
+                    }
+                }
+            }
+        }
+        long[] seeds = new long[replicates];
+        SplitMixRandom seedRandom = new SplitMixRandom(seed);
+        for (int r = 0; r < replicates; r++) {
+            seeds[r] = seedRandom.nextLong();
+        }
+        int runs = points.size() * replicates;
+        System.err.printf("Sweeping %d parameter combinations x %d replicates = %d runs of up to %d steps"
+            + " on %d threads%n", points.size(), replicates, runs, steps, threads);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "sweep-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<RunResult>> futures = new ArrayList<>(runs);
+        for (int index = 0; index < runs; index++) {
+            double[] point = points.get(index / replicates);
+            long runSeed = seeds[index % replicates];
+            futures.add(pool.submit(() -> runOne(point, runSeed)));
+        }
+        pool.shutdown();
+
+        long start = System.nanoTime();
+        RunResult[] results = new RunResult[runs];
+        Writer out = outputFile == null
+            ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+            : Files.newBufferedWriter(outputFile);
+        try {
+            out.write(header());
+            for (int index = 0; index < runs; index++) {
+                results[index] = futures.get(index).get();
+                out.write(row(index, index / replicates, index % replicates, results[index]));
+                if (outputFile == null) out.flush();
+            }
+        } finally {
+            pool.shutdownNow();
+            out.flush();
+            if (outputFile != null) out.close();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long totalSteps = 0;
+        for (RunResult result : results) {
+            totalSteps += result.steps;
+        }
+        System.err.printf("%d runs in %.3f s (%.0f soup steps/sec)%n", runs, seconds, totalSteps / seconds);
+        printSummary(points, results);
+    }
+
+    /**
+     * Runs one soup until every motif has been seen (if stopping on hits) or the step limit is reached.
+     * @param point The mutation rate, recombination rate, temperature and population cap.
+     * @param runSeed The soup's seed.
+     * @return The run's outcome.
+     */
+    private RunResult runOne(double[] point, long runSeed) {
+        long start = System.nanoTime();
+        PrimordialSoup soup = new PrimordialSoup(width, height, point[2], pH, runSeed);
+        soup.setParallelism(1);
+        soup.setMutationRate(point[0]);
+        soup.setCombinationRate(point[1]);
+        soup.setMaxAminoAcids((int) point[3]);
+        soup.setMotifs(motifs);
+        soup.setKinetics(kinetics);
+        if (leapSteps != null) {
+            soup.setLeapSteps(leapSteps);
+        }
+        MotifTracker tracker = soup.getMotifTracker();
+        int motifCount = tracker.getMatcher().getMotifCount();
+        try {
+            while (soup.getStepCount() < steps) {
+                if (kinetics == PrimordialSoup.Kinetics.STEPPED) {
+                    soup.simulateStep();
+                } else {
+                    soup.advance((int) Math.min(soup.getLeapSteps(), steps - soup.getStepCount()));
+                }
+                if (stopOnHit && allSeen(tracker, motifCount)) break;
+            }
+        } finally {
+            soup.close();
+        }
+
+        RunResult result = new RunResult();
+        result.seed = runSeed;
+        result.mutationRate = point[0];
+        result.combinationRate = point[1];
+        result.temperature = point[2];
+        result.maxPopulation = (int) point[3];
+        result.steps = soup.getStepCount();
+        result.firstSeen = new long[motifCount];
+        for (int i = 0; i < motifCount; i++) {
+            result.firstSeen[i] = tracker.getFirstSeenStep(i);
+        }
+        Set<AminoAcidSequence> distinct = new HashSet<>();
+        long residues = 0;
+        for (Molecule molecule : soup.getMolecules()) {
+            if (molecule instanceof AminoAcidMolecule) {
+                AminoAcidMolecule chain = (AminoAcidMolecule) molecule;
+                distinct.add(chain.getPackedSequence());
+                residues += chain.getLength();
+                result.chains++;
+            }
+        }
+        result.distinctSequences = distinct.size();
+        result.meanLength = result.chains == 0 ? 0.0 : (double) residues / result.chains;
+        result.longestChain = soup.getPopulationCounters().getMaxLength();
+        result.totalReactions = soup.getTotalReactions();
+        result.seconds = (System.nanoTime() - start) / 1e9;
+        return result;
+    }
+
+    private static boolean allSeen(MotifTracker tracker, int motifCount) {
+        for (int i = 0; i < motifCount; i++) {
+            if (tracker.getFirstSeenStep(i) < 0) return false;
+        }
+        return true;
+    }
+
+    private String header() {
+        StringBuilder line = new StringBuilder(
+            "run,point,replicate,seed,mutation_rate,combination_rate,temperature,max_population,steps");
+        for (String motif : motifs) {
+            line.append(",first_seen_").append(motif);
+        }
+        line.append(",chains,distinct_sequences,mean_length,longest_chain,total_reactions,seconds\n");
+        return line.toString();
+    }
+
+    /**
+     * Formats one run as a CSV row. A motif that was never seen has an empty first-seen step; the steps
+     * column gives the time the run was censored at.
+     * @param index The run's index.
+     * @param point The index of the run's grid point.
+     * @param replicate The run's replicate number.
+     * @param result The run's outcome.
+     * @return The row, ending in a newline.
+     */
+    private String row(int index, int point, int replicate, RunResult result) {
+        StringBuilder line = new StringBuilder();
+        line.append(index).append(',').append(point).append(',').append(replicate).append(',')
+            .append(result.seed).append(',');
+        line.append(result.mutationRate).append(',').append(result.combinationRate).append(',')
+            .append(result.temperature).append(',').append(result.maxPopulation).append(',')
+            .append(result.steps);
+        for (long firstSeen : result.firstSeen) {
+            line.append(',');
+            if (firstSeen >= 0) line.append(firstSeen);
+        }
+        line.append(',').append(result.chains).append(',').append(result.distinctSequences).append(',')
+            .append(String.format(Locale.ROOT, "%.3f", result.meanLength)).append(',')
+            .append(result.longestChain).append(',').append(result.totalReactions).append(',')
+            .append(String.format(Locale.ROOT, "%.3f", result.seconds)).append('\n');
+        return line.toString();
+    }
+
+    /**
+     * Prints, per grid point, how many runs saw the first motif and when, and the final population.
+     * The median first-seen step counts runs that never saw the motif as later than any that did.
+     * @param points The grid points, in run order.
+     * @param results The outcomes of all runs.
+     */
+    private void printSummary(List<double[]> points, RunResult[] results) {
+        System.err.printf("%n=== Summary for %s ===%n", motifs.get(0));
+        System.err.println("mutation  combination  temperature  max_pop  seen     median_first_seen  chains  distinct");
+        for (int p = 0; p < points.size(); p++) {
+            double[] point = points.get(p);
+            long[] firstSeen = new long[replicates];
+            int seen = 0;
+            double chains = 0;
+            double distinct = 0;
+            for (int r = 0; r < replicates; r++) {
+                RunResult result = results[p * replicates + r];
+                long step = result.firstSeen.length == 0 ? -1 : result.firstSeen[0];
+                firstSeen[r] = step < 0 ? Long.MAX_VALUE : step;
+                if (step >= 0) seen++;
+                chains += result.chains;
+                distinct += result.distinctSequences;
+            }
+            Arrays.sort(firstSeen);
+            long median = firstSeen[(replicates - 1) / 2];
+            System.err.printf(Locale.ROOT, "%-8s  %-11s  %-11.1f  %-7d  %3d/%-3d  %-17s  %6.1f  %8.1f%n",
+                point[0], point[1], point[2], (int) point[3], seen, replicates,
+                median == Long.MAX_VALUE ? "> " + steps : Long.toString(median),
+                chains / replicates, distinct / replicates);
+        }
+    }
+
+    /**
+     * The outcome of one run.
+     */
+    private static final class RunResult {
+        long seed;
+        double mutationRate;
+        double combinationRate;
+        double temperature;
+        int maxPopulation;
+        long steps;
+        long[] firstSeen;
+        int chains;
+        int distinctSequences;
+        double meanLength;
+        int longestChain;
+        long totalReactions;
+        double seconds;
+    }
+}
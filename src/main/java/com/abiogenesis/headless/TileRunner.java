@@ -0,0 +1,314 @@
+package com.abiogenesis.headless;
+
+import com.abiogenesis.simulation.DistributedSoup;
+import com.abiogenesis.simulation.InProcessTransport;
+import com.abiogenesis.simulation.MotifTracker;
+import com.abiogenesis.simulation.PrimordialSoup;
+import com.abiogenesis.simulation.SocketTransport;
+import com.abiogenesis.simulation.Transport;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless entry point for a soup split into tiles (see {@link DistributedSoup}). Either every tile runs on a
+ * thread of this process, connected in memory or over localhost sockets:
+ *
+ * <pre>
+ * java -cp target/classes com.abiogenesis.headless.TileRunner --tiles 2x2 --steps 100000
+ * </pre>
+ *
+ * or each tile runs in a process of its own, started once per rank with the same options, on one machine or
+ * several:
+ *
+ * <pre>
+ * java -cp target/classes com.abiogenesis.headless.TileRunner --tiles 2x1 --rank 0 --hosts hostA,hostB
+ * java -cp target/classes com.abiogenesis.headless.TileRunner --tiles 2x1 --rank 1 --hosts hostA,hostB
+ * </pre>
+ *
+ * Rank 0 prints the global statistics at the end; every node prints its own tile's. A seed gives the same
+ * global result whatever the transport and however the nodes are spread over processes.
+ */
+public class TileRunner {
+    private static final String USAGE = String.join("\n",
+        "Usage: TileRunner [options]",
+        "  --tiles CxR           Tiles across and down; one node per tile (default 2x2)",
+        "  --rank R              Run only the node of rank R, connecting to the others over TCP",
+        "  --transport T         memory or socket, for nodes in this process (default memory)",
+        "  --hosts H1,H2,...     Host of each rank, for --rank (default: all on localhost)",
+        "  --port N              Rank r listens on port N + r with sockets (default 47100)",
+        "  --steps N             Number of steps to simulate (default 10000)",
+        "  --seed S              World seed (default 1)",
+        "  --width N             Width of the whole world (default 1600)",
+        "  --height N            Height of the whole world (default 1200)",
+        "  --temperature T       Temperature in Kelvin (default 300)",
+        "  --ph P                pH (default 7)",
+        "  --max-population N    Maximum number of chains in the whole world (default 200)",
+        "  --motifs M1,M2,...    Motifs to track (default METHINKS)",
+        "  --exchange N          Steps between exchanges with stepped kinetics (default 1)",
+        "  --kinetics K          stepped, gillespie or tau-leaping (default stepped); one exchange per leap",
+        "  --leap N              Steps covered per leap with gillespie or tau-leaping kinetics (default 100)",
+        "  --threads N           Threads per node (default 1)",
+        "  --help                Show this message");
+
+    private int columns = 2;
+    private int rows = 2;
+    private Integer rank;
+    private boolean sockets;
+    private String[] hosts;
+    private int port = 47100;
+    private long steps = 10_000;
+    private long seed = 1;
+    private int width = 1600;
+    private int height = 1200;
+    private double temperature = 300.0;
+    private double pH = 7.0;
+    private int maxPopulation = 200;
+    private List<String> motifs = List.of("METHINKS");
+    private int exchangeSteps = 1;
+    private PrimordialSoup.Kinetics kinetics = PrimordialSoup.Kinetics.STEPPED;
+    private Integer leapSteps;
+    private int threads = 1;
+
+    public static void main(String[] args) {
+        TileRunner runner = new TileRunner();
+        try {
+            if (!runner.parseArguments(args)) {
+                System.out.println(USAGE);
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        try {
+            runner.run();
+        } catch (IOException | ExecutionException e) {
+            System.err.println("Error: " + (e instanceof ExecutionException ? e.getCause() : e.getMessage()));
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parses command line options into this runner's settings.
+     * @param args The command line arguments.
+     * @return False if help was requested, true otherwise.
+     * @throws IllegalArgumentException If an option is unknown or its value is invalid.
+     */
+    boolean parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--help") || option.equals("-h")) {
+                return false;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--tiles": {
+                        String[] parts = value.split("x");
+                        if (parts.length != 2) throw new NumberFormatException();
+                        columns = Integer.parseInt(parts[0]);
+                        rows = Integer.parseInt(parts[1]);
+                        break;
+                    }
+                    case "--rank":
+                        rank = Integer.parseInt(value);
+                        break;
+                    case "--transport":
+                        if (!value.equals("memory") && !value.equals("socket")) throw new NumberFormatException();
+                        sockets = value.equals("socket");
+                        break;
+                    case "--hosts":
+                        hosts = value.split(",");
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(value);
+                        break;
+                    case "--steps":
+                        steps = Long.parseLong(value);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--width":
+                        width = Integer.parseInt(value);
+                        break;
+                    case "--height":
+                        height = Integer.parseInt(value);
+                        break;
+                    case "--temperature":
+                        temperature = Double.parseDouble(value);
+                        break;
+                    case "--ph":
+                        pH = Double.parseDouble(value);
+                        break;
+                    case "--max-population":
+                        maxPopulation = Integer.parseInt(value);
+                        break;
+                    case "--motifs":
+                        motifs = Arrays.asList(value.split(","));
+                        break;
+                    case "--exchange":
+                        exchangeSteps = Integer.parseInt(value);
+                        break;
+                    case "--kinetics":
+                        kinetics = BatchRunner.parseKinetics(value);
+                        break;
+                    case "--leap":
+                        leapSteps = Integer.parseInt(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+            }
+        }
+        if (columns < 1 || rows < 1 || steps < 1 || width <= 0 || height <= 0 || exchangeSteps < 1
+                || threads < 1) {
+            throw new IllegalArgumentException("Tiles, steps, width, height, --exchange and --threads must be"
+                + " positive");
+        }
+        if (maxPopulation < 0) {
+            throw new IllegalArgumentException("--max-population must be non-negative");
+        }
+        if (leapSteps != null && leapSteps < 1) {
+            throw new IllegalArgumentException("--leap must be positive");
+        }
+        int size = columns * rows;
+        if (rank != null && (rank < 0 || rank >= size)) {
+            throw new IllegalArgumentException("--rank must be between 0 and " + (size - 1));
+        }
+        if (hosts != null && (rank == null || hosts.length != size)) {
+            throw new IllegalArgumentException("--hosts needs --rank and one host per tile");
+        }
+        return true;
+    }
+
+    /**
+     * Runs this process's nodes to the end and prints their statistics.
+     * @throws IOException If a connection fails.
+     * @throws ExecutionException If a node fails.
+     * @throws InterruptedException If the thread is interrupted while waiting for the nodes.
+     */
+    void run() throws IOException, ExecutionException, InterruptedException {
+        int size = columns * rows;
+        if (rank != null) {
+            String[] nodeHosts = hosts;
+            if (nodeHosts == null) {
+                nodeHosts = new String[size];
+                Arrays.fill(nodeHosts, "localhost");
+            }
+            try (Transport transport = SocketTransport.connect(rank, size, nodeHosts, port)) {
+                print(runNode(transport));
+            }
+            return;
+        }
+
+        System.out.printf("Running %d steps on %dx%d tiles of a %dx%d world (%.1fK, pH %.1f, seed %d,"
+            + " %s transport)%n",
+            steps, columns, rows, width, height, temperature, pH, seed, sockets ? "socket" : "memory");
+        List<Transport> transports = sockets ? null : InProcessTransport.create(size);
+        ExecutorService pool = Executors.newFixedThreadPool(size, task -> {
+            Thread thread = new Thread(task, "tile-node");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<DistributedSoup>> nodes = new ArrayList<>(size);
+        for (int r = 0; r < size; r++) {
+            int nodeRank = r;
+            nodes.add(pool.submit(() -> {
+                try (Transport transport = sockets ? SocketTransport.connectLocal(nodeRank, size, port)
+                        : transports.get(nodeRank)) {
+                    return runNode(transport);
+                }
+            }));
+        }
+        pool.shutdown();
+        long start = System.nanoTime();
+        try {
+            for (Future<DistributedSoup> node : nodes) {
+                node.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%nElapsed: %.3f s (%.1f steps/sec)%n", seconds, steps / seconds);
+        for (Future<DistributedSoup> node : nodes) {
+            print(node.get());
+        }
+    }
+
+    /**
+     * Creates one node's tile and advances it to the end, in lockstep with the other nodes.
+     * @param transport The node's connection to the others.
+     * @return The node's tile.
+     * @throws IOException If an exchange fails.
+     */
+    private DistributedSoup runNode(Transport transport) throws IOException {
+        DistributedSoup node = new DistributedSoup(transport, columns, rows, width, height, temperature, pH, seed);
+        PrimordialSoup soup = node.getSoup();
+        soup.setParallelism(threads);
+        soup.setKinetics(kinetics);
+        if (leapSteps != null) {
+            soup.setLeapSteps(leapSteps);
+        }
+        node.setMotifs(motifs);
+        node.setMaxPopulation(maxPopulation);
+        int span = kinetics == PrimordialSoup.Kinetics.STEPPED ? exchangeSteps : soup.getLeapSteps();
+        try {
+            while (node.getStepCount() < steps) {
+                node.advance((int) Math.min(span, steps - node.getStepCount()));
+            }
+        } finally {
+            node.close();
+        }
+        return node;
+    }
+
+    /**
+     * Prints a node's tile statistics, and the global statistics if it is rank 0.
+     * @param node The node.
+     */
+    private void print(DistributedSoup node) {
+        PrimordialSoup soup = node.getSoup();
+        int nodeRank = node.getTransport().getRank();
+        if (nodeRank == 0) {
+            System.out.println("\n=== Global Statistics ===");
+            System.out.printf("Steps: %d%n", node.getStepCount());
+            System.out.printf("Chains: %d of at most %d (%d molecules)%n", node.getGlobalChainCount(),
+                node.getMaxPopulation(), node.getGlobalMoleculeCount());
+            System.out.printf("Longest chain: %d%n", node.getGlobalMaxLength());
+            System.out.printf("Total reactions: %d%n", node.getGlobalTotalReactions());
+            MotifTracker tracker = soup.getMotifTracker();
+            System.out.println("Motifs:");
+            for (int i = 0; i < tracker.getMatcher().getMotifCount(); i++) {
+                long firstSeen = node.getGlobalFirstSeenStep(i);
+                System.out.printf("  %s: %s, %d chains, %d occurrences%n",
+                    tracker.getMatcher().getMotifs().get(i),
+                    firstSeen < 0 ? "not seen" : "first seen at step " + firstSeen,
+                    node.getGlobalChainCount(i), node.getGlobalOccurrenceCount(i));
+            }
+            System.out.println("Tiles (chains, longest, molecules sent/received):");
+        }
+        System.out.printf("  node %d, tile %d,%d: %d chains, longest %d, %d/%d%n", nodeRank, nodeRank % columns,
+            nodeRank / columns, soup.getPopulationCounters().getAminoAcidCount(),
+            soup.getPopulationCounters().getMaxLength(), node.getMoleculesSent(), node.getMoleculesReceived());
+    }
+}
@@ -2,7 +2,7 @@ package com.abiogenesis.model;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 public class AminoAcidChainGenerator {
     private static final char[] AMINO_ACIDS = {
@@ -11,9 +11,8 @@ public class AminoAcidChainGenerator {
     };
     private static final int MIN_LENGTH = 5;
     private static final int MAX_LENGTH = 20;
-    private static final Random random = new Random();
 
-    public static String generateRandomChain() {
+    public static String generateRandomChain(RandomGenerator random) {
         int length = MIN_LENGTH + random.nextInt(MAX_LENGTH - MIN_LENGTH + 1);
         StringBuilder sb = new StringBuilder(length);
         for (int i = 0; i < length; i++) {
@@ -23,11 +22,11 @@ public class AminoAcidChainGenerator {
         return sb.toString();
     }
 
-    public static List<String> generateRandomChains(int count) {
+    public static List<String> generateRandomChains(int count, RandomGenerator random) {
         List<String> chains = new ArrayList<>();
         for (int i = 0; i < count; i++) {
-            chains.add(generateRandomChain());
+            chains.add(generateRandomChain(random));
         }
         return chains;
     }
-} 
\ No newline at end of file
+}
@@ -1,21 +1,34 @@
 package com.abiogenesis.model;
 
+import java.util.AbstractList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
 /**
  * Represents a chain of amino acids (a simple polypeptide) in the simulation.
  * Each chain has a sequence of amino acids, an energy value, and atomic composition.
- * Provides methods for random generation, mutation, combination, and degradation (not currently used).
+ * Provides methods for random generation, mutation, combination, and degradation.
+ * All randomness comes from a caller-supplied {@link RandomGenerator}, so runs are reproducible from a seed
+ * and concurrent callers can each use their own stream.
+ *
+ * The sequence is held as a packed {@link AminoAcidSequence}; mutations build the new packed sequence
+ * directly instead of concatenating substrings. The atomic composition is not stored: it is derived from
+ * the chain length on demand, using shared {@link Atom} flyweights, so creating or mutating a chain
+ * allocates no per-residue objects.
  */
 public class AminoAcidMolecule extends Molecule {
-    private String sequence;
-    // The 20 standard amino acids, represented by their single-letter codes
-    private static final char[] AMINO_ACIDS = {
-        'A', 'R', 'N', 'D', 'C', 'Q', 'E', 'G', 'H', 'I',
-        'L', 'K', 'M', 'F', 'P', 'S', 'T', 'W', 'Y', 'V'
-    };
-    // Controls how likely a chain is to degrade (not used in current phase)
+    // Replaced only by an equal instance (see shareSequence), so the chain's value never changes
+    private AminoAcidSequence sequence;
+    // Controls how likely a chain is to degrade
     private static final double DEGRADATION_RATE = 0.05; // Reduced from 0.1 to make degradation slower
-    // Minimum energy required for a chain to participate in reactions (not used in current phase)
+    // Minimum energy required for a chain to participate in reactions
     private static final double REACTION_THRESHOLD = 0.7; // Energy threshold for reactions
+    // The simple atomic backbone (C, N, O, H) contributed by each amino acid in the chain
+    private static final Atom[] BACKBONE = {Atom.CARBON, Atom.NITROGEN, Atom.OXYGEN, Atom.HYDROGEN};
+    // Shared "AA<length>" names, so chains of the same length don't each build their own String
+    private static final String[] NAMES = new String[256];
 
     /**
      * Creates a new amino acid chain with the given sequence and energy.
@@ -23,39 +36,104 @@ public class AminoAcidMolecule extends Molecule {
      * @param energy The energy value of the chain.
      */
     public AminoAcidMolecule(String sequence, double energy) {
-        super("AA" + sequence.length(), energy);
+        this(AminoAcidSequence.of(sequence), energy);
+    }
+
+    /**
+     * Creates a new amino acid chain with the given packed sequence and energy.
+     * @param sequence The packed sequence of amino acids.
+     * @param energy The energy value of the chain.
+     */
+    public AminoAcidMolecule(AminoAcidSequence sequence, double energy) {
+        super(nameFor(sequence.length()), energy);
         this.sequence = sequence;
-        // For each amino acid in the chain, add a simple atomic backbone (C, N, O, H)
-        for (int i = 0; i < sequence.length(); i++) {
-            addAtom(new Atom("C", 6, 12.011)); // Carbon backbone
-            addAtom(new Atom("N", 7, 14.007)); // Nitrogen
-            addAtom(new Atom("O", 8, 15.999)); // Oxygen
-            addAtom(new Atom("H", 1, 1.008));  // Hydrogen
+    }
+
+    /**
+     * Returns the atoms of this chain: one C, N, O and H backbone group per amino acid.
+     * The list is a read-only view over shared atom instances, computed from the chain length.
+     * @return The list of atoms.
+     */
+    @Override
+    public List<Atom> getAtoms() {
+        int atomCount = sequence.length() * BACKBONE.length;
+        return new AbstractList<Atom>() {
+            @Override
+            public Atom get(int index) {
+                if (index < 0 || index >= atomCount) {
+                    throw new IndexOutOfBoundsException("Index " + index + " out of range for size " + atomCount);
+                }
+                return BACKBONE[index % BACKBONE.length];
+            }
+
+            @Override
+            public int size() {
+                return atomCount;
+            }
+        };
+    }
+
+    /**
+     * Returns the atomic composition of this chain without enumerating its atoms.
+     * @return The element counts (C, N, O, H).
+     */
+    @Override
+    public Map<String, Integer> getElementCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Atom atom : BACKBONE) {
+            counts.put(atom.getElement(), sequence.length());
         }
+        return counts;
     }
 
     /**
      * Returns the amino acid sequence of this chain.
+     * The String is unpacked on every call; hot paths should use {@link #getPackedSequence()}.
      * @return The sequence as a string of single-letter codes.
      */
     public String getSequence() {
+        return sequence.toString();
+    }
+
+    /**
+     * Returns the packed amino acid sequence of this chain.
+     * @return The packed sequence.
+     */
+    public AminoAcidSequence getPackedSequence() {
         return sequence;
     }
 
+    /**
+     * Replaces this chain's sequence with an equal instance, so that chains with the same sequence can share
+     * one packed copy. The chain's value does not change.
+     * @param canonical A sequence equal to this chain's.
+     * @throws IllegalArgumentException If the sequence is not equal to this chain's.
+     */
+    public void shareSequence(AminoAcidSequence canonical) {
+        if (canonical != sequence && !canonical.equals(sequence)) {
+            throw new IllegalArgumentException("Sequence " + canonical + " differs from " + sequence);
+        }
+        this.sequence = canonical;
+    }
+
+    /**
+     * Returns the number of amino acids in this chain.
+     * @return The chain length.
+     */
+    public int getLength() {
+        return sequence.length();
+    }
+
     /**
      * Generates a random amino acid chain of length between minLength and maxLength (inclusive).
      * @param minLength The minimum length of the chain.
      * @param maxLength The maximum length of the chain.
+     * @param random The random generator to draw from.
      * @return A new AminoAcidMolecule with a random sequence.
      */
-    public static AminoAcidMolecule generateRandom(int minLength, int maxLength) {
-        int length = minLength + (int)(Math.random() * (maxLength - minLength + 1));
-        StringBuilder sb = new StringBuilder(length);
-        for (int i = 0; i < length; i++) {
-            char aa = AMINO_ACIDS[(int)(Math.random() * AMINO_ACIDS.length)];
-            sb.append(aa);
-        }
-        return new AminoAcidMolecule(sb.toString(), 1.0 + (length * 0.1));
+    public static AminoAcidMolecule generateRandom(int minLength, int maxLength, RandomGenerator random) {
+        int length = minLength + random.nextInt(maxLength - minLength + 1);
+        return new AminoAcidMolecule(AminoAcidSequence.random(length, random), 1.0 + (length * 0.1));
     }
 
     /**
@@ -66,28 +144,27 @@ public class AminoAcidMolecule extends Molecule {
      * @return A new AminoAcidMolecule representing the combined chain.
      */
     public static AminoAcidMolecule combine(AminoAcidMolecule m1, AminoAcidMolecule m2) {
-        String newSequence = m1.getSequence() + m2.getSequence();
+        AminoAcidSequence newSequence = m1.sequence.concat(m2.sequence);
         double newEnergy = m1.getEnergy() + m2.getEnergy() - 0.5; // Energy cost of combination
         return new AminoAcidMolecule(newSequence, newEnergy);
     }
 
     /**
      * Returns a new chain representing a degraded version of this one (shorter sequence).
-     * Not used in the current phase.
+     * @param random The random generator to draw from.
      * @return A new AminoAcidMolecule with a shorter sequence, or null if already length 1.
      */
-    public AminoAcidMolecule degrade() {
+    public AminoAcidMolecule degrade(RandomGenerator random) {
         if (sequence.length() <= 1) return null;
         // Randomly choose a position to split the chain
-        int splitPoint = (int)(Math.random() * (sequence.length() - 1)) + 1;
-        String newSequence = sequence.substring(0, splitPoint);
+        int splitPoint = random.nextInt(sequence.length() - 1) + 1;
+        AminoAcidSequence newSequence = sequence.prefix(splitPoint);
         double newEnergy = getEnergy() * 0.6; // Energy loss during degradation
         return new AminoAcidMolecule(newSequence, newEnergy);
     }
 
     /**
      * Checks if this chain and another can react (based on energy).
-     * Not used in the current phase.
      * @param other The other amino acid chain.
      * @return True if both have enough energy, false otherwise.
      */
@@ -97,58 +174,79 @@ public class AminoAcidMolecule extends Molecule {
 
     /**
      * Returns the probability that this chain will degrade (longer chains degrade more easily).
-     * Not used in the current phase.
      * @return The degradation probability.
      */
     public double getDegradationProbability() {
-        return DEGRADATION_RATE * (1.0 + (sequence.length() * 0.05));
+        return degradationProbability(sequence.length());
+    }
+
+    /**
+     * Returns the probability that a chain of a given length will degrade. It grows with the length,
+     * so the longest chain in a population bounds it for the whole population.
+     * @param length The chain length.
+     * @return The degradation probability.
+     */
+    public static double degradationProbability(int length) {
+        return DEGRADATION_RATE * (1.0 + (length * 0.05));
     }
 
     /**
      * Returns a new chain with a single random amino acid substituted for another.
+     * @param random The random generator to draw from.
      * @return The mutated chain.
      */
-    public AminoAcidMolecule mutateSubstitution() {
+    public AminoAcidMolecule mutateSubstitution(RandomGenerator random) {
         if (sequence.length() == 0) return this;
-        int pos = (int)(Math.random() * sequence.length());
-        char[] chars = sequence.toCharArray();
-        chars[pos] = AMINO_ACIDS[(int)(Math.random() * AMINO_ACIDS.length)];
-        return new AminoAcidMolecule(new String(chars), getEnergy());
+        int pos = random.nextInt(sequence.length());
+        int residue = random.nextInt(AminoAcidSequence.ALPHABET_SIZE);
+        return new AminoAcidMolecule(sequence.substitute(pos, residue), getEnergy());
     }
 
     /**
      * Returns a new chain with a random amino acid inserted at a random position.
+     * @param random The random generator to draw from.
      * @return The mutated chain.
      */
-    public AminoAcidMolecule mutateInsertion() {
-        int pos = (int)(Math.random() * (sequence.length() + 1));
-        char insert = AMINO_ACIDS[(int)(Math.random() * AMINO_ACIDS.length)];
-        String newSeq = sequence.substring(0, pos) + insert + sequence.substring(pos);
-        return new AminoAcidMolecule(newSeq, getEnergy());
+    public AminoAcidMolecule mutateInsertion(RandomGenerator random) {
+        int pos = random.nextInt(sequence.length() + 1);
+        int residue = random.nextInt(AminoAcidSequence.ALPHABET_SIZE);
+        return new AminoAcidMolecule(sequence.insert(pos, residue), getEnergy());
     }
 
     /**
      * Returns a new chain with a single amino acid deleted (if length > 1).
+     * @param random The random generator to draw from.
      * @return The mutated chain.
      */
-    public AminoAcidMolecule mutateDeletion() {
+    public AminoAcidMolecule mutateDeletion(RandomGenerator random) {
         if (sequence.length() <= 1) return this;
-        int pos = (int)(Math.random() * sequence.length());
-        String newSeq = sequence.substring(0, pos) + sequence.substring(pos + 1);
-        return new AminoAcidMolecule(newSeq, getEnergy());
+        int pos = random.nextInt(sequence.length());
+        return new AminoAcidMolecule(sequence.delete(pos), getEnergy());
     }
 
     /**
      * Returns a new chain created by recombining (crossover) with another chain.
      * The new chain is a mix of the two parent sequences.
      * @param other The other parent chain.
+     * @param random The random generator to draw from.
      * @return The recombined chain.
      */
-    public AminoAcidMolecule crossover(AminoAcidMolecule other) {
+    public AminoAcidMolecule crossover(AminoAcidMolecule other, RandomGenerator random) {
         if (sequence.length() == 0 || other.sequence.length() == 0) return this;
-        int pos1 = (int)(Math.random() * sequence.length());
-        int pos2 = (int)(Math.random() * other.sequence.length());
-        String newSeq = sequence.substring(0, pos1) + other.sequence.substring(pos2);
+        int pos1 = random.nextInt(sequence.length());
+        int pos2 = random.nextInt(other.sequence.length());
+        AminoAcidSequence newSeq = AminoAcidSequence.splice(sequence, pos1, other.sequence, pos2);
         return new AminoAcidMolecule(newSeq, (getEnergy() + other.getEnergy()) / 2.0);
     }
-} 
\ No newline at end of file
+
+    private static String nameFor(int length) {
+        if (length >= NAMES.length) return "AA" + length;
+        String name = NAMES[length];
+        if (name == null) {
+            // Benign race: concurrent callers may each build the same String once
+            name = "AA" + length;
+            NAMES[length] = name;
+        }
+        return name;
+    }
+}
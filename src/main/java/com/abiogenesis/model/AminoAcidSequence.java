@@ -0,0 +1,333 @@
+package com.abiogenesis.model;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * An immutable amino acid sequence packed at 5 bits per residue into a {@code long[]}
+ * (12 residues per word), instead of one {@code char} per residue in a String.
+ * A 20-residue chain fits in two longs.
+ *
+ * Residues are identified by a code from 0 to 19, in the order of {@link #RESIDUES}.
+ * Mutation operations are copy-on-write: they return a new sequence built with bit operations,
+ * without any intermediate Strings or char arrays.
+ */
+public final class AminoAcidSequence {
+    /** The number of distinct residues. */
+    public static final int ALPHABET_SIZE = 20;
+    // The 20 standard amino acids, indexed by residue code
+    private static final char[] RESIDUES = {
+        'A', 'R', 'N', 'D', 'C', 'Q', 'E', 'G', 'H', 'I',
+        'L', 'K', 'M', 'F', 'P', 'S', 'T', 'W', 'Y', 'V'
+    };
+    private static final byte[] CODES = new byte[128];
+    private static final int BITS_PER_RESIDUE = 5;
+    private static final int RESIDUES_PER_WORD = 12;
+    private static final long RESIDUE_MASK = (1L << BITS_PER_RESIDUE) - 1;
+
+    static {
+        Arrays.fill(CODES, (byte) -1);
+        for (int i = 0; i < RESIDUES.length; i++) {
+            CODES[RESIDUES[i]] = (byte) i;
+        }
+    }
+
+    private final long[] words;
+    private final int length;
+    private int hash;
+
+    private AminoAcidSequence(long[] words, int length) {
+        this.words = words;
+        this.length = length;
+    }
+
+    /**
+     * Packs a sequence of single-letter amino acid codes.
+     * @param sequence The sequence, e.g. "METHINKS".
+     * @return The packed sequence.
+     * @throws IllegalArgumentException If the sequence contains a letter that is not a standard amino acid.
+     */
+    public static AminoAcidSequence of(String sequence) {
+        int length = sequence.length();
+        long[] words = allocate(length);
+        for (int i = 0; i < length; i++) {
+            put(words, i, codeOf(sequence.charAt(i)));
+        }
+        return new AminoAcidSequence(words, length);
+    }
+
+    /**
+     * Creates a sequence of uniformly random residues.
+     * @param length The length of the sequence.
+     * @param random The random generator to draw from.
+     * @return The random sequence.
+     */
+    public static AminoAcidSequence random(int length, RandomGenerator random) {
+        long[] words = allocate(length);
+        for (int i = 0; i < length; i++) {
+            put(words, i, random.nextInt(ALPHABET_SIZE));
+        }
+        return new AminoAcidSequence(words, length);
+    }
+
+    /**
+     * Recreates a sequence from packed words, as written by {@link #copyWords}.
+     * @param source The array holding the words.
+     * @param offset The index of the first word.
+     * @param length The number of residues.
+     * @return The sequence.
+     * @throws IllegalArgumentException If the words hold an invalid residue code or stray bits past the end.
+     */
+    public static AminoAcidSequence fromWords(long[] source, int offset, int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Negative length: " + length);
+        }
+        long[] words = Arrays.copyOfRange(source, offset, offset + wordCount(length));
+        for (int i = 0; i < length; i++) {
+            if (get(words, i) >= ALPHABET_SIZE) {
+                throw new IllegalArgumentException("Invalid residue code at " + i);
+            }
+        }
+        int used = length % RESIDUES_PER_WORD;
+        if (used != 0 && (words[words.length - 1] >>> (used * BITS_PER_RESIDUE)) != 0) {
+            throw new IllegalArgumentException("Bits set past the end of the sequence");
+        }
+        return new AminoAcidSequence(words, length);
+    }
+
+    /**
+     * Returns the number of packed words a sequence of the given length occupies.
+     * @param length The number of residues.
+     * @return The word count.
+     */
+    public static int wordCount(int length) {
+        return (length + RESIDUES_PER_WORD - 1) / RESIDUES_PER_WORD;
+    }
+
+    /**
+     * Copies the packed words of this sequence, for compact serialization.
+     * @param dest The destination array.
+     * @param offset The index of the first word written.
+     * @return The number of words written, {@link #wordCount(int) wordCount(length())}.
+     */
+    public int copyWords(long[] dest, int offset) {
+        System.arraycopy(words, 0, dest, offset, words.length);
+        return words.length;
+    }
+
+    /**
+     * Returns the residue code of a single-letter amino acid.
+     * @param residue The single-letter code.
+     * @return The residue code, from 0 to 19.
+     * @throws IllegalArgumentException If the letter is not a standard amino acid.
+     */
+    public static int codeOf(char residue) {
+        int code = residue < CODES.length ? CODES[residue] : -1;
+        if (code < 0) {
+            throw new IllegalArgumentException("Not a standard amino acid: '" + residue + "'");
+        }
+        return code;
+    }
+
+    /**
+     * Returns the single-letter amino acid for a residue code.
+     * @param code The residue code, from 0 to 19.
+     * @return The single-letter code.
+     */
+    public static char residueOf(int code) {
+        return RESIDUES[code];
+    }
+
+    private static void checkCode(int code) {
+        if (code < 0 || code >= ALPHABET_SIZE) {
+            throw new IllegalArgumentException("Not a residue code: " + code);
+        }
+    }
+
+    /**
+     * Returns the number of residues.
+     * @return The length.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the residue code at a position.
+     * @param index The position.
+     * @return The residue code.
+     */
+    public int codeAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range for length " + length);
+        }
+        return get(words, index);
+    }
+
+    /**
+     * Returns the single-letter amino acid at a position.
+     * @param index The position.
+     * @return The single-letter code.
+     */
+    public char charAt(int index) {
+        return RESIDUES[codeAt(index)];
+    }
+
+    /**
+     * Returns a copy with the residue at a position replaced.
+     * @param index The position.
+     * @param code The new residue code, from 0 to 19.
+     * @return The new sequence.
+     * @throws IllegalArgumentException If the code is not a residue code.
+     */
+    public AminoAcidSequence substitute(int index, int code) {
+        codeAt(index);
+        checkCode(code);
+        long[] copy = words.clone();
+        put(copy, index, code);
+        return new AminoAcidSequence(copy, length);
+    }
+
+    /**
+     * Returns a copy with a residue inserted before a position.
+     * @param index The insertion point, from 0 to length().
+     * @param code The inserted residue code, from 0 to 19.
+     * @return The new sequence.
+     * @throws IllegalArgumentException If the code is not a residue code.
+     */
+    public AminoAcidSequence insert(int index, int code) {
+        if (index < 0 || index > length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range for length " + length);
+        }
+        checkCode(code);
+        long[] result = allocate(length + 1);
+        copy(words, 0, result, 0, index);
+        put(result, index, code);
+        copy(words, index, result, index + 1, length - index);
+        return new AminoAcidSequence(result, length + 1);
+    }
+
+    /**
+     * Returns a copy with the residue at a position removed.
+     * @param index The position.
+     * @return The new sequence.
+     */
+    public AminoAcidSequence delete(int index) {
+        codeAt(index);
+        long[] result = allocate(length - 1);
+        copy(words, 0, result, 0, index);
+        copy(words, index + 1, result, index, length - index - 1);
+        return new AminoAcidSequence(result, length - 1);
+    }
+
+    /**
+     * Returns the first residues of this sequence.
+     * @param end The number of residues to keep.
+     * @return The prefix.
+     */
+    public AminoAcidSequence prefix(int end) {
+        if (end < 0 || end > length) {
+            throw new IndexOutOfBoundsException("End " + end + " out of range for length " + length);
+        }
+        long[] result = allocate(end);
+        copy(words, 0, result, 0, end);
+        return new AminoAcidSequence(result, end);
+    }
+
+    /**
+     * Returns this sequence followed by another.
+     * @param other The sequence to append.
+     * @return The concatenation.
+     */
+    public AminoAcidSequence concat(AminoAcidSequence other) {
+        return splice(this, length, other, 0);
+    }
+
+    /**
+     * Joins the start of one sequence to the end of another, as in single-point crossover.
+     * @param head The sequence providing the beginning.
+     * @param headEnd The number of residues taken from head.
+     * @param tail The sequence providing the end.
+     * @param tailStart The position in tail from which residues are taken.
+     * @return head[0, headEnd) followed by tail[tailStart, tail.length()).
+     */
+    public static AminoAcidSequence splice(AminoAcidSequence head, int headEnd, AminoAcidSequence tail, int tailStart) {
+        if (headEnd < 0 || headEnd > head.length || tailStart < 0 || tailStart > tail.length) {
+            throw new IndexOutOfBoundsException("Splice points out of range");
+        }
+        int tailLength = tail.length - tailStart;
+        long[] result = allocate(headEnd + tailLength);
+        copy(head.words, 0, result, 0, headEnd);
+        copy(tail.words, tailStart, result, headEnd, tailLength);
+        return new AminoAcidSequence(result, headEnd + tailLength);
+    }
+
+    /**
+     * Checks whether a pattern occurs anywhere in this sequence.
+     * @param pattern The pattern to look for.
+     * @return True if the pattern occurs.
+     */
+    public boolean contains(AminoAcidSequence pattern) {
+        int last = length - pattern.length;
+        outer:
+        for (int start = 0; start <= last; start++) {
+            for (int i = 0; i < pattern.length; i++) {
+                if (get(words, start + i) != get(pattern.words, i)) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AminoAcidSequence)) return false;
+        AminoAcidSequence other = (AminoAcidSequence) o;
+        return length == other.length && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = 31 * Arrays.hashCode(words) + length;
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Unpacks the sequence into single-letter codes.
+     * @return The sequence as a String.
+     */
+    @Override
+    public String toString() {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = RESIDUES[get(words, i)];
+        }
+        return new String(chars);
+    }
+
+    private static long[] allocate(int length) {
+        return new long[wordCount(length)];
+    }
+
+    private static int get(long[] words, int index) {
+        int shift = (index % RESIDUES_PER_WORD) * BITS_PER_RESIDUE;
+        return (int) ((words[index / RESIDUES_PER_WORD] >>> shift) & RESIDUE_MASK);
+    }
+
+    private static void put(long[] words, int index, int code) {
+        int word = index / RESIDUES_PER_WORD;
+        int shift = (index % RESIDUES_PER_WORD) * BITS_PER_RESIDUE;
+        words[word] = (words[word] & ~(RESIDUE_MASK << shift)) | ((long) code << shift);
+    }
+
+    private static void copy(long[] src, int srcIndex, long[] dst, int dstIndex, int count) {
+        for (int i = 0; i < count; i++) {
+            put(dst, dstIndex + i, get(src, srcIndex + i));
+        }
+    }
+}
@@ -1,9 +1,18 @@
 package com.abiogenesis.model;
 
+/**
+ * An immutable chemical element entry. Because atoms carry no per-molecule state, the shared
+ * instances below can be used as flyweights by every molecule instead of allocating new ones.
+ */
 public class Atom {
-    private String element;
-    private int atomicNumber;
-    private double atomicMass;
+    public static final Atom HYDROGEN = new Atom("H", 1, 1.008);
+    public static final Atom CARBON = new Atom("C", 6, 12.011);
+    public static final Atom NITROGEN = new Atom("N", 7, 14.007);
+    public static final Atom OXYGEN = new Atom("O", 8, 15.999);
+
+    private final String element;
+    private final int atomicNumber;
+    private final double atomicMass;
 
     public Atom(String element, int atomicNumber, double atomicMass) {
         this.element = element;
@@ -11,6 +20,24 @@ public class Atom {
         this.atomicMass = atomicMass;
     }
 
+    /**
+     * Returns the shared instance for a standard element, or a new atom for anything else.
+     * Used when reading atoms back from files, so restored molecules share the flyweights.
+     * @param element The element symbol.
+     * @param atomicNumber The atomic number.
+     * @param atomicMass The atomic mass.
+     * @return The atom.
+     */
+    public static Atom valueOf(String element, int atomicNumber, double atomicMass) {
+        for (Atom standard : new Atom[] {HYDROGEN, CARBON, NITROGEN, OXYGEN}) {
+            if (standard.atomicNumber == atomicNumber && standard.atomicMass == atomicMass
+                    && standard.element.equals(element)) {
+                return standard;
+            }
+        }
+        return new Atom(element, atomicNumber, atomicMass);
+    }
+
     public String getElement() {
         return element;
     }
@@ -22,4 +49,4 @@ public class Atom {
     public double getAtomicMass() {
         return atomicMass;
     }
-} 
\ No newline at end of file
+}
@@ -1,18 +1,26 @@
 package com.abiogenesis.model;
 
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a generic chemical molecule in the simulation.
  * Each molecule has a name, an energy value, a list of atoms, and a position in space.
+ * The atoms are fixed when the molecule is created.
  * This class provides the basic structure for all molecules, including amino acid chains.
+ * Once added to a {@link ParticleStore}, the molecule's position and energy live in the store's arrays
+ * and this object acts as a handle onto its slot.
  */
 public class Molecule {
     private String name;
     private double energy;
-    private List<Atom> atoms;
+    // Immutable; shared empty list for molecules without atoms
+    private final List<Atom> atoms;
     private Position position;
+    // The particle store backing this molecule's position and energy, or null when free-standing
+    ParticleStore store;
+    int slot = -1;
 
     /**
      * Creates a new molecule with the given name and energy.
@@ -20,9 +28,19 @@ public class Molecule {
      * @param energy The energy value of the molecule.
      */
     public Molecule(String name, double energy) {
+        this(name, energy, List.of());
+    }
+
+    /**
+     * Creates a new molecule with the given name, energy and atoms.
+     * @param name The name of the molecule (e.g., "H2O", "CH4").
+     * @param energy The energy value of the molecule.
+     * @param atoms The atoms that make up the molecule; the list is copied.
+     */
+    public Molecule(String name, double energy, List<Atom> atoms) {
         this.name = name;
         this.energy = energy;
-        this.atoms = new ArrayList<>();
+        this.atoms = List.copyOf(atoms);
         this.position = new Position(0, 0);
     }
 
@@ -39,6 +57,7 @@ public class Molecule {
      * @return The energy value.
      */
     public double getEnergy() {
+        if (store != null) return store.getEnergyArray()[slot];
         return energy;
     }
 
@@ -47,38 +66,78 @@ public class Molecule {
      * @param energy The new energy value.
      */
     public void setEnergy(double energy) {
-        this.energy = energy;
+        if (store != null) {
+            store.getEnergyArray()[slot] = energy;
+        } else {
+            this.energy = energy;
+        }
     }
 
     /**
      * Returns the list of atoms that make up this molecule.
-     * @return The list of atoms.
+     * @return The list of atoms (read-only).
      */
     public List<Atom> getAtoms() {
         return atoms;
     }
 
     /**
-     * Adds an atom to this molecule.
-     * @param atom The atom to add.
+     * Returns the atomic composition as a histogram of element symbol to atom count,
+     * in order of first appearance.
+     * @return The element counts.
      */
-    public void addAtom(Atom atom) {
-        atoms.add(atom);
+    public Map<String, Integer> getElementCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Atom atom : getAtoms()) {
+            counts.merge(atom.getElement(), 1, Integer::sum);
+        }
+        return counts;
     }
 
     /**
      * Returns the position of this molecule in the simulation space.
+     * While the molecule belongs to a particle store the returned object is a view onto its slot; it stays
+     * valid after the molecule is removed, holding the molecule's last position.
      * @return The position object.
      */
     public Position getPosition() {
+        if (store != null && !(position instanceof ParticleStore.SlotPosition)) {
+            position = new ParticleStore.SlotPosition(this);
+        }
         return position;
     }
 
     /**
      * Sets the position of this molecule in the simulation space.
+     * While the molecule belongs to a particle store the coordinates are copied into its slot.
      * @param position The new position.
      */
     public void setPosition(Position position) {
-        this.position = position;
+        if (store != null) {
+            getPosition().setX(position.getX());
+            getPosition().setY(position.getY());
+        } else {
+            this.position = position;
+        }
+    }
+
+    /**
+     * Binds this molecule to a slot of a particle store. The position view is created lazily.
+     */
+    void attach(ParticleStore store, int slot) {
+        this.store = store;
+        this.slot = slot;
+    }
+
+    /**
+     * Releases this molecule from its particle store, copying its last state into the molecule and into
+     * the position object already handed out, which keeps reporting that position.
+     */
+    void detach(double x, double y, double energy) {
+        this.store = null;
+        this.slot = -1;
+        this.energy = energy;
+        position.setX(x);
+        position.setY(y);
     }
 } 
\ No newline at end of file
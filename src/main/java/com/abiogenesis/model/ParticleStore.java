@@ -0,0 +1,267 @@
+package com.abiogenesis.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Structure-of-arrays storage for the particles of a simulation.
+ * Positions, energies and type codes are kept in parallel primitive arrays indexed by slot,
+ * so per-step passes such as Brownian motion and boundary clamping run as tight loops over
+ * {@code double[]} instead of chasing a {@link Position} object per molecule.
+ *
+ * A {@link Molecule} added to the store becomes a lightweight handle: its position and energy
+ * accessors read and write the store's arrays through its slot. Removal is swap-with-last,
+ * so slots are dense but not stable across removals.
+ */
+public class ParticleStore {
+    /** Type code for plain molecules (water, methane, ...). */
+    public static final byte TYPE_MOLECULE = 0;
+    /** Type code for amino acid chains. */
+    public static final byte TYPE_AMINO_ACID = 1;
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private double[] x;
+    private double[] y;
+    private double[] energy;
+    private byte[] type;
+    private Molecule[] molecules;
+    private int size;
+    private final List<Molecule> view = new MoleculeListView();
+
+    /**
+     * Creates an empty store with a small default capacity.
+     */
+    public ParticleStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty store able to hold the given number of particles before growing.
+     * @param initialCapacity The initial capacity.
+     */
+    public ParticleStore(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.energy = new double[capacity];
+        this.type = new byte[capacity];
+        this.molecules = new Molecule[capacity];
+    }
+
+    /**
+     * Adds a molecule to the store, copying its current position and energy into the arrays.
+     * From then on the molecule's position and energy are backed by the store.
+     * @param molecule The molecule to add (must not already belong to a store).
+     * @return The slot the molecule was placed in.
+     */
+    public int add(Molecule molecule) {
+        if (molecule.store != null) {
+            throw new IllegalArgumentException("Molecule already belongs to a particle store");
+        }
+        ensureCapacity(size + 1);
+        int slot = size++;
+        Position pos = molecule.getPosition();
+        x[slot] = pos.getX();
+        y[slot] = pos.getY();
+        energy[slot] = molecule.getEnergy();
+        type[slot] = typeOf(molecule);
+        molecules[slot] = molecule;
+        molecule.attach(this, slot);
+        return slot;
+    }
+
+    /**
+     * Replaces the molecule in a slot. The replacement inherits the slot's position,
+     * while its own energy and type are written into the arrays. The previous molecule is detached
+     * and keeps a free-standing copy of its last position and energy.
+     * @param slot The slot to replace.
+     * @param molecule The new molecule (must not already belong to a store).
+     * @return The molecule previously held in the slot.
+     */
+    public Molecule set(int slot, Molecule molecule) {
+        checkSlot(slot);
+        if (molecule.store != null) {
+            throw new IllegalArgumentException("Molecule already belongs to a particle store");
+        }
+        Molecule previous = molecules[slot];
+        double newEnergy = molecule.getEnergy();
+        previous.detach(x[slot], y[slot], energy[slot]);
+        energy[slot] = newEnergy;
+        type[slot] = typeOf(molecule);
+        molecules[slot] = molecule;
+        molecule.attach(this, slot);
+        return previous;
+    }
+
+    /**
+     * Removes the molecule in a slot by moving the last particle into it.
+     * @param slot The slot to remove.
+     * @return The removed molecule, now detached from the store.
+     */
+    public Molecule remove(int slot) {
+        checkSlot(slot);
+        Molecule removed = molecules[slot];
+        removed.detach(x[slot], y[slot], energy[slot]);
+        int last = --size;
+        if (slot != last) {
+            x[slot] = x[last];
+            y[slot] = y[last];
+            energy[slot] = energy[last];
+            type[slot] = type[last];
+            molecules[slot] = molecules[last];
+            molecules[slot].slot = slot;
+        }
+        molecules[last] = null;
+        return removed;
+    }
+
+    /**
+     * Removes every particle from the store.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            molecules[i].detach(x[i], y[i], energy[i]);
+            molecules[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Returns the molecule held in a slot.
+     * @param slot The slot index.
+     * @return The molecule.
+     */
+    public Molecule get(int slot) {
+        checkSlot(slot);
+        return molecules[slot];
+    }
+
+    /**
+     * Returns the number of particles in the store.
+     * @return The particle count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a read-only list view of the molecules, in slot order.
+     * @return The molecule list view.
+     */
+    public List<Molecule> asList() {
+        return view;
+    }
+
+    /**
+     * Returns the backing array of x coordinates. Only indices below {@link #size()} are meaningful,
+     * and the array is replaced when the store grows, so callers should not keep it across adds.
+     * @return The x coordinate array.
+     */
+    public double[] getXArray() {
+        return x;
+    }
+
+    /**
+     * Returns the backing array of y coordinates (see {@link #getXArray()}).
+     * @return The y coordinate array.
+     */
+    public double[] getYArray() {
+        return y;
+    }
+
+    /**
+     * Returns the backing array of energies (see {@link #getXArray()}).
+     * @return The energy array.
+     */
+    public double[] getEnergyArray() {
+        return energy;
+    }
+
+    /**
+     * Returns the backing array of type codes (see {@link #getXArray()}).
+     * @return The type code array.
+     */
+    public byte[] getTypeArray() {
+        return type;
+    }
+
+    private static byte typeOf(Molecule molecule) {
+        return molecule instanceof AminoAcidMolecule ? TYPE_AMINO_ACID : TYPE_MOLECULE;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= molecules.length) return;
+        int capacity = Math.max(required, molecules.length + (molecules.length >> 1));
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        energy = Arrays.copyOf(energy, capacity);
+        type = Arrays.copyOf(type, capacity);
+        molecules = Arrays.copyOf(molecules, capacity);
+    }
+
+    private void checkSlot(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " out of range for size " + size);
+        }
+    }
+
+    /**
+     * Position view that reads and writes the owning molecule's slot while the molecule belongs to a store.
+     * Once the molecule is removed, its last coordinates are copied into the view, so references to it held
+     * by the view or listeners stay valid.
+     */
+    static final class SlotPosition extends Position {
+        private final Molecule owner;
+
+        SlotPosition(Molecule owner) {
+            super(0, 0);
+            this.owner = owner;
+        }
+
+        @Override
+        public double getX() {
+            ParticleStore store = owner.store;
+            return store == null ? super.getX() : store.x[owner.slot];
+        }
+
+        @Override
+        public void setX(double value) {
+            ParticleStore store = owner.store;
+            if (store == null) {
+                super.setX(value);
+            } else {
+                store.x[owner.slot] = value;
+            }
+        }
+
+        @Override
+        public double getY() {
+            ParticleStore store = owner.store;
+            return store == null ? super.getY() : store.y[owner.slot];
+        }
+
+        @Override
+        public void setY(double value) {
+            ParticleStore store = owner.store;
+            if (store == null) {
+                super.setY(value);
+            } else {
+                store.y[owner.slot] = value;
+            }
+        }
+    }
+
+    private final class MoleculeListView extends AbstractList<Molecule> {
+        @Override
+        public Molecule get(int index) {
+            return ParticleStore.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -26,8 +26,8 @@ public class Position {
     }
 
     public double distanceTo(Position other) {
-        double dx = this.x - other.x;
-        double dy = this.y - other.y;
+        double dx = getX() - other.getX();
+        double dy = getY() - other.getY();
         return Math.sqrt(dx * dx + dy * dy);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,98 @@
+package com.abiogenesis.model;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A small, fast, splittable pseudo-random generator (the SplitMix64 algorithm used by
+ * {@link java.util.SplittableRandom}). Instances are not thread-safe; instead, each thread or
+ * work partition takes its own stream via {@link #split()}, so streams never contend and a run
+ * is reproducible from its seed.
+ *
+ * Unlike {@code SplittableRandom}, the internal state is exposed through {@link #getSeed()} and
+ * {@link #getGamma()}, so a generator can be saved and restored exactly.
+ */
+public final class SplitMixRandom implements RandomGenerator {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long seed;
+    private final long gamma;
+
+    /**
+     * Creates a generator from a seed.
+     * @param seed The seed; equal seeds produce equal sequences.
+     */
+    public SplitMixRandom(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    /**
+     * Recreates a generator from saved state.
+     * @param seed The saved seed (see {@link #getSeed()}).
+     * @param gamma The saved gamma (see {@link #getGamma()}); must be odd.
+     */
+    public SplitMixRandom(long seed, long gamma) {
+        if ((gamma & 1L) == 0) {
+            throw new IllegalArgumentException("Gamma must be odd: " + gamma);
+        }
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * Returns a new generator whose stream is statistically independent of this one.
+     * Advances this generator's state.
+     * @return The split-off generator.
+     */
+    public SplitMixRandom split() {
+        return new SplitMixRandom(nextLong(), mixGamma(nextSeed()));
+    }
+
+    @Override
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    @Override
+    public int nextInt() {
+        return mix32(nextSeed());
+    }
+
+    /**
+     * Returns the current seed, part of the generator's state.
+     * @return The seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the gamma (stream increment), part of the generator's state.
+     * @return The gamma.
+     */
+    public long getGamma() {
+        return gamma;
+    }
+
+    private long nextSeed() {
+        return seed += gamma;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
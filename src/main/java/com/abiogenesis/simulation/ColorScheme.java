@@ -0,0 +1,17 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.Molecule;
+
+/**
+ * Maps a molecule to the packed ARGB colour stored in published frames.
+ * Supplied by the view, so the simulation package needs no knowledge of the GUI toolkit.
+ * Called on the simulation thread for every molecule of every published frame, so it should be cheap.
+ */
+public interface ColorScheme {
+    /**
+     * Returns the colour of a molecule.
+     * @param molecule The molecule.
+     * @return The colour as 0xAARRGGBB.
+     */
+    int argb(Molecule molecule);
+}
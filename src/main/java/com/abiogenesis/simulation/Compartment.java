@@ -0,0 +1,323 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.AminoAcidMolecule;
+import com.abiogenesis.model.Molecule;
+import com.abiogenesis.model.ParticleStore;
+import com.abiogenesis.model.SplitMixRandom;
+import java.util.Arrays;
+
+/**
+ * A protocell: a circular region of a soup enclosed by a membrane, with its own molecules and conditions.
+ *
+ * The interior is a separate {@link PrimordialSoup} covering the square around the circle, in local
+ * coordinates: local (0, 0) is the square's corner. It has its own temperature, pH, rates and random streams,
+ * and steps independently of the soup outside, so compartments can run on separate threads (see
+ * {@link CompartmentSystem}). Molecules only pass between inside and outside when the system exchanges them
+ * across the membrane:
+ * <ul>
+ *   <li>An interior molecule that has drifted outside the circle crosses out with the probability given by
+ *       the {@link Permeability}; otherwise it is reflected back in across the membrane.</li>
+ *   <li>An outside molecule that has drifted into the circle crosses in with the probability given by the
+ *       permeability; otherwise it is reflected back out.</li>
+ * </ul>
+ * A crossing molecule leaves one soup and is added to the other (listeners see a removal and an
+ * {@link SoupListener.Origin#ADDED} birth), keeping its position.
+ */
+public class Compartment {
+    /**
+     * Decides how readily molecules cross the membrane.
+     */
+    @FunctionalInterface
+    public interface Permeability {
+        /**
+         * Returns the probability that a molecule at the membrane crosses it in one exchange.
+         * @param molecule The molecule.
+         * @param inward True if the molecule is entering the compartment, false if it is leaving.
+         * @return The crossing probability, between 0 and 1.
+         */
+        double crossingProbability(Molecule molecule, boolean inward);
+
+        /**
+         * Returns a membrane that nothing crosses.
+         * @return The permeability.
+         */
+        static Permeability impermeable() {
+            return (molecule, inward) -> 0.0;
+        }
+
+        /**
+         * Returns a membrane that lets short chains through and holds longer ones, as a lipid membrane lets
+         * monomers in but traps the polymers made from them. Molecules other than chains do not cross.
+         * @param maxLength The longest chain that can cross.
+         * @param probability The probability that a short enough chain crosses, in either direction.
+         * @return The permeability.
+         */
+        static Permeability byLength(int maxLength, double probability) {
+            return (molecule, inward) -> molecule instanceof AminoAcidMolecule
+                && ((AminoAcidMolecule) molecule).getLength() <= maxLength ? probability : 0.0;
+        }
+    }
+
+    private final double x;
+    private final double y;
+    private final double radius;
+    private final PrimordialSoup soup;
+    // Local coordinates of the centre: the interior soup is the square of side 2 * half around it
+    private final double half;
+    private Permeability permeability;
+    private long moleculesIn;
+    private long moleculesOut;
+    // Exchange scratch: slots crossing the membrane, and outside slots within it
+    private final IntList crossing = new IntList();
+    private final IntList candidates = new IntList();
+
+    /**
+     * Creates a compartment around an empty interior soup. Called by {@link CompartmentSystem}.
+     * @param x The x coordinate of the centre, outside.
+     * @param y The y coordinate of the centre, outside.
+     * @param radius The radius of the membrane.
+     * @param soup The interior, a square soup at least 2 * radius wide.
+     * @param permeability The membrane's permeability.
+     */
+    Compartment(double x, double y, double radius, PrimordialSoup soup, Permeability permeability) {
+        this.x = x;
+        this.y = y;
+        this.radius = radius;
+        this.soup = soup;
+        this.half = soup.getWidth() / 2.0;
+        this.permeability = permeability;
+    }
+
+    /**
+     * Moves every molecule of the outside soup that lies within the membrane into the compartment, as when
+     * a membrane closes around a patch of the soup.
+     * @param outside The soup outside.
+     */
+    void enclose(PrimordialSoup outside) {
+        collectInside(outside);
+        moveInto(outside, candidates);
+        candidates.clear();
+    }
+
+    /**
+     * Moves every molecule of the compartment to the outside soup, as when the membrane bursts.
+     * @param outside The soup outside.
+     */
+    void release(PrimordialSoup outside) {
+        for (int slot = 0, n = soup.getParticles().size(); slot < n; slot++) {
+            crossing.add(slot);
+        }
+        moveOut(outside);
+    }
+
+    /**
+     * Exchanges molecules across the membrane: interior molecules outside the circle and outside molecules
+     * inside it either cross or are reflected back. Decisions are drawn in slot order, outward first, so the
+     * exchange is deterministic for a given random generator.
+     * @param outside The soup outside.
+     * @param random The generator for crossing decisions.
+     */
+    void exchange(PrimordialSoup outside, SplitMixRandom random) {
+        // Outward: interior molecules that have drifted past the membrane
+        ParticleStore particles = soup.getParticles();
+        double[] xs = particles.getXArray();
+        double[] ys = particles.getYArray();
+        for (int slot = 0, n = particles.size(); slot < n; slot++) {
+            double dx = xs[slot] - half;
+            double dy = ys[slot] - half;
+            if (dx * dx + dy * dy <= radius * radius) continue;
+            if (random.nextDouble() < permeability.crossingProbability(particles.get(slot), false)) {
+                crossing.add(slot);
+            } else {
+                reflect(soup, slot, half, half, false);
+            }
+        }
+        moveOut(outside);
+
+        // Inward: outside molecules that have drifted into the compartment
+        collectInside(outside);
+        ParticleStore outer = outside.getParticles();
+        for (int i = 0; i < candidates.size(); i++) {
+            int slot = candidates.get(i);
+            if (random.nextDouble() < permeability.crossingProbability(outer.get(slot), true)) {
+                crossing.add(slot);
+            } else {
+                reflect(outside, slot, x, y, true);
+            }
+        }
+        candidates.clear();
+        moveInto(outside, crossing);
+        crossing.clear();
+    }
+
+    /**
+     * Collects the slots of the outside soup strictly inside the membrane into the candidates, in slot order.
+     * @param outside The soup outside.
+     */
+    private void collectInside(PrimordialSoup outside) {
+        double[] xs = outside.getParticles().getXArray();
+        double[] ys = outside.getParticles().getYArray();
+        outside.getSpatialGrid().forEachInRadius(x, y, radius, slot -> {
+            double dx = xs[slot] - x;
+            double dy = ys[slot] - y;
+            if (dx * dx + dy * dy < radius * radius) {
+                candidates.add(slot);
+            }
+        });
+        sort(candidates);
+    }
+
+    /**
+     * Moves the crossing interior molecules to the outside soup, removing them highest slot first so the
+     * swap-removals never move another crossing molecule.
+     * @param outside The soup outside.
+     */
+    private void moveOut(PrimordialSoup outside) {
+        Molecule[] leaving = new Molecule[crossing.size()];
+        for (int i = crossing.size() - 1; i >= 0; i--) {
+            leaving[i] = soup.removeParticle(crossing.get(i));
+        }
+        for (Molecule molecule : leaving) {
+            molecule.getPosition().setX(molecule.getPosition().getX() - half + x);
+            molecule.getPosition().setY(molecule.getPosition().getY() - half + y);
+            outside.addMolecule(molecule);
+        }
+        moleculesOut += leaving.length;
+        crossing.clear();
+    }
+
+    /**
+     * Moves molecules of the outside soup into the compartment.
+     * @param outside The soup outside.
+     * @param slots The slots to move, in increasing order.
+     */
+    private void moveInto(PrimordialSoup outside, IntList slots) {
+        Molecule[] entering = new Molecule[slots.size()];
+        for (int i = slots.size() - 1; i >= 0; i--) {
+            entering[i] = outside.removeParticle(slots.get(i));
+        }
+        for (Molecule molecule : entering) {
+            molecule.getPosition().setX(molecule.getPosition().getX() - x + half);
+            molecule.getPosition().setY(molecule.getPosition().getY() - y + half);
+            soup.addMolecule(molecule);
+        }
+        moleculesIn += entering.length;
+    }
+
+    /**
+     * Mirrors a molecule across the membrane, back to the side it came from.
+     * @param target The soup holding the molecule.
+     * @param slot The molecule's slot.
+     * @param cx The x coordinate of the centre, in the soup's coordinates.
+     * @param cy The y coordinate of the centre, in the soup's coordinates.
+     * @param outward True to send the molecule outwards, false inwards.
+     */
+    private void reflect(PrimordialSoup target, int slot, double cx, double cy, boolean outward) {
+        double[] xs = target.getParticles().getXArray();
+        double[] ys = target.getParticles().getYArray();
+        double dx = xs[slot] - cx;
+        double dy = ys[slot] - cy;
+        double distance = Math.sqrt(dx * dx + dy * dy);
+        if (distance == 0) {
+            dx = 1;
+            distance = 1;
+        }
+        // The mirror image across the circle, nudged off the membrane so it is not at the boundary again
+        double mirrored = outward ? Math.max(2 * radius - distance, radius * 1.001)
+            : Math.min(2 * radius - distance, radius * 0.999);
+        double scale = Math.max(0, mirrored) / distance;
+        double newX = Math.max(0, Math.min(target.getWidth(), cx + dx * scale));
+        double newY = Math.max(0, Math.min(target.getHeight(), cy + dy * scale));
+        target.moveParticle(slot, newX, newY);
+    }
+
+    private static void sort(IntList list) {
+        int[] values = new int[list.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = list.get(i);
+        }
+        Arrays.sort(values);
+        for (int i = 0; i < values.length; i++) {
+            list.set(i, values[i]);
+        }
+    }
+
+    /**
+     * Returns whether a point of the outside soup lies within the membrane.
+     * @param px The x coordinate.
+     * @param py The y coordinate.
+     * @return True if the point is inside.
+     */
+    public boolean contains(double px, double py) {
+        double dx = px - x;
+        double dy = py - y;
+        return dx * dx + dy * dy < radius * radius;
+    }
+
+    /**
+     * Returns the interior soup, in local coordinates: the outside point (x, y) of the centre is at
+     * (width / 2, height / 2). Its temperature, pH, rates and other settings are the compartment's
+     * internal conditions.
+     * @return The interior soup.
+     */
+    public PrimordialSoup getSoup() {
+        return soup;
+    }
+
+    /**
+     * Sets how readily molecules cross the membrane.
+     * @param permeability The membrane's permeability.
+     */
+    public void setPermeability(Permeability permeability) {
+        this.permeability = permeability;
+    }
+
+    /**
+     * Gets how readily molecules cross the membrane.
+     * @return The membrane's permeability.
+     */
+    public Permeability getPermeability() {
+        return permeability;
+    }
+
+    /**
+     * Gets the x coordinate of the centre, outside.
+     * @return The x coordinate.
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * Gets the y coordinate of the centre, outside.
+     * @return The y coordinate.
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Gets the radius of the membrane.
+     * @return The radius.
+     */
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * Returns the number of molecules that have entered the compartment, including those enclosed when it
+     * formed.
+     * @return The inward crossings.
+     */
+    public long getMoleculesIn() {
+        return moleculesIn;
+    }
+
+    /**
+     * Returns the number of molecules that have left the compartment.
+     * @return The outward crossings.
+     */
+    public long getMoleculesOut() {
+        return moleculesOut;
+    }
+}
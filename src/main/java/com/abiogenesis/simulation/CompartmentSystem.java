@@ -0,0 +1,194 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.SplitMixRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A soup with protocells: an outside {@link PrimordialSoup} and any number of non-overlapping
+ * {@link Compartment compartments} within it, each with an interior soup of its own.
+ *
+ * {@link #advance(int)} first advances every soup, the outside and each interior, independently: soups share
+ * no state while they step, so they run concurrently without locking, the outside on the calling thread and
+ * the interiors on a ForkJoinPool. Only then are molecules exchanged across the membranes, one compartment
+ * after another on the calling thread, with crossing decisions drawn from the system's own random generator.
+ * A given seed therefore gives the same result whatever the number of threads.
+ *
+ * Membranes are only enforced at exchanges, once per call, so advancing several steps per call trades
+ * membrane resolution for less synchronisation. Interiors start without spontaneous generation, so chains
+ * inside either were enclosed when the compartment formed, crossed the membrane or formed there by reaction.
+ */
+public class CompartmentSystem implements AutoCloseable {
+    private final PrimordialSoup outside;
+    private final List<Compartment> compartments = new ArrayList<>();
+    // Seeds the interiors and decides membrane crossings
+    private final SplitMixRandom random;
+    private ForkJoinPool pool;
+    private boolean ownsPool;
+
+    /**
+     * Creates a system without compartments around a soup. Compartment interiors step on the common
+     * ForkJoinPool until {@link #setParallelism(int)} is called.
+     * @param outside The soup outside the compartments.
+     * @param seed The seed for the interiors' random streams and for membrane crossings.
+     */
+    public CompartmentSystem(PrimordialSoup outside, long seed) {
+        this.outside = outside;
+        this.random = new SplitMixRandom(seed);
+        this.pool = ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Forms a compartment around a patch of the outside soup. The molecules already within the membrane are
+     * enclosed, and the interior tracks the same motifs as the outside.
+     * @param x The x coordinate of the centre.
+     * @param y The y coordinate of the centre.
+     * @param radius The radius of the membrane.
+     * @param temperature The interior temperature in Kelvin.
+     * @param pH The interior pH.
+     * @param permeability How readily molecules cross the membrane.
+     * @return The new compartment.
+     * @throws IllegalArgumentException If the compartment does not fit inside the soup or overlaps another.
+     */
+    public Compartment addCompartment(double x, double y, double radius, double temperature, double pH,
+                                      Compartment.Permeability permeability) {
+        if (!(radius > 0)) {
+            throw new IllegalArgumentException("Radius must be positive: " + radius);
+        }
+        int size = (int) Math.ceil(2 * radius);
+        double half = size / 2.0;
+        if (x - half < 0 || y - half < 0 || x + half >= outside.getWidth() || y + half >= outside.getHeight()) {
+            throw new IllegalArgumentException("Compartment at " + x + "," + y + " with radius " + radius
+                + " does not fit inside the soup");
+        }
+        for (Compartment other : compartments) {
+            if (Math.hypot(x - other.getX(), y - other.getY()) < radius + other.getRadius()) {
+                throw new IllegalArgumentException("Compartment at " + x + "," + y + " overlaps the one at "
+                    + other.getX() + "," + other.getY());
+            }
+        }
+        long seed = random.nextLong();
+        SplitMixRandom soupRandom = new SplitMixRandom(seed);
+        PrimordialSoup interior = new PrimordialSoup(size, size, temperature, pH, seed, soupRandom, soupRandom.split());
+        interior.setParallelism(1);
+        interior.setGenerationRate(0);
+        interior.setMotifs(outside.getMotifTracker().getMatcher().getMotifs());
+        Compartment compartment = new Compartment(x, y, radius, interior, permeability);
+        compartment.enclose(outside);
+        compartments.add(compartment);
+        return compartment;
+    }
+
+    /**
+     * Bursts a compartment: its membrane disappears and every molecule inside is released into the outside
+     * soup where it lies.
+     * @param compartment The compartment to remove.
+     */
+    public void removeCompartment(Compartment compartment) {
+        if (compartments.remove(compartment)) {
+            compartment.release(outside);
+            compartment.getSoup().close();
+        }
+    }
+
+    /**
+     * Advances the outside and every compartment by a number of steps, concurrently, then exchanges
+     * molecules across the membranes.
+     * @param steps The number of steps (at least 1).
+     */
+    public void advance(int steps) {
+        if (steps < 1) {
+            throw new IllegalArgumentException("Steps must be at least 1: " + steps);
+        }
+        if (pool == null || compartments.isEmpty()) {
+            outside.advance(steps);
+            for (Compartment compartment : compartments) {
+                compartment.getSoup().advance(steps);
+            }
+        } else {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(compartments.size());
+            for (Compartment compartment : compartments) {
+                PrimordialSoup interior = compartment.getSoup();
+                tasks.add(pool.submit(() -> interior.advance(steps)));
+            }
+            outside.advance(steps);
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        }
+        for (Compartment compartment : compartments) {
+            compartment.exchange(outside, random);
+        }
+    }
+
+    /**
+     * Sets the number of threads the compartment interiors step on. One means every soup steps on the
+     * calling thread in turn.
+     * @param threads The number of threads (at least 1).
+     */
+    public void setParallelism(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + threads);
+        }
+        shutdownPool();
+        if (threads > 1) {
+            pool = new ForkJoinPool(threads);
+            ownsPool = true;
+        }
+    }
+
+    private void shutdownPool() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+        pool = null;
+        ownsPool = false;
+    }
+
+    /**
+     * Stops the worker threads started by {@link #setParallelism(int)} and those of the compartment interiors.
+     * The outside soup is left to its owner. The system can still be advanced afterwards, on the calling thread.
+     */
+    @Override
+    public void close() {
+        shutdownPool();
+        for (Compartment compartment : compartments) {
+            compartment.getSoup().close();
+        }
+    }
+
+    /**
+     * Returns the number of threads the compartment interiors step on.
+     * @return The parallelism.
+     */
+    public int getParallelism() {
+        return pool == null ? 1 : pool.getParallelism();
+    }
+
+    /**
+     * Returns the soup outside the compartments.
+     * @return The outside soup.
+     */
+    public PrimordialSoup getOutside() {
+        return outside;
+    }
+
+    /**
+     * Returns the compartments, in the order they were formed.
+     * @return An unmodifiable view of the compartments.
+     */
+    public List<Compartment> getCompartments() {
+        return Collections.unmodifiableList(compartments);
+    }
+
+    /**
+     * Returns the number of steps simulated so far, as counted by the outside soup.
+     * @return The step count.
+     */
+    public long getStepCount() {
+        return outside.getStepCount();
+    }
+}
@@ -0,0 +1,562 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.AminoAcidMolecule;
+import com.abiogenesis.model.AminoAcidSequence;
+import com.abiogenesis.model.Atom;
+import com.abiogenesis.model.Molecule;
+import com.abiogenesis.model.ParticleStore;
+import com.abiogenesis.model.SplitMixRandom;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * One node's share of a soup too large for one machine. The world is cut into a grid of rectangular tiles, one
+ * per node of a {@link Transport}; each node holds only its own tile, as a {@link PrimordialSoup} of its own,
+ * and the nodes advance in lockstep.
+ *
+ * A tile's soup covers the part of the world the node owns plus a margin MARGIN wide along each edge shared
+ * with another tile. Molecules move, react and recombine in the margin as anywhere else, so chains near a
+ * boundary are not held back by a wall; after every {@link #advance(int)} the molecules that have moved out
+ * of the owned part are handed to the node that owns their new position, keeping their sequence, energy and
+ * world position. New chains only appear in the owned part. Molecules in different tiles do not react with
+ * each other until one of them has migrated.
+ *
+ * The same exchange carries every node's statistics to every other node, so each node knows the global
+ * population, longest chain, reaction total and motif statistics. The global population cap is enforced by
+ * giving each node an equal share of the headroom left after the last exchange, so the whole world never
+ * exceeds it. Migrating chains are not scanned for motifs again on arrival, so the motif statistics are those
+ * of the world as a whole.
+ *
+ * Each node's random streams are derived from the world seed and its rank, and migrants are added in the order
+ * of their sending node and slot, so a run is reproducible for a given seed and tiling whatever the transport,
+ * the number of threads per node, or whether the nodes share a process. Environment fields are per tile and
+ * do not diffuse across tile boundaries; schedules, being functions of the step, apply to every tile alike.
+ */
+public class DistributedSoup implements AutoCloseable {
+    // Width of the strip a tile's soup extends beyond each shared edge, well beyond one step or leap of movement
+    private static final int MARGIN = 32;
+    // Fewest bytes a molecule and an atom take in a message (see writeMolecule), to bound counts read back
+    private static final int MIN_MOLECULE_BYTES = 3 * Double.BYTES + 1 + Integer.BYTES;
+    private static final int MIN_ATOM_BYTES = 2 + Integer.BYTES + Double.BYTES;
+
+    private final Transport transport;
+    private final int columns;
+    private final int rows;
+    private final int worldWidth;
+    private final int worldHeight;
+    // The owned part of the world: [left, right) x [top, bottom)
+    private final int left;
+    private final int top;
+    private final int right;
+    private final int bottom;
+    // World coordinates of the tile soup's origin
+    private final int originX;
+    private final int originY;
+    private final PrimordialSoup soup;
+    private int maxPopulation;
+    private long moleculesSent;
+    private long moleculesReceived;
+    // Global statistics as of the last exchange
+    private long globalChains;
+    private long globalMolecules;
+    private int globalMaxLength;
+    private long globalReactions;
+    private long[] globalFirstSeen = new long[0];
+    private long[] globalChainCounts = new long[0];
+    private long[] globalOccurrences = new long[0];
+    // Exchange scratch: slots leaving the tile and the rank each is going to
+    private final IntList leaving = new IntList();
+    private final IntList destinations = new IntList();
+
+    /**
+     * Creates this node's tile. Every node of the transport must create its tile with the same arguments.
+     * @param transport The connection to the other nodes; its size must equal columns * rows, and rank r owns
+     *                  the tile in column r % columns and row r / columns.
+     * @param columns The number of tiles across.
+     * @param rows The number of tiles down.
+     * @param worldWidth The width of the whole world.
+     * @param worldHeight The height of the whole world.
+     * @param temperature The temperature in Kelvin.
+     * @param pH The pH.
+     * @param seed The world seed.
+     */
+    public DistributedSoup(Transport transport, int columns, int rows, int worldWidth, int worldHeight,
+                           double temperature, double pH, long seed) {
+        if (columns < 1 || rows < 1 || columns * rows != transport.getSize()) {
+            throw new IllegalArgumentException(columns + "x" + rows + " tiles need as many nodes, not "
+                + transport.getSize());
+        }
+        if (worldWidth < columns || worldHeight < rows) {
+            throw new IllegalArgumentException("World " + worldWidth + "x" + worldHeight + " is too small for "
+                + columns + "x" + rows + " tiles");
+        }
+        this.transport = transport;
+        this.columns = columns;
+        this.rows = rows;
+        this.worldWidth = worldWidth;
+        this.worldHeight = worldHeight;
+        int rank = transport.getRank();
+        int column = rank % columns;
+        int row = rank / columns;
+        this.left = edge(column, columns, worldWidth);
+        this.right = edge(column + 1, columns, worldWidth);
+        this.top = edge(row, rows, worldHeight);
+        this.bottom = edge(row + 1, rows, worldHeight);
+        int marginLeft = column > 0 ? MARGIN : 0;
+        int marginTop = row > 0 ? MARGIN : 0;
+        int marginRight = column < columns - 1 ? MARGIN : 0;
+        int marginBottom = row < rows - 1 ? MARGIN : 0;
+        this.originX = left - marginLeft;
+        this.originY = top - marginTop;
+
+        // Every node draws the same sequence of tile seeds and takes its own
+        SplitMixRandom seeds = new SplitMixRandom(seed);
+        long tileSeed = seeds.nextLong();
+        for (int i = 0; i < rank; i++) {
+            tileSeed = seeds.nextLong();
+        }
+        SplitMixRandom random = new SplitMixRandom(tileSeed);
+        soup = new PrimordialSoup(marginLeft + right - left + marginRight, marginTop + bottom - top + marginBottom,
+            temperature, pH, tileSeed, random, random.split());
+        soup.setGenerationArea(marginLeft, marginTop, right - left, bottom - top);
+        // The world starts with as many chains as a single soup, spread over the tiles
+        int size = transport.getSize();
+        int initial = PrimordialSoup.INITIAL_AMINO_ACIDS;
+        for (int i = 0; i < initial / size + (rank < initial % size ? 1 : 0); i++) {
+            soup.generateChain();
+        }
+        globalChains = initial;
+        globalMolecules = initial;
+        resetMotifStatistics();
+        setMaxPopulation(soup.getMaxAminoAcids());
+    }
+
+    /**
+     * Returns the coordinate of the boundary before a tile.
+     * @param index The tile's column or row; the count gives the far edge of the world.
+     * @param count The number of tiles along the axis.
+     * @param extent The size of the world along the axis.
+     * @return The boundary coordinate.
+     */
+    private static int edge(int index, int count, int extent) {
+        return (int) ((long) index * extent / count);
+    }
+
+    /**
+     * Returns the tile a world coordinate falls in along one axis. Points on the far edge of the world belong
+     * to the last tile.
+     * @param value The coordinate.
+     * @param count The number of tiles along the axis.
+     * @param extent The size of the world along the axis.
+     * @return The column or row.
+     */
+    private static int tileOf(double value, int count, int extent) {
+        int index = Math.max(0, Math.min(count - 1, (int) (value * count / extent)));
+        if (index > 0 && value < edge(index, count, extent)) {
+            index--;
+        } else if (index < count - 1 && value >= edge(index + 1, count, extent)) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Advances the tile by a number of steps, then exchanges migrating molecules and statistics with the other
+     * nodes. Every node must call this with the same number of steps.
+     * @param steps The number of steps (at least 1).
+     * @throws IOException If the exchange fails.
+     */
+    public void advance(int steps) throws IOException {
+        soup.advance(steps);
+        exchange();
+    }
+
+    /**
+     * Hands the molecules that have left the owned part to their new owners, takes in the molecules other
+     * nodes send, and combines every node's statistics.
+     * @throws IOException If the exchange fails.
+     */
+    private void exchange() throws IOException {
+        int rank = transport.getRank();
+        int size = transport.getSize();
+        byte[] statistics = encodeStatistics();
+
+        ParticleStore particles = soup.getParticles();
+        double[] xs = particles.getXArray();
+        double[] ys = particles.getYArray();
+        for (int slot = 0, n = particles.size(); slot < n; slot++) {
+            double x = xs[slot] + originX;
+            double y = ys[slot] + originY;
+            if (x >= left && x < right && y >= top && y < bottom) continue;
+            int owner = tileOf(y, rows, worldHeight) * columns + tileOf(x, columns, worldWidth);
+            if (owner != rank) {
+                leaving.add(slot);
+                destinations.add(owner);
+            }
+        }
+        // Removing the highest slot first means the swap-removals never move another leaving molecule
+        Molecule[] migrants = new Molecule[leaving.size()];
+        for (int i = leaving.size() - 1; i >= 0; i--) {
+            migrants[i] = soup.removeParticle(leaving.get(i));
+        }
+        moleculesSent += migrants.length;
+
+        for (int node = 0; node < size; node++) {
+            if (node == rank) continue;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.write(statistics);
+            int count = 0;
+            for (int i = 0; i < migrants.length; i++) {
+                if (destinations.get(i) == node) count++;
+            }
+            out.writeInt(count);
+            for (int i = 0; i < migrants.length; i++) {
+                if (destinations.get(i) == node) {
+                    writeMolecule(migrants[i], out);
+                }
+            }
+            out.flush();
+            transport.send(node, bytes.toByteArray());
+        }
+        leaving.clear();
+        destinations.clear();
+
+        DataInputStream own = new DataInputStream(new ByteArrayInputStream(statistics));
+        startStatistics(own);
+        for (int node = 0; node < size; node++) {
+            if (node == rank) continue;
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(transport.receive(node)));
+            addStatistics(in);
+            int count = checkCount(in.readInt(), MIN_MOLECULE_BYTES, in);
+            for (int i = 0; i < count; i++) {
+                Molecule molecule = readMolecule(in);
+                molecule.getPosition().setX(clamp(molecule.getPosition().getX() - originX, soup.getWidth()));
+                molecule.getPosition().setY(clamp(molecule.getPosition().getY() - originY, soup.getHeight()));
+                soup.addMigrant(molecule);
+            }
+            moleculesReceived += count;
+        }
+        applyPopulationCap();
+    }
+
+    private static double clamp(double value, int extent) {
+        return Math.max(0, Math.min(extent, value));
+    }
+
+    /**
+     * Gives this node its share of the global headroom, so that the world as a whole stays under the cap
+     * until the next exchange. Shares differ by at most one, the lower ranks getting the remainder.
+     */
+    private void applyPopulationCap() {
+        int size = transport.getSize();
+        long headroom = Math.max(0, maxPopulation - globalChains);
+        long share = headroom / size + (transport.getRank() < headroom % size ? 1 : 0);
+        soup.setMaxAminoAcids((int) Math.min(Integer.MAX_VALUE,
+            soup.getPopulationCounters().getAminoAcidCount() + share));
+    }
+
+    /**
+     * Encodes this node's statistics: population, longest chain, reaction total and motif statistics.
+     * @return The encoded statistics.
+     * @throws IOException Never, in practice.
+     */
+    private byte[] encodeStatistics() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        PopulationCounters counters = soup.getPopulationCounters();
+        out.writeInt(counters.getAminoAcidCount());
+        out.writeInt(counters.getTotal());
+        out.writeInt(counters.getMaxLength());
+        out.writeLong(soup.getTotalReactions());
+        MotifTracker tracker = soup.getMotifTracker();
+        for (int i = 0; i < globalFirstSeen.length; i++) {
+            out.writeLong(tracker.getFirstSeenStep(i));
+            out.writeLong(tracker.getChainCount(i));
+            out.writeLong(tracker.getOccurrenceCount(i));
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void startStatistics(DataInputStream in) throws IOException {
+        globalChains = 0;
+        globalMolecules = 0;
+        globalMaxLength = 0;
+        globalReactions = 0;
+        Arrays.fill(globalFirstSeen, -1);
+        Arrays.fill(globalChainCounts, 0);
+        Arrays.fill(globalOccurrences, 0);
+        addStatistics(in);
+    }
+
+    private void addStatistics(DataInputStream in) throws IOException {
+        globalChains += in.readInt();
+        globalMolecules += in.readInt();
+        globalMaxLength = Math.max(globalMaxLength, in.readInt());
+        globalReactions += in.readLong();
+        for (int i = 0; i < globalFirstSeen.length; i++) {
+            long firstSeen = in.readLong();
+            if (firstSeen >= 0 && (globalFirstSeen[i] < 0 || firstSeen < globalFirstSeen[i])) {
+                globalFirstSeen[i] = firstSeen;
+            }
+            globalChainCounts[i] += in.readLong();
+            globalOccurrences[i] += in.readLong();
+        }
+    }
+
+    /**
+     * Writes a detached molecule with its world position.
+     * @param molecule The molecule.
+     * @param out The message being built.
+     * @throws IOException Never, in practice.
+     */
+    private void writeMolecule(Molecule molecule, DataOutputStream out) throws IOException {
+        out.writeDouble(molecule.getPosition().getX() + originX);
+        out.writeDouble(molecule.getPosition().getY() + originY);
+        out.writeDouble(molecule.getEnergy());
+        if (molecule instanceof AminoAcidMolecule) {
+            AminoAcidSequence sequence = ((AminoAcidMolecule) molecule).getPackedSequence();
+            long[] words = new long[AminoAcidSequence.wordCount(sequence.length())];
+            sequence.copyWords(words, 0);
+            out.writeByte(ParticleStore.TYPE_AMINO_ACID);
+            out.writeInt(sequence.length());
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        } else {
+            out.writeByte(ParticleStore.TYPE_MOLECULE);
+            out.writeUTF(molecule.getName());
+            List<Atom> atoms = molecule.getAtoms();
+            out.writeInt(atoms.size());
+            for (Atom atom : atoms) {
+                out.writeUTF(atom.getElement());
+                out.writeInt(atom.getAtomicNumber());
+                out.writeDouble(atom.getAtomicMass());
+            }
+        }
+    }
+
+    /**
+     * Reads a molecule written by {@link #writeMolecule}, positioned in world coordinates.
+     * @param in The message.
+     * @return The molecule.
+     * @throws IOException If the message is malformed.
+     */
+    private static Molecule readMolecule(DataInputStream in) throws IOException {
+        double x = in.readDouble();
+        double y = in.readDouble();
+        double energy = in.readDouble();
+        Molecule molecule;
+        byte type = in.readByte();
+        try {
+            if (type == ParticleStore.TYPE_AMINO_ACID) {
+                int length = checkCount(in.readInt(), 0, in);
+                long[] words = new long[checkCount(AminoAcidSequence.wordCount(length), Long.BYTES, in)];
+                for (int i = 0; i < words.length; i++) {
+                    words[i] = in.readLong();
+                }
+                molecule = new AminoAcidMolecule(AminoAcidSequence.fromWords(words, 0, length), energy);
+            } else if (type == ParticleStore.TYPE_MOLECULE) {
+                String name = in.readUTF();
+                Atom[] atoms = new Atom[checkCount(in.readInt(), MIN_ATOM_BYTES, in)];
+                for (int i = 0; i < atoms.length; i++) {
+                    atoms[i] = Atom.valueOf(in.readUTF(), in.readInt(), in.readDouble());
+                }
+                molecule = new Molecule(name, energy, Arrays.asList(atoms));
+            } else {
+                throw new IOException("Unknown molecule type " + type);
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Malformed molecule: " + e.getMessage(), e);
+        }
+        molecule.getPosition().setX(x);
+        molecule.getPosition().setY(y);
+        return molecule;
+    }
+
+    /**
+     * Checks a count read from a message against the bytes left in it, so a corrupt count cannot allocate
+     * more than the message could hold.
+     * @param count The count.
+     * @param itemBytes The fewest bytes each counted item takes in the message.
+     * @param in The message.
+     * @return The count.
+     * @throws IOException If the count is negative or the message is too short for that many items.
+     */
+    private static int checkCount(int count, int itemBytes, DataInputStream in) throws IOException {
+        if (count < 0 || (long) count * itemBytes > in.available()) {
+            throw new IOException("Malformed message: count " + count + " with " + in.available() + " bytes left");
+        }
+        return count;
+    }
+
+    private void resetMotifStatistics() {
+        int count = soup.getMotifTracker().getMatcher().getMotifCount();
+        globalFirstSeen = new long[count];
+        globalChainCounts = new long[count];
+        globalOccurrences = new long[count];
+        Arrays.fill(globalFirstSeen, -1);
+    }
+
+    /**
+     * Replaces the tracked motifs. Every node must track the same motifs.
+     * @param motifs The motifs to track.
+     */
+    public void setMotifs(Collection<String> motifs) {
+        soup.setMotifs(motifs);
+        resetMotifStatistics();
+    }
+
+    /**
+     * Sets the maximum number of chains in the whole world. Every node must set the same cap; it takes full
+     * effect from the next exchange.
+     * @param maxPopulation The population cap.
+     */
+    public void setMaxPopulation(int maxPopulation) {
+        if (maxPopulation < 0) {
+            throw new IllegalArgumentException("Population cap must be non-negative: " + maxPopulation);
+        }
+        this.maxPopulation = maxPopulation;
+        applyPopulationCap();
+    }
+
+    /**
+     * Gets the maximum number of chains in the whole world.
+     * @return The population cap.
+     */
+    public int getMaxPopulation() {
+        return maxPopulation;
+    }
+
+    /**
+     * Returns this node's tile. Its coordinates are local: the world position of local (0, 0) is
+     * ({@link #getOriginX()}, {@link #getOriginY()}). Settings such as rates, kinetics, schedules and the
+     * number of threads are made on it directly, the same on every node.
+     * @return The tile soup.
+     */
+    public PrimordialSoup getSoup() {
+        return soup;
+    }
+
+    /**
+     * Stops the worker threads of this node's tile. The transport is left to its owner.
+     */
+    @Override
+    public void close() {
+        soup.close();
+    }
+
+    /**
+     * Returns the connection to the other nodes.
+     * @return The transport.
+     */
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Gets the world x coordinate of the tile soup's origin.
+     * @return The x coordinate.
+     */
+    public int getOriginX() {
+        return originX;
+    }
+
+    /**
+     * Gets the world y coordinate of the tile soup's origin.
+     * @return The y coordinate.
+     */
+    public int getOriginY() {
+        return originY;
+    }
+
+    /**
+     * Returns the number of steps simulated so far, the same on every node.
+     * @return The step count.
+     */
+    public long getStepCount() {
+        return soup.getStepCount();
+    }
+
+    /**
+     * Returns the number of chains in the whole world at the last exchange.
+     * @return The global chain count.
+     */
+    public long getGlobalChainCount() {
+        return globalChains;
+    }
+
+    /**
+     * Returns the number of molecules of every kind in the whole world at the last exchange.
+     * @return The global molecule count.
+     */
+    public long getGlobalMoleculeCount() {
+        return globalMolecules;
+    }
+
+    /**
+     * Returns the length of the longest chain in the whole world at the last exchange.
+     * @return The longest chain length.
+     */
+    public int getGlobalMaxLength() {
+        return globalMaxLength;
+    }
+
+    /**
+     * Returns the number of reactions in the whole world up to the last exchange.
+     * @return The global reaction total.
+     */
+    public long getGlobalTotalReactions() {
+        return globalReactions;
+    }
+
+    /**
+     * Returns the step in which a motif was first seen anywhere in the world.
+     * @param motifIndex The motif index.
+     * @return The step, or -1 if the motif had not been seen by the last exchange.
+     */
+    public long getGlobalFirstSeenStep(int motifIndex) {
+        return globalFirstSeen[motifIndex];
+    }
+
+    /**
+     * Returns how many created or mutated chains in the whole world have contained a motif.
+     * @param motifIndex The motif index.
+     * @return The number of chains.
+     */
+    public long getGlobalChainCount(int motifIndex) {
+        return globalChainCounts[motifIndex];
+    }
+
+    /**
+     * Returns the total number of occurrences of a motif found anywhere in the world.
+     * @param motifIndex The motif index.
+     * @return The number of occurrences.
+     */
+    public long getGlobalOccurrenceCount(int motifIndex) {
+        return globalOccurrences[motifIndex];
+    }
+
+    /**
+     * Returns the number of molecules this node has handed to other nodes.
+     * @return The outgoing migrations.
+     */
+    public long getMoleculesSent() {
+        return moleculesSent;
+    }
+
+    /**
+     * Returns the number of molecules this node has taken in from other nodes.
+     * @return The incoming migrations.
+     */
+    public long getMoleculesReceived() {
+        return moleculesReceived;
+    }
+}
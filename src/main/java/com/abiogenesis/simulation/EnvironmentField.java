@@ -0,0 +1,357 @@
+package com.abiogenesis.simulation;
+
+import java.util.Arrays;
+
+/**
+ * A grid of local conditions laid over a soup: temperature, pH and nutrient concentration per cell.
+ * The grid covers the whole soup whatever its size, so a molecule's cell follows from its position relative
+ * to the soup's width and height.
+ *
+ * Each quantity is a row-major float array and spreads to neighbouring cells by explicit diffusion with a
+ * five-point stencil and closed (zero-flux) edges. The stencil runs row by row over plain arrays with the
+ * edges handled outside the inner loop, so the JIT can vectorise it, and rows are shared out among the
+ * soup's worker threads. A quantity with a zero diffusion rate is never swept.
+ *
+ * Movement uses the local temperature, and reaction rates use the local temperature and pH (see
+ * {@link ReactionEngine}). Condensation additionally scales with the local nutrient concentration, 1 being
+ * the reference level, and consumes nutrient from the cell it happens in.
+ *
+ * The running bounds of each quantity let reaction sampling bound the local rates without scanning the
+ * grid. They only widen when cells are written (diffusion never leaves the current range), so they may be
+ * looser than the values actually present.
+ *
+ * Each quantity also has a uniform offset added to every cell, which lets a soup's {@link Schedule schedules}
+ * shift the whole field, for example through a day and night cycle, without rewriting the cells. All public
+ * accessors see the cells with the offset applied.
+ */
+public class EnvironmentField {
+    /**
+     * The quantities held per cell.
+     */
+    public enum Quantity {
+        /** Temperature in Kelvin. */
+        TEMPERATURE,
+        /** pH. */
+        PH,
+        /** Nutrient concentration relative to the reference level of 1. */
+        NUTRIENT
+    }
+
+    // Largest fraction of the four-neighbour difference moved per sweep for the explicit scheme to stay stable
+    private static final double MAX_STABLE_RATE = 0.25;
+    // Rows per task when a sweep runs in parallel
+    private static final int ROWS_PER_TASK = 16;
+    // Default diffusion rates, per step, as a fraction of the four-neighbour difference
+    private static final double DEFAULT_TEMPERATURE_DIFFUSION = 0.05;
+    private static final double DEFAULT_PH_DIFFUSION = 0.02;
+    private static final double DEFAULT_NUTRIENT_DIFFUSION = 0.01;
+
+    private final int columns;
+    private final int rows;
+    private final float[][] values = new float[Quantity.values().length][];
+    private final double[] diffusionRates = new double[Quantity.values().length];
+    private final double[] minimum = new double[Quantity.values().length];
+    private final double[] maximum = new double[Quantity.values().length];
+    // Added to every cell of a quantity; the cells and bounds above do not include it
+    private final double[] offsets = new double[Quantity.values().length];
+    // Target of the next sweep; swapped with the swept array afterwards
+    private float[] scratch;
+
+    /**
+     * Creates a field with the same conditions in every cell.
+     * @param columns The number of cells across.
+     * @param rows The number of cells down.
+     * @param temperature The initial temperature in Kelvin.
+     * @param pH The initial pH.
+     * @param nutrient The initial nutrient concentration (1 is the reference level).
+     */
+    public EnvironmentField(int columns, int rows, double temperature, double pH, double nutrient) {
+        if (columns < 1 || rows < 1) {
+            throw new IllegalArgumentException("Field must have at least one cell: " + columns + "x" + rows);
+        }
+        this.columns = columns;
+        this.rows = rows;
+        for (int q = 0; q < values.length; q++) {
+            values[q] = new float[columns * rows];
+        }
+        fill(Quantity.TEMPERATURE, temperature);
+        fill(Quantity.PH, pH);
+        fill(Quantity.NUTRIENT, nutrient);
+        diffusionRates[Quantity.TEMPERATURE.ordinal()] = DEFAULT_TEMPERATURE_DIFFUSION;
+        diffusionRates[Quantity.PH.ordinal()] = DEFAULT_PH_DIFFUSION;
+        diffusionRates[Quantity.NUTRIENT.ordinal()] = DEFAULT_NUTRIENT_DIFFUSION;
+    }
+
+    /**
+     * Lets every quantity diffuse for a number of steps. Long spans are cut into as many sweeps as
+     * stability requires.
+     * @param steps The number of steps.
+     * @param executor The executor sharing rows among threads.
+     */
+    void update(int steps, PartitionedExecutor executor) {
+        for (int q = 0; q < values.length; q++) {
+            double amount = diffusionRates[q] * steps;
+            if (amount <= 0) continue;
+            int sweeps = (int) Math.ceil(amount / MAX_STABLE_RATE);
+            float rate = (float) (amount / sweeps);
+            for (int s = 0; s < sweeps; s++) {
+                if (scratch == null) {
+                    scratch = new float[columns * rows];
+                }
+                float[] in = values[q];
+                float[] out = scratch;
+                executor.run(rows, ROWS_PER_TASK, (from, to) -> sweep(in, out, rate, from, to));
+                values[q] = out;
+                scratch = in;
+            }
+        }
+    }
+
+    /**
+     * Applies one diffusion sweep to a band of rows, reading only from the input array.
+     * @param in The current values.
+     * @param out Receives the new values.
+     * @param rate The fraction of the four-neighbour difference moved into each cell.
+     * @param fromRow The first row (inclusive).
+     * @param toRow The last row (exclusive).
+     */
+    private void sweep(float[] in, float[] out, float rate, int fromRow, int toRow) {
+        int last = columns - 1;
+        for (int row = fromRow; row < toRow; row++) {
+            int i = row * columns;
+            // Closed edges: a missing neighbour is replaced by the cell itself, so nothing flows across
+            int up = row == 0 ? i : i - columns;
+            int down = row == rows - 1 ? i : i + columns;
+            if (columns == 1) {
+                out[i] = in[i] + rate * (in[up] + in[down] - 2 * in[i]);
+                continue;
+            }
+            out[i] = in[i] + rate * (in[i + 1] + in[up] + in[down] - 3 * in[i]);
+            for (int x = 1; x < last; x++) {
+                float c = in[i + x];
+                out[i + x] = c + rate * (in[i + x - 1] + in[i + x + 1] + in[up + x] + in[down + x] - 4 * c);
+            }
+            int j = i + last;
+            out[j] = in[j] + rate * (in[j - 1] + in[up + last] + in[down + last] - 3 * in[j]);
+        }
+    }
+
+    /**
+     * Returns the cell containing a point of the soup.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param width The width of the soup.
+     * @param height The height of the soup.
+     * @return The cell index, row-major; points outside the soup map to the nearest edge cell.
+     */
+    int cellAt(double x, double y, double width, double height) {
+        int column = Math.max(0, Math.min(columns - 1, (int) (x * columns / width)));
+        int row = Math.max(0, Math.min(rows - 1, (int) (y * rows / height)));
+        return row * columns + column;
+    }
+
+    /**
+     * Returns the array holding a quantity, row-major, without the quantity's offset. The array is replaced
+     * by every diffusion sweep, so it must be fetched again after each update.
+     * @param quantity The quantity.
+     * @return The values.
+     */
+    float[] values(Quantity quantity) {
+        return values[quantity.ordinal()];
+    }
+
+    /**
+     * Returns the uniform offset of a quantity, to be added to the values from {@link #values(Quantity)}.
+     * @param quantity The quantity.
+     * @return The offset.
+     */
+    double offset(Quantity quantity) {
+        return offsets[quantity.ordinal()];
+    }
+
+    /**
+     * Removes nutrient from a cell, without going below zero.
+     * @param cell The cell index.
+     * @param amount The amount to remove.
+     */
+    void consume(int cell, double amount) {
+        float[] nutrient = values[Quantity.NUTRIENT.ordinal()];
+        double offset = offsets[Quantity.NUTRIENT.ordinal()];
+        nutrient[cell] = (float) (Math.max(0.0, nutrient[cell] + offset - amount) - offset);
+        widen(Quantity.NUTRIENT, nutrient[cell]);
+    }
+
+    /**
+     * Returns the value of a quantity in a cell.
+     * @param quantity The quantity.
+     * @param column The cell's column.
+     * @param row The cell's row.
+     * @return The value.
+     */
+    public double get(Quantity quantity, int column, int row) {
+        return values[quantity.ordinal()][index(column, row)] + offsets[quantity.ordinal()];
+    }
+
+    /**
+     * Sets the value of a quantity in a cell.
+     * @param quantity The quantity.
+     * @param column The cell's column.
+     * @param row The cell's row.
+     * @param value The new value.
+     */
+    public void set(Quantity quantity, int column, int row, double value) {
+        float cell = (float) (value - offsets[quantity.ordinal()]);
+        values[quantity.ordinal()][index(column, row)] = cell;
+        widen(quantity, cell);
+    }
+
+    /**
+     * Sets a quantity to the same value in every cell.
+     * @param quantity The quantity.
+     * @param value The value.
+     */
+    public void fill(Quantity quantity, double value) {
+        float cell = (float) (value - offsets[quantity.ordinal()]);
+        Arrays.fill(values[quantity.ordinal()], cell);
+        minimum[quantity.ordinal()] = cell;
+        maximum[quantity.ordinal()] = cell;
+    }
+
+    /**
+     * Replaces all values of a quantity, its bounds and its offset, for restoring a checkpoint.
+     * @param quantity The quantity.
+     * @param cells The values without the offset, row-major; must hold one value per cell.
+     * @param minimum The saved lower bound, without the offset.
+     * @param maximum The saved upper bound, without the offset.
+     * @param offset The saved offset.
+     */
+    void restore(Quantity quantity, float[] cells, double minimum, double maximum, double offset) {
+        if (cells.length != columns * rows) {
+            throw new IllegalArgumentException("Expected " + columns * rows + " cells, got " + cells.length);
+        }
+        int q = quantity.ordinal();
+        values[q] = cells;
+        this.minimum[q] = minimum;
+        this.maximum[q] = maximum;
+        offsets[q] = offset;
+    }
+
+    private void widen(Quantity quantity, float value) {
+        int q = quantity.ordinal();
+        minimum[q] = Math.min(minimum[q], value);
+        maximum[q] = Math.max(maximum[q], value);
+    }
+
+    private int index(int column, int row) {
+        if (column < 0 || column >= columns || row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Cell " + column + "," + row + " outside " + columns + "x" + rows);
+        }
+        return row * columns + column;
+    }
+
+    /**
+     * Returns a lower bound on a quantity over all cells.
+     * @param quantity The quantity.
+     * @return The bound.
+     */
+    public double getMinimum(Quantity quantity) {
+        return minimum[quantity.ordinal()] + offsets[quantity.ordinal()];
+    }
+
+    /**
+     * Returns an upper bound on a quantity over all cells.
+     * @param quantity The quantity.
+     * @return The bound.
+     */
+    public double getMaximum(Quantity quantity) {
+        return maximum[quantity.ordinal()] + offsets[quantity.ordinal()];
+    }
+
+    /**
+     * Returns the lower bound of a quantity without its offset, for saving a checkpoint.
+     * @param quantity The quantity.
+     * @return The bound.
+     */
+    double cellMinimum(Quantity quantity) {
+        return minimum[quantity.ordinal()];
+    }
+
+    /**
+     * Returns the upper bound of a quantity without its offset, for saving a checkpoint.
+     * @param quantity The quantity.
+     * @return The bound.
+     */
+    double cellMaximum(Quantity quantity) {
+        return maximum[quantity.ordinal()];
+    }
+
+    /**
+     * Returns the mean of a quantity over all cells.
+     * @param quantity The quantity.
+     * @return The mean value.
+     */
+    public double getMean(Quantity quantity) {
+        double sum = 0;
+        for (float value : values[quantity.ordinal()]) {
+            sum += value;
+        }
+        return sum / (columns * rows) + offsets[quantity.ordinal()];
+    }
+
+    /**
+     * Shifts every cell of a quantity by the same amount. A new offset replaces the previous one rather than
+     * adding to it, and costs nothing per cell. Values written while an offset is in place read back as written.
+     * @param quantity The quantity.
+     * @param offset The amount added to every cell.
+     */
+    public void setOffset(Quantity quantity, double offset) {
+        offsets[quantity.ordinal()] = offset;
+    }
+
+    /**
+     * Returns the amount currently added to every cell of a quantity.
+     * @param quantity The quantity.
+     * @return The offset.
+     */
+    public double getOffset(Quantity quantity) {
+        return offsets[quantity.ordinal()];
+    }
+
+    /**
+     * Sets how fast a quantity spreads between neighbouring cells.
+     * @param quantity The quantity.
+     * @param rate The fraction of the difference to the four neighbours moved into a cell per step;
+     *             0 freezes the quantity.
+     */
+    public void setDiffusionRate(Quantity quantity, double rate) {
+        if (rate < 0) {
+            throw new IllegalArgumentException("Negative diffusion rate: " + rate);
+        }
+        diffusionRates[quantity.ordinal()] = rate;
+    }
+
+    /**
+     * Returns how fast a quantity spreads between neighbouring cells.
+     * @param quantity The quantity.
+     * @return The diffusion rate per step.
+     */
+    public double getDiffusionRate(Quantity quantity) {
+        return diffusionRates[quantity.ordinal()];
+    }
+
+    /**
+     * Returns the number of cells across.
+     * @return The column count.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the number of cells down.
+     * @return The row count.
+     */
+    public int getRows() {
+        return rows;
+    }
+}
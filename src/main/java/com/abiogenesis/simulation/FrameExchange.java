@@ -0,0 +1,51 @@
+package com.abiogenesis.simulation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free triple buffer handing {@link FrameSnapshot}s from the simulation thread to the renderer.
+ *
+ * The writer fills its private back buffer and publishes it by atomically swapping it with the shared
+ * "ready" buffer; the reader takes the ready buffer by swapping it with its private front buffer, but only
+ * when a newer frame has been published. Neither side ever waits for the other, and a frame being read
+ * is never overwritten. Exactly one thread may write and one thread may read.
+ */
+public class FrameExchange {
+    private static final int INDEX_MASK = 0b11;
+    private static final int FRESH = 0b100;
+
+    private final FrameSnapshot[] buffers = {new FrameSnapshot(), new FrameSnapshot(), new FrameSnapshot()};
+    // Index of the ready buffer, plus the FRESH bit while it holds a frame the reader has not taken yet
+    private final AtomicInteger ready = new AtomicInteger(1);
+    // Owned by the writer thread
+    private int back = 0;
+    // Owned by the reader thread
+    private int front = 2;
+
+    /**
+     * Returns the buffer the writer should fill next. Writer thread only.
+     * @return The back buffer.
+     */
+    FrameSnapshot beginWrite() {
+        return buffers[back];
+    }
+
+    /**
+     * Publishes the back buffer as the latest frame and takes over the previous ready buffer. Writer thread only.
+     */
+    void publish() {
+        back = ready.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Returns the most recently published frame. The frame stays valid and unchanged until the next call.
+     * Reader thread only.
+     * @return The latest frame (empty until the first publish).
+     */
+    public FrameSnapshot acquire() {
+        if ((ready.get() & FRESH) != 0) {
+            front = ready.getAndSet(front) & INDEX_MASK;
+        }
+        return buffers[front];
+    }
+}
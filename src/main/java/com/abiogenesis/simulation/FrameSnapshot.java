@@ -0,0 +1,200 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.Molecule;
+import com.abiogenesis.model.ParticleStore;
+import java.util.Arrays;
+
+/**
+ * A consistent picture of the soup at the end of a step, packed into primitive arrays for rendering:
+ * positions, energies, colours and the molecules themselves (for tooltips).
+ *
+ * Snapshots are recycled by {@link FrameExchange}: the simulation fills one while the renderer reads another,
+ * so the arrays are reused across frames and nothing is allocated once they are large enough.
+ * A coarse cell index over the positions is built at the same time, so hit-testing a point only
+ * visits the molecules in nearby cells.
+ */
+public class FrameSnapshot {
+    private static final double CELL_SIZE = 32.0;
+
+    private int count;
+    private long step;
+    private int width;
+    private int height;
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    private double[] energy = new double[0];
+    private int[] colors = new int[0];
+    private Molecule[] molecules = new Molecule[0];
+    // Counting-sort cell index: slots of cell c are order[cellStart[c] .. cellStart[c + 1])
+    private int cols;
+    private int rows;
+    private int[] cellStart = new int[1];
+    private int[] order = new int[0];
+
+    /**
+     * Copies the current state of the particle store into this snapshot.
+     * @param particles The particle store.
+     * @param colorScheme Maps molecules to colours, or null for white.
+     * @param step The step the state belongs to.
+     * @param width The width of the soup.
+     * @param height The height of the soup.
+     */
+    void fill(ParticleStore particles, ColorScheme colorScheme, long step, int width, int height) {
+        int n = particles.size();
+        if (x.length < n) {
+            int capacity = Math.max(n, x.length + (x.length >> 1));
+            x = new double[capacity];
+            y = new double[capacity];
+            energy = new double[capacity];
+            colors = new int[capacity];
+            molecules = new Molecule[capacity];
+            order = new int[capacity];
+        }
+        System.arraycopy(particles.getXArray(), 0, x, 0, n);
+        System.arraycopy(particles.getYArray(), 0, y, 0, n);
+        System.arraycopy(particles.getEnergyArray(), 0, energy, 0, n);
+        for (int i = 0; i < n; i++) {
+            Molecule molecule = particles.get(i);
+            molecules[i] = molecule;
+            colors[i] = colorScheme != null ? colorScheme.argb(molecule) : 0xFFFFFFFF;
+        }
+        // Drop references to molecules that are no longer in the soup
+        if (n < count) {
+            Arrays.fill(molecules, n, count, null);
+        }
+        this.count = n;
+        this.step = step;
+        this.width = width;
+        this.height = height;
+        buildCellIndex();
+    }
+
+    private void buildCellIndex() {
+        cols = Math.max(1, (int) Math.ceil(width / CELL_SIZE));
+        rows = Math.max(1, (int) Math.ceil(height / CELL_SIZE));
+        int cells = cols * rows;
+        if (cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+        } else {
+            Arrays.fill(cellStart, 0, cells + 1, 0);
+        }
+        for (int i = 0; i < count; i++) {
+            cellStart[cellOf(x[i], y[i]) + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        // Place each slot, advancing its cell's start; afterwards shift the starts back
+        for (int i = 0; i < count; i++) {
+            order[cellStart[cellOf(x[i], y[i])]++] = i;
+        }
+        for (int c = cells; c > 0; c--) {
+            cellStart[c] = cellStart[c - 1];
+        }
+        cellStart[0] = 0;
+    }
+
+    private int cellOf(double px, double py) {
+        int col = Math.min(cols - 1, Math.max(0, (int) (px / CELL_SIZE)));
+        int row = Math.min(rows - 1, Math.max(0, (int) (py / CELL_SIZE)));
+        return row * cols + col;
+    }
+
+    /**
+     * Finds the molecule in this frame closest to a point.
+     * @param px The x coordinate.
+     * @param py The y coordinate.
+     * @param maxDistance The largest distance considered.
+     * @return The index of the nearest molecule, or -1 if none lies within maxDistance.
+     */
+    public int nearest(double px, double py, double maxDistance) {
+        int minCol = Math.max(0, (int) Math.floor((px - maxDistance) / CELL_SIZE));
+        int maxCol = Math.min(cols - 1, (int) Math.floor((px + maxDistance) / CELL_SIZE));
+        int minRow = Math.max(0, (int) Math.floor((py - maxDistance) / CELL_SIZE));
+        int maxRow = Math.min(rows - 1, (int) Math.floor((py + maxDistance) / CELL_SIZE));
+        int best = -1;
+        double bestSq = maxDistance * maxDistance;
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                int cell = row * cols + col;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = order[k];
+                    double dx = x[i] - px;
+                    double dy = y[i] - py;
+                    double distSq = dx * dx + dy * dy;
+                    if (distSq <= bestSq) {
+                        bestSq = distSq;
+                        best = i;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the number of molecules in this frame. Only indices below this count are valid in the arrays.
+     * @return The molecule count.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the step this frame was taken after.
+     * @return The step number.
+     */
+    public long getStep() {
+        return step;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the x coordinates (read-only by convention, valid up to {@link #getCount()}).
+     * @return The x coordinate array.
+     */
+    public double[] getXArray() {
+        return x;
+    }
+
+    /**
+     * Returns the y coordinates (read-only by convention, valid up to {@link #getCount()}).
+     * @return The y coordinate array.
+     */
+    public double[] getYArray() {
+        return y;
+    }
+
+    /**
+     * Returns the energies (read-only by convention, valid up to {@link #getCount()}).
+     * @return The energy array.
+     */
+    public double[] getEnergyArray() {
+        return energy;
+    }
+
+    /**
+     * Returns the packed ARGB colours (read-only by convention, valid up to {@link #getCount()}).
+     * @return The colour array.
+     */
+    public int[] getColorArray() {
+        return colors;
+    }
+
+    /**
+     * Returns the molecule at an index of this frame.
+     * Its position and energy may have moved on since; use the frame's arrays for those.
+     * @param index The index.
+     * @return The molecule.
+     */
+    public Molecule getMolecule(int index) {
+        return molecules[index];
+    }
+}
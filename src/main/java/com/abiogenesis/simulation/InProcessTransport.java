@@ -0,0 +1,94 @@
+package com.abiogenesis.simulation;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A {@link Transport} between nodes running on threads of the same process: every ordered pair of nodes
+ * shares an unbounded queue, and messages are handed over without copying. Closing a node's transport
+ * ends its queues, so peers waiting for it fail instead of blocking forever.
+ */
+public class InProcessTransport implements Transport {
+    // Queued after the last message of a node whose transport has been closed
+    private static final byte[] CLOSED = new byte[0];
+
+    private final int rank;
+    // queues.get(source).get(destination)
+    private final List<List<BlockingQueue<byte[]>>> queues;
+
+    private InProcessTransport(int rank, List<List<BlockingQueue<byte[]>>> queues) {
+        this.rank = rank;
+        this.queues = queues;
+    }
+
+    /**
+     * Creates connected transports for a number of nodes.
+     * @param size The number of nodes.
+     * @return The transports, indexed by rank.
+     */
+    public static List<Transport> create(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Need at least one node: " + size);
+        }
+        List<List<BlockingQueue<byte[]>>> queues = new ArrayList<>(size);
+        for (int source = 0; source < size; source++) {
+            List<BlockingQueue<byte[]>> row = new ArrayList<>(size);
+            for (int destination = 0; destination < size; destination++) {
+                row.add(new LinkedBlockingQueue<>());
+            }
+            queues.add(row);
+        }
+        List<Transport> transports = new ArrayList<>(size);
+        for (int rank = 0; rank < size; rank++) {
+            transports.add(new InProcessTransport(rank, queues));
+        }
+        return transports;
+    }
+
+    @Override
+    public int getRank() {
+        return rank;
+    }
+
+    @Override
+    public int getSize() {
+        return queues.size();
+    }
+
+    @Override
+    public void send(int destination, byte[] message) {
+        queues.get(rank).get(destination).add(message);
+    }
+
+    @Override
+    public byte[] receive(int source) throws IOException {
+        try {
+            BlockingQueue<byte[]> queue = queues.get(source).get(rank);
+            byte[] message = queue.take();
+            if (message == CLOSED) {
+                // Leave the marker for later calls
+                queue.add(CLOSED);
+                throw new EOFException("Node " + source + " disconnected");
+            }
+            return message;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for node " + source);
+        }
+    }
+
+    @Override
+    public void close() {
+        List<BlockingQueue<byte[]>> outgoing = queues.get(rank);
+        for (int destination = 0; destination < outgoing.size(); destination++) {
+            if (destination != rank) {
+                outgoing.get(destination).add(CLOSED);
+            }
+        }
+    }
+}
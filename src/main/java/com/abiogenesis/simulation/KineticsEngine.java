@@ -0,0 +1,173 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.AminoAcidMolecule;
+import com.abiogenesis.model.ParticleStore;
+import com.abiogenesis.model.SplitMixRandom;
+
+/**
+ * Event-driven kinetics for a soup: instead of giving every chain a trial for every process in every step,
+ * the engine samples the events themselves, so the cost of a leap grows with the number of events rather
+ * than with the number of chains times the number of steps.
+ *
+ * Every chain mutates, condenses and degrades at the per-step rates of the stepped model, chains are
+ * generated at the stepped generation rate, and pairs recombine at the stepped model's per-step cap (its
+ * pairs are drawn until the cap is reached); treating these as continuous-time rates, the soup is a set of
+ * independent Poisson processes. Events are drawn from their total rate, applied to a chain picked
+ * uniformly, and sorted into a process in proportion to its rate. Rates that depend on the state are bounded
+ * and thinned: degradation is proposed at the rate of the longest chain and accepted in proportion to the
+ * picked chain's own rate, and generation and recombination proposed while the population is at its cap
+ * are rejected, as is a recombination of a chain with no partner in range.
+ *
+ * <ul>
+ *   <li>{@link PrimordialSoup.Kinetics#GILLESPIE}: the direct stochastic simulation algorithm. The time to
+ *       the next event is exponential with the current total rate, which is recomputed after every event.</li>
+ *   <li>{@link PrimordialSoup.Kinetics#TAU_LEAPING}: the leap is cut into sub-leaps (taus) short enough that
+ *       the number of chains, which drives every rate, is expected to change by at most a few percent. The
+ *       number of events in a sub-leap is drawn at once from a Poisson distribution with the rates at its
+ *       start, and the events are applied in turn. Cheaper per event, at the cost of freezing the rates
+ *       within each sub-leap.</li>
+ * </ul>
+ *
+ * Molecules do not move during a leap; the soup moves them once at the end by the displacement accumulated
+ * over the leap. Events report the step-equivalent they fall in. All draws come from the soup's main
+ * random generator, so results do not depend on the number of threads.
+ */
+class KineticsEngine {
+    // Largest expected relative change in the number of chains during one tau-leap; the chain count sets
+    // every other rate, so this keeps the frozen rates close to the true ones
+    private static final double TAU_TOLERANCE = 0.03;
+
+    private final PrimordialSoup soup;
+    private final ReactionEngine reactions;
+    // Rates for the current leap, per step
+    private double generationRate;
+    private double mutationRate;
+    // Recombinations per step across the whole soup
+    private double combinationRate;
+    private double degradationScale;
+    private double combinationProbability;
+    private double perChainRate;
+    private double totalRate;
+
+    KineticsEngine(PrimordialSoup soup, ReactionEngine reactions) {
+        this.soup = soup;
+        this.reactions = reactions;
+    }
+
+    /**
+     * Applies the events of one leap. The caller moves the molecules and closes the step afterwards.
+     * @param steps The length of the leap, in steps.
+     * @param exact True for the Gillespie algorithm, false for tau-leaping.
+     * @return The number of condensation and hydrolysis reactions that took place.
+     */
+    int leap(int steps, boolean exact) {
+        SplitMixRandom random = soup.getMainRandom();
+        PopulationCounters counters = soup.getPopulationCounters();
+        long start = soup.getStepCount();
+        generationRate = soup.getGenerationRate();
+        mutationRate = soup.getMutationRate();
+        int maxCombinations = soup.getMaxCombinationsPerStep();
+        combinationRate = soup.getCombinationRate() > 0 ? maxCombinations : 0;
+        degradationScale = reactions.degradationScale();
+        combinationProbability = reactions.combinationProbability();
+        int reactionCount = 0;
+        // Recombinations are capped per step, as in the stepped model; per sub-leap when tau-leaping
+        long window = -1;
+        int combinations = 0;
+        int combinationCap = maxCombinations;
+        double time = 0;
+        // Events left in the current tau-leap
+        long remaining = 0;
+        while (true) {
+            if (exact) {
+                updateRates(counters);
+                time += Sampling.exponential(random, totalRate);
+                if (time >= steps) break;
+                long step = start + 1 + (long) time;
+                if (step != window) {
+                    window = step;
+                    combinations = 0;
+                }
+                soup.setEventStep(step);
+            } else if (remaining == 0) {
+                if (time >= steps) break;
+                // Start a tau-leap short enough that the chain count, and with it the rates, barely changes
+                updateRates(counters);
+                double changeRate = combinationProbability
+                    + (generationRate + combinationRate) / Math.max(1, counters.getAminoAcidCount());
+                double tau = TAU_TOLERANCE / changeRate;
+                if (tau >= steps - time) {
+                    tau = steps - time;
+                    time = steps;
+                } else {
+                    time += tau;
+                }
+                remaining = Sampling.poisson(random, totalRate * tau);
+                soup.setEventStep(start + (long) Math.ceil(time));
+                combinations = 0;
+                combinationCap = maxCombinations == 0 ? 0 : (int) Math.max(1, Math.round(maxCombinations * tau));
+                continue;
+            } else {
+                remaining--;
+            }
+
+            int chains = counters.getAminoAcidCount();
+            boolean room = chains < soup.getMaxAminoAcids();
+            double u = random.nextDouble() * totalRate;
+            if (u < generationRate) {
+                if (room) soup.generateChain();
+                continue;
+            }
+            if (chains == 0) continue;
+            int slot = randomChain(random);
+            if (u - generationRate < combinationRate) {
+                if (room && combinations < combinationCap && soup.recombine(slot)) {
+                    combinations++;
+                }
+                continue;
+            }
+            // Uniform over [0, perChainRate): each process of the picked chain in proportion to its rate
+            u = random.nextDouble() * perChainRate;
+            if (u < mutationRate) {
+                soup.mutateChain(slot);
+            } else if ((u -= mutationRate) < combinationProbability) {
+                // With an environment field the rates above are bounds; thin to the rate in the chain's cell
+                boolean local = soup.getEnvironment() == null || u < reactions.localCombinationProbability(slot);
+                if (local && reactions.condense(slot)) reactionCount++;
+            } else {
+                AminoAcidMolecule chain = (AminoAcidMolecule) soup.getParticles().get(slot);
+                double scale = soup.getEnvironment() == null ? degradationScale : reactions.localDegradationScale(slot);
+                if (u - combinationProbability < chain.getDegradationProbability() * scale && reactions.degrade(slot)) {
+                    reactionCount++;
+                }
+            }
+        }
+        return reactionCount;
+    }
+
+    /**
+     * Recomputes the bounding event rates from the current population: degradation is bounded by the rate
+     * of the longest chain.
+     * @param counters The soup's population counters.
+     */
+    private void updateRates(PopulationCounters counters) {
+        double degradationBound = AminoAcidMolecule.degradationProbability(counters.getMaxLength()) * degradationScale;
+        perChainRate = mutationRate + combinationProbability + degradationBound;
+        totalRate = generationRate + combinationRate + perChainRate * counters.getAminoAcidCount();
+    }
+
+    /**
+     * Picks a chain uniformly, skipping any other molecules in the store. There must be at least one chain.
+     * @param random The random generator.
+     * @return The chain's slot.
+     */
+    private int randomChain(SplitMixRandom random) {
+        ParticleStore particles = soup.getParticles();
+        byte[] types = particles.getTypeArray();
+        int n = particles.size();
+        while (true) {
+            int slot = random.nextInt(n);
+            if (types[slot] == ParticleStore.TYPE_AMINO_ACID) return slot;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.AminoAcidSequence;
+
+/**
+ * One chain in a lineage, as reported by {@link LineageTable}: its sequence, when and how it arose,
+ * and the ids of its parents.
+ */
+public class LineageRecord {
+    private final long id;
+    private final LineageTable.Kind kind;
+    private final long birthStep;
+    private final long parentA;
+    private final long parentB;
+    private final AminoAcidSequence sequence;
+
+    /**
+     * Creates a lineage record.
+     * @param id The chain's lineage id.
+     * @param kind How the chain arose.
+     * @param birthStep The step in which the chain arose.
+     * @param parentA The id of the first parent (the original chain of a mutation), or -1.
+     * @param parentB The id of the second crossover parent, or -1.
+     * @param sequence The chain's sequence.
+     */
+    public LineageRecord(long id, LineageTable.Kind kind, long birthStep, long parentA, long parentB,
+                         AminoAcidSequence sequence) {
+        this.id = id;
+        this.kind = kind;
+        this.birthStep = birthStep;
+        this.parentA = parentA;
+        this.parentB = parentB;
+        this.sequence = sequence;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public LineageTable.Kind getKind() {
+        return kind;
+    }
+
+    public long getBirthStep() {
+        return birthStep;
+    }
+
+    public long getParentA() {
+        return parentA;
+    }
+
+    public long getParentB() {
+        return parentB;
+    }
+
+    public AminoAcidSequence getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public String toString() {
+        String parents = parentA < 0 ? "" : parentB < 0 ? " from #" + parentA : " from #" + parentA + " x #" + parentB;
+        return "#" + id + " " + sequence + " (" + kind + " at step " + birthStep + parents + ")";
+    }
+}
@@ -0,0 +1,400 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.AminoAcidMolecule;
+import com.abiogenesis.model.AminoAcidSequence;
+import com.abiogenesis.model.Molecule;
+import com.abiogenesis.model.ParticleStore;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Records the ancestry of every amino acid chain in a soup, so the history of a motif hit can be traced
+ * back through the mutations and crossovers that produced it.
+ *
+ * Each chain gets a node holding its parents, its birth step, how it arose and its packed sequence.
+ * Nodes live in parallel primitive arrays and are addressed by index; the molecules themselves are not kept.
+ * A node is reference counted: it is held by the chain while that chain is in the soup, and by each of its
+ * children. When a chain dies (it mutates into a new chain, or leaves the soup, e.g. consumed by a reaction) and no node descends from it,
+ * its node is freed and its parents are released in turn, so extinct branches are pruned as they die out
+ * and only the ancestors of living chains are retained. Freed nodes are reused.
+ *
+ * A lineage id combines a node index with the number of times that node has been reused, so an id held
+ * after its branch was pruned is recognised as stale instead of pointing at an unrelated chain.
+ *
+ * The table follows the soup through {@link SoupListener} events, which arrive from the serial parts of
+ * a step, so ids are deterministic for a given seed. Enable it with
+ * {@link PrimordialSoup#setLineageTracking(boolean)}.
+ */
+public class LineageTable implements SoupListener {
+    /**
+     * How a chain arose.
+     */
+    public enum Kind {
+        /** Already in the soup when lineage tracking started; its history is unknown. */
+        EXISTING,
+        /** Added from outside the simulation. */
+        ADDED,
+        /** Generated spontaneously by the soup. */
+        GENERATED,
+        /** Recombined from two parent chains. */
+        CROSSOVER,
+        /** Mutated from a single parent chain. */
+        MUTATION,
+        /** Condensed from two reactant chains. */
+        COMBINATION,
+        /** Shortened by hydrolysis of a single parent chain. */
+        DEGRADATION
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Per-node state, indexed by node; a node with no references is free
+    private int[] parentA;
+    private int[] parentB;
+    private long[] birthSteps;
+    private byte[] kinds;
+    private int[] references;
+    private int[] generations;
+    private AminoAcidSequence[] sequences;
+    // Nodes [0, nodeLimit) have been used at least once; freed ones are reused last-in first-out
+    private int nodeLimit;
+    private final IntList freeNodes = new IntList();
+    private final IntList releaseStack = new IntList();
+    private long prunedCount;
+    // Node of the chain in each particle slot, or -1 for other molecules
+    private int[] slotNodes;
+    private int slotCount;
+
+    /**
+     * Starts tracking the chains currently in a soup. Their history is unknown, so each becomes a root.
+     * @param soup The soup whose chains are tracked.
+     */
+    LineageTable(PrimordialSoup soup) {
+        allocate(INITIAL_CAPACITY);
+        ParticleStore particles = soup.getParticles();
+        int n = particles.size();
+        slotNodes = new int[Math.max(INITIAL_CAPACITY, n)];
+        for (int slot = 0; slot < n; slot++) {
+            Molecule molecule = particles.get(slot);
+            slotNodes[slot] = molecule instanceof AminoAcidMolecule
+                ? newNode(Kind.EXISTING, -1, -1, soup.getStepCount(), ((AminoAcidMolecule) molecule).getPackedSequence())
+                : -1;
+        }
+        slotCount = n;
+    }
+
+    /**
+     * Restores a table saved in a checkpoint. The arrays are taken over, not copied.
+     * @param parentA The first parent of each node, or -1.
+     * @param parentB The second parent of each node, or -1.
+     * @param birthSteps The birth step of each node.
+     * @param kinds The {@link Kind} ordinal of each node.
+     * @param references The reference count of each node; 0 for free nodes.
+     * @param generations The reuse count of each node.
+     * @param sequences The sequence of each node in use.
+     * @param nodeLimit The number of nodes ever used.
+     * @param freeNodes The free nodes, in reuse order (the last is reused first).
+     * @param prunedCount The number of nodes pruned so far.
+     * @param slotNodes The node of each particle slot, or -1.
+     * @param slotCount The number of particle slots.
+     * @throws IllegalArgumentException If the arrays are inconsistent.
+     */
+    LineageTable(int[] parentA, int[] parentB, long[] birthSteps, byte[] kinds, int[] references, int[] generations,
+                 AminoAcidSequence[] sequences, int nodeLimit, int[] freeNodes, long prunedCount,
+                 int[] slotNodes, int slotCount) {
+        this.parentA = parentA;
+        this.parentB = parentB;
+        this.birthSteps = birthSteps;
+        this.kinds = kinds;
+        this.references = references;
+        this.generations = generations;
+        this.sequences = sequences;
+        this.nodeLimit = nodeLimit;
+        this.prunedCount = prunedCount;
+        this.slotNodes = slotNodes;
+        this.slotCount = slotCount;
+        for (int node = 0; node < nodeLimit; node++) {
+            if (references[node] < 0 || kinds[node] < 0 || kinds[node] >= KINDS.length
+                    || (references[node] > 0 && sequences[node] == null)) {
+                throw new IllegalArgumentException("Invalid lineage node " + node);
+            }
+            checkNode(parentA[node], true);
+            checkNode(parentB[node], true);
+        }
+        for (int node : freeNodes) {
+            checkNode(node, false);
+            if (references[node] != 0) {
+                throw new IllegalArgumentException("Lineage node " + node + " is both free and in use");
+            }
+            this.freeNodes.add(node);
+        }
+        for (int slot = 0; slot < slotCount; slot++) {
+            checkNode(slotNodes[slot], true);
+        }
+    }
+
+    private void checkNode(int node, boolean allowNone) {
+        if ((node < 0 && !(allowNone && node == -1)) || node >= nodeLimit) {
+            throw new IllegalArgumentException("Lineage node " + node + " out of range");
+        }
+    }
+
+    @Override
+    public void onBirth(long step, int slot, Molecule molecule, Origin origin, int parentSlotA, int parentSlotB) {
+        if (slot >= slotNodes.length) {
+            slotNodes = Arrays.copyOf(slotNodes, Math.max(slot + 1, slotNodes.length * 2));
+        }
+        slotCount = slot + 1;
+        if (!(molecule instanceof AminoAcidMolecule)) {
+            slotNodes[slot] = -1;
+            return;
+        }
+        AminoAcidSequence sequence = ((AminoAcidMolecule) molecule).getPackedSequence();
+        int a = parentSlotA < 0 ? -1 : slotNodes[parentSlotA];
+        int b = parentSlotB < 0 ? -1 : slotNodes[parentSlotB];
+        Kind kind;
+        switch (origin) {
+            case GENERATED:
+                kind = Kind.GENERATED;
+                break;
+            case CROSSOVER:
+                kind = Kind.CROSSOVER;
+                break;
+            case COMBINATION:
+                kind = Kind.COMBINATION;
+                break;
+            case DEGRADATION:
+                kind = Kind.DEGRADATION;
+                break;
+            default:
+                kind = Kind.ADDED;
+        }
+        slotNodes[slot] = newNode(kind, a, b, step, sequence);
+    }
+
+    @Override
+    public void onMutation(long step, int slot, AminoAcidMolecule previous, AminoAcidMolecule mutated) {
+        int parent = slotNodes[slot];
+        slotNodes[slot] = newNode(Kind.MUTATION, parent, -1, step, mutated.getPackedSequence());
+        // The previous chain is gone; its node now lives on only through the new one
+        release(parent);
+    }
+
+    @Override
+    public void onRemoval(long step, int slot, Molecule molecule) {
+        int node = slotNodes[slot];
+        int last = --slotCount;
+        slotNodes[slot] = slotNodes[last];
+        slotNodes[last] = -1;
+        release(node);
+    }
+
+    /**
+     * Takes a free node (or a fresh one) for a new chain, holding a reference for the chain itself
+     * and one on each parent.
+     */
+    private int newNode(Kind kind, int a, int b, long step, AminoAcidSequence sequence) {
+        int node;
+        if (freeNodes.size() > 0) {
+            node = freeNodes.removeLast();
+        } else {
+            if (nodeLimit == references.length) {
+                allocate(Math.max(INITIAL_CAPACITY, nodeLimit * 2));
+            }
+            node = nodeLimit++;
+        }
+        parentA[node] = a;
+        parentB[node] = b;
+        birthSteps[node] = step;
+        kinds[node] = (byte) kind.ordinal();
+        references[node] = 1;
+        sequences[node] = sequence;
+        if (a >= 0) references[a]++;
+        if (b >= 0) references[b]++;
+        return node;
+    }
+
+    /**
+     * Drops one reference to a node, freeing it and releasing its parents if it was the last.
+     * Uses an explicit stack, as a pruned branch can be arbitrarily deep.
+     */
+    private void release(int node) {
+        if (node < 0) return;
+        releaseStack.add(node);
+        while (releaseStack.size() > 0) {
+            int current = releaseStack.removeLast();
+            if (--references[current] > 0) continue;
+            sequences[current] = null;
+            generations[current]++;
+            freeNodes.add(current);
+            prunedCount++;
+            if (parentA[current] >= 0) releaseStack.add(parentA[current]);
+            if (parentB[current] >= 0) releaseStack.add(parentB[current]);
+        }
+    }
+
+    private void allocate(int capacity) {
+        if (references == null) {
+            parentA = new int[capacity];
+            parentB = new int[capacity];
+            birthSteps = new long[capacity];
+            kinds = new byte[capacity];
+            references = new int[capacity];
+            generations = new int[capacity];
+            sequences = new AminoAcidSequence[capacity];
+        } else {
+            parentA = Arrays.copyOf(parentA, capacity);
+            parentB = Arrays.copyOf(parentB, capacity);
+            birthSteps = Arrays.copyOf(birthSteps, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            references = Arrays.copyOf(references, capacity);
+            generations = Arrays.copyOf(generations, capacity);
+            sequences = Arrays.copyOf(sequences, capacity);
+        }
+    }
+
+    private long idOf(int node) {
+        return node < 0 ? -1 : ((long) generations[node] << 32) | node;
+    }
+
+    /**
+     * Resolves an id to the node it names.
+     * @return The node, or -1 if the id is invalid or its branch has been pruned.
+     */
+    private int nodeOf(long id) {
+        if (id < 0) return -1;
+        int node = (int) id;
+        if (node < 0 || node >= nodeLimit || references[node] == 0 || generations[node] != (int) (id >>> 32)) {
+            return -1;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the lineage id of the chain in a particle slot.
+     * @param slot The slot.
+     * @return The id, or -1 if the slot does not hold an amino acid chain.
+     */
+    public long getId(int slot) {
+        return slot < 0 || slot >= slotCount ? -1 : idOf(slotNodes[slot]);
+    }
+
+    /**
+     * Checks whether an id still names a chain in the table: a living chain or an ancestor of one.
+     * @param id The lineage id.
+     * @return True if the chain's record is available.
+     */
+    public boolean contains(long id) {
+        return nodeOf(id) >= 0;
+    }
+
+    /**
+     * Returns the record of a single chain.
+     * @param id The lineage id.
+     * @return The record, or null if the id is unknown or its branch has died out.
+     */
+    public LineageRecord getRecord(long id) {
+        int node = nodeOf(id);
+        return node < 0 ? null : record(node);
+    }
+
+    /**
+     * Returns a chain and all its recorded ancestors, breadth first from the chain itself. Ancestors shared
+     * through several crossovers are listed once.
+     * @param id The lineage id.
+     * @param maxRecords The largest number of records returned.
+     * @return The ancestry, empty if the id is unknown or its branch has died out.
+     */
+    public List<LineageRecord> getAncestry(long id, int maxRecords) {
+        List<LineageRecord> ancestry = new ArrayList<>();
+        int start = nodeOf(id);
+        if (start < 0) return ancestry;
+        BitSet visited = new BitSet(nodeLimit);
+        IntList queue = new IntList();
+        queue.add(start);
+        visited.set(start);
+        for (int head = 0; head < queue.size() && ancestry.size() < maxRecords; head++) {
+            int node = queue.get(head);
+            ancestry.add(record(node));
+            int a = parentA[node];
+            int b = parentB[node];
+            if (a >= 0 && !visited.get(a)) {
+                visited.set(a);
+                queue.add(a);
+            }
+            if (b >= 0 && !visited.get(b)) {
+                visited.set(b);
+                queue.add(b);
+            }
+        }
+        return ancestry;
+    }
+
+    private LineageRecord record(int node) {
+        return new LineageRecord(idOf(node), KINDS[kinds[node]], birthSteps[node],
+            idOf(parentA[node]), idOf(parentB[node]), sequences[node]);
+    }
+
+    /**
+     * Returns the number of nodes in use: living chains and their ancestors.
+     * @return The node count.
+     */
+    public int getNodeCount() {
+        return nodeLimit - freeNodes.size();
+    }
+
+    /**
+     * Returns how many nodes have been pruned because their branch died out.
+     * @return The number of pruned nodes.
+     */
+    public long getPrunedCount() {
+        return prunedCount;
+    }
+
+    int getNodeLimit() {
+        return nodeLimit;
+    }
+
+    int[] getParentAArray() {
+        return parentA;
+    }
+
+    int[] getParentBArray() {
+        return parentB;
+    }
+
+    long[] getBirthStepArray() {
+        return birthSteps;
+    }
+
+    byte[] getKindArray() {
+        return kinds;
+    }
+
+    int[] getReferenceArray() {
+        return references;
+    }
+
+    int[] getGenerationArray() {
+        return generations;
+    }
+
+    AminoAcidSequence[] getSequenceArray() {
+        return sequences;
+    }
+
+    IntList getFreeNodes() {
+        return freeNodes;
+    }
+
+    int[] getSlotNodeArray() {
+        return slotNodes;
+    }
+
+    int getSlotCount() {
+        return slotCount;
+    }
+}
@@ -0,0 +1,86 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.AminoAcidMolecule;
+
+/**
+ * Reports that a newly created or mutated chain contains a tracked motif.
+ */
+public class MotifHit {
+    private final String motif;
+    private final int motifIndex;
+    private final long step;
+    private final AminoAcidMolecule chain;
+    private final int occurrences;
+    private final long firstSeenStep;
+    private final long chainCount;
+    private final long lineageId;
+
+    /**
+     * Creates a hit event.
+     * @param motif The motif found.
+     * @param motifIndex The motif's index in the tracked motif set.
+     * @param step The step in which the chain was scanned.
+     * @param chain The chain containing the motif.
+     * @param occurrences How many times the motif occurs in the chain.
+     * @param firstSeenStep The step in which the motif was first seen in any chain.
+     * @param chainCount How many chains have contained the motif so far, including this one.
+     * @param lineageId The chain's id in the soup's {@link LineageTable}, or -1 if lineage is not tracked.
+     */
+    public MotifHit(String motif, int motifIndex, long step, AminoAcidMolecule chain,
+                    int occurrences, long firstSeenStep, long chainCount, long lineageId) {
+        this.motif = motif;
+        this.motifIndex = motifIndex;
+        this.step = step;
+        this.chain = chain;
+        this.occurrences = occurrences;
+        this.firstSeenStep = firstSeenStep;
+        this.chainCount = chainCount;
+        this.lineageId = lineageId;
+    }
+
+    public String getMotif() {
+        return motif;
+    }
+
+    public int getMotifIndex() {
+        return motifIndex;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public AminoAcidMolecule getChain() {
+        return chain;
+    }
+
+    public int getOccurrences() {
+        return occurrences;
+    }
+
+    public long getFirstSeenStep() {
+        return firstSeenStep;
+    }
+
+    public long getChainCount() {
+        return chainCount;
+    }
+
+    public long getLineageId() {
+        return lineageId;
+    }
+
+    /**
+     * Checks whether this is the first time the motif has been seen in the soup.
+     * @return True for the first hit of the motif.
+     */
+    public boolean isFirstSighting() {
+        return chainCount == 1;
+    }
+
+    @Override
+    public String toString() {
+        return "Motif '" + motif + "' x" + occurrences + " at step " + step
+            + " in chain " + chain.getSequence() + " (first seen at step " + firstSeenStep + ")";
+    }
+}
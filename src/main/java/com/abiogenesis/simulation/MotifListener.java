@@ -0,0 +1,13 @@
+package com.abiogenesis.simulation;
+
+/**
+ * Receives motif hits from a {@link MotifTracker}. Listeners are called on the simulation thread,
+ * at the end of the step in which the chain was created or mutated.
+ */
+public interface MotifListener {
+    /**
+     * Called when a newly created or mutated chain contains a tracked motif.
+     * @param hit The hit event.
+     */
+    void onMotifHit(MotifHit hit);
+}
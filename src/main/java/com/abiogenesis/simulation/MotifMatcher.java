@@ -0,0 +1,169 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.AminoAcidSequence;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Multi-pattern matcher for amino acid motifs, built as an Aho-Corasick automaton over the
+ * 20-residue alphabet. Every motif occurrence in a sequence is found in a single left-to-right pass,
+ * so scanning for hundreds of motifs costs about the same as scanning for one.
+ *
+ * The automaton is compiled into a dense transition table ({@code states x 20} ints) and is immutable,
+ * so one matcher can be shared by any number of threads.
+ */
+public class MotifMatcher {
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    private final List<String> motifs;
+    // Complete transition function: transitions[state * ALPHABET_SIZE + code] = next state
+    private final int[] transitions;
+    // Motif ending exactly at a state, or NONE
+    private final int[] terminalMotif;
+    // Nearest proper suffix state that ends a motif, or NONE
+    private final int[] outputLink;
+
+    /**
+     * Receives motif occurrences found by {@link #scan}.
+     */
+    public interface MatchHandler {
+        /**
+         * Called for every occurrence of a motif.
+         * @param motifIndex The index of the motif (see {@link #getMotif(int)}).
+         * @param end The position just past the last residue of the occurrence.
+         */
+        void onMatch(int motifIndex, int end);
+    }
+
+    /**
+     * Compiles a matcher for the given motifs. Duplicates are ignored.
+     * @param motifs The motifs, as single-letter amino acid sequences.
+     * @throws IllegalArgumentException If a motif is empty or contains a non-standard amino acid.
+     */
+    public MotifMatcher(Collection<String> motifs) {
+        this.motifs = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(motifs)));
+
+        // Build the trie
+        int alphabet = AminoAcidSequence.ALPHABET_SIZE;
+        int maxStates = 1;
+        for (String motif : this.motifs) {
+            if (motif.isEmpty()) {
+                throw new IllegalArgumentException("Motifs must not be empty");
+            }
+            maxStates += motif.length();
+        }
+        int[] delta = new int[maxStates * alphabet];
+        Arrays.fill(delta, NONE);
+        int[] terminal = new int[maxStates];
+        Arrays.fill(terminal, NONE);
+        int states = 1;
+        for (int m = 0; m < this.motifs.size(); m++) {
+            String motif = this.motifs.get(m);
+            int state = ROOT;
+            for (int i = 0; i < motif.length(); i++) {
+                int index = state * alphabet + AminoAcidSequence.codeOf(motif.charAt(i));
+                if (delta[index] == NONE) {
+                    delta[index] = states++;
+                }
+                state = delta[index];
+            }
+            terminal[state] = m;
+        }
+
+        // Breadth-first pass: compute failure links and turn the trie into a complete automaton
+        int[] fail = new int[states];
+        int[] output = new int[states];
+        Arrays.fill(output, NONE);
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int code = 0; code < alphabet; code++) {
+            int child = delta[code];
+            if (child == NONE) {
+                delta[code] = ROOT;
+            } else {
+                fail[child] = ROOT;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int failState = fail[state];
+            output[state] = terminal[failState] != NONE ? failState : output[failState];
+            for (int code = 0; code < alphabet; code++) {
+                int index = state * alphabet + code;
+                int child = delta[index];
+                if (child == NONE) {
+                    delta[index] = delta[failState * alphabet + code];
+                } else {
+                    fail[child] = delta[failState * alphabet + code];
+                    queue.add(child);
+                }
+            }
+        }
+
+        this.transitions = Arrays.copyOf(delta, states * alphabet);
+        this.terminalMotif = Arrays.copyOf(terminal, states);
+        this.outputLink = output;
+    }
+
+    /**
+     * Returns the number of distinct motifs.
+     * @return The motif count.
+     */
+    public int getMotifCount() {
+        return motifs.size();
+    }
+
+    /**
+     * Returns a motif by index.
+     * @param index The motif index.
+     * @return The motif.
+     */
+    public String getMotif(int index) {
+        return motifs.get(index);
+    }
+
+    /**
+     * Returns all motifs, in index order.
+     * @return The motifs (read-only).
+     */
+    public List<String> getMotifs() {
+        return motifs;
+    }
+
+    /**
+     * Reports every occurrence of every motif in a sequence, in order of their end position.
+     * @param sequence The sequence to scan.
+     * @param handler Receives each occurrence.
+     */
+    public void scan(AminoAcidSequence sequence, MatchHandler handler) {
+        int state = ROOT;
+        for (int i = 0, n = sequence.length(); i < n; i++) {
+            state = transitions[state * AminoAcidSequence.ALPHABET_SIZE + sequence.codeAt(i)];
+            for (int match = terminalMotif[state] != NONE ? state : outputLink[state];
+                 match != NONE; match = outputLink[match]) {
+                handler.onMatch(terminalMotif[match], i + 1);
+            }
+        }
+    }
+
+    /**
+     * Checks whether any motif occurs in a sequence.
+     * @param sequence The sequence to scan.
+     * @return True if at least one motif occurs.
+     */
+    public boolean matchesAny(AminoAcidSequence sequence) {
+        int state = ROOT;
+        for (int i = 0, n = sequence.length(); i < n; i++) {
+            state = transitions[state * AminoAcidSequence.ALPHABET_SIZE + sequence.codeAt(i)];
+            if (terminalMotif[state] != NONE || outputLink[state] != NONE) return true;
+        }
+        return false;
+    }
+}
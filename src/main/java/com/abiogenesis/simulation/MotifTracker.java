@@ -0,0 +1,174 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.AminoAcidMolecule;
+import com.abiogenesis.model.AminoAcidSequence;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tracks the emergence of a set of motifs in the soup. Chains are only scanned when they are created
+ * or mutated; for every motif the tracker keeps the step it was first seen, how many chains have
+ * carried it and how many occurrences were found, and it notifies {@link MotifListener}s of each hit.
+ */
+public class MotifTracker {
+    private static final int[] NO_HITS = new int[0];
+    private final MotifMatcher matcher;
+    private final long[] firstSeenStep;
+    private final long[] chainCounts;
+    private final long[] occurrenceCounts;
+    private final List<MotifListener> listeners = new CopyOnWriteArrayList<>();
+    // Scratch space for one scan: per-motif occurrence counts and the motifs touched
+    private final int[] scanCounts;
+    private final int[] scanTouched;
+    private int scanTouchedCount;
+    private long chainsScanned;
+
+    /**
+     * Creates a tracker for the given motifs.
+     * @param motifs The motifs to track.
+     */
+    public MotifTracker(Collection<String> motifs) {
+        this.matcher = new MotifMatcher(motifs);
+        int count = matcher.getMotifCount();
+        this.firstSeenStep = new long[count];
+        Arrays.fill(firstSeenStep, -1);
+        this.chainCounts = new long[count];
+        this.occurrenceCounts = new long[count];
+        this.scanCounts = new int[count];
+        this.scanTouched = new int[count];
+    }
+
+    /**
+     * Finds the tracked motifs in a sequence without touching the statistics.
+     * @param sequence The sequence to scan.
+     * @return The motifs found and their occurrence counts, as (motif index, count) pairs in one array;
+     *         a shared empty array if there are none.
+     */
+    int[] match(AminoAcidSequence sequence) {
+        scanTouchedCount = 0;
+        matcher.scan(sequence, (motifIndex, end) -> {
+            if (scanCounts[motifIndex]++ == 0) {
+                scanTouched[scanTouchedCount++] = motifIndex;
+            }
+        });
+        if (scanTouchedCount == 0) return NO_HITS;
+        int[] hits = new int[scanTouchedCount * 2];
+        for (int i = 0; i < scanTouchedCount; i++) {
+            int motifIndex = scanTouched[i];
+            hits[2 * i] = motifIndex;
+            hits[2 * i + 1] = scanCounts[motifIndex];
+            scanCounts[motifIndex] = 0;
+        }
+        return hits;
+    }
+
+    /**
+     * Updates the statistics with the motifs found in a chain and notifies listeners of each hit.
+     * @param step The current step.
+     * @param chain The scanned chain.
+     * @param lineageId The chain's lineage id, or -1 if lineage is not tracked.
+     * @param hits The result of {@link #match} for the chain's sequence.
+     */
+    void record(long step, AminoAcidMolecule chain, long lineageId, int[] hits) {
+        chainsScanned++;
+        for (int i = 0; i < hits.length; i += 2) {
+            int motifIndex = hits[i];
+            int occurrences = hits[i + 1];
+            if (firstSeenStep[motifIndex] < 0) {
+                firstSeenStep[motifIndex] = step;
+            }
+            chainCounts[motifIndex]++;
+            occurrenceCounts[motifIndex] += occurrences;
+            if (!listeners.isEmpty()) {
+                MotifHit hit = new MotifHit(matcher.getMotif(motifIndex), motifIndex, step, chain,
+                    occurrences, firstSeenStep[motifIndex], chainCounts[motifIndex], lineageId);
+                for (MotifListener listener : listeners) {
+                    listener.onMotifHit(hit);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers a listener for motif hits.
+     * @param listener The listener.
+     */
+    public void addListener(MotifListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     * @param listener The listener.
+     */
+    public void removeListener(MotifListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Registers all of another tracker's listeners with this one.
+     * @param other The tracker to copy listeners from.
+     */
+    void copyListenersFrom(MotifTracker other) {
+        listeners.addAll(other.listeners);
+    }
+
+    /**
+     * Restores statistics saved from a tracker with the same motifs.
+     * @param firstSeen The first step each motif was seen, or -1.
+     * @param chains The number of matching chains per motif.
+     * @param occurrences The number of occurrences per motif.
+     * @param scanned The number of chains scanned.
+     */
+    void restoreStatistics(long[] firstSeen, long[] chains, long[] occurrences, long scanned) {
+        System.arraycopy(firstSeen, 0, firstSeenStep, 0, firstSeenStep.length);
+        System.arraycopy(chains, 0, chainCounts, 0, chainCounts.length);
+        System.arraycopy(occurrences, 0, occurrenceCounts, 0, occurrenceCounts.length);
+        this.chainsScanned = scanned;
+    }
+
+    /**
+     * Returns the compiled matcher, which also lists the tracked motifs.
+     * @return The motif matcher.
+     */
+    public MotifMatcher getMatcher() {
+        return matcher;
+    }
+
+    /**
+     * Returns the step in which a motif was first seen.
+     * @param motifIndex The motif index.
+     * @return The step, or -1 if the motif has not been seen.
+     */
+    public long getFirstSeenStep(int motifIndex) {
+        return firstSeenStep[motifIndex];
+    }
+
+    /**
+     * Returns how many created or mutated chains have contained a motif.
+     * @param motifIndex The motif index.
+     * @return The number of chains.
+     */
+    public long getChainCount(int motifIndex) {
+        return chainCounts[motifIndex];
+    }
+
+    /**
+     * Returns the total number of occurrences of a motif found in scanned chains.
+     * @param motifIndex The motif index.
+     * @return The number of occurrences.
+     */
+    public long getOccurrenceCount(int motifIndex) {
+        return occurrenceCounts[motifIndex];
+    }
+
+    /**
+     * Returns how many chains have been scanned.
+     * @return The number of scans.
+     */
+    public long getChainsScanned() {
+        return chainsScanned;
+    }
+}
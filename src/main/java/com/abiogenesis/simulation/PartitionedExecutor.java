@@ -0,0 +1,203 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.SplitMixRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a per-particle pass over fixed-size index partitions, optionally in parallel on a {@link ForkJoinPool}.
+ *
+ * Partition boundaries depend only on the number of items, never on the number of threads, and every
+ * partition receives its own random stream split off the parent in partition order before any work starts.
+ * A pass therefore produces bit-identical results whether it runs on one thread or many.
+ */
+class PartitionedExecutor {
+    // Number of slots per partition; large enough to amortize task overhead, small enough to balance load
+    static final int PARTITION_SIZE = 2048;
+
+    /**
+     * Work performed on one partition.
+     */
+    interface PartitionTask {
+        /**
+         * Processes the slots in [from, to).
+         * @param partition The partition index.
+         * @param from The first slot (inclusive).
+         * @param to The last slot (exclusive).
+         * @param random The partition's private random stream.
+         */
+        void run(int partition, int from, int to, SplitMixRandom random);
+    }
+
+    /**
+     * Work performed on a range of items that needs no random stream.
+     */
+    interface RangeTask {
+        /**
+         * Processes the items in [from, to).
+         * @param from The first item (inclusive).
+         * @param to The last item (exclusive).
+         */
+        void run(int from, int to);
+    }
+
+    private ForkJoinPool pool;
+    private boolean ownsPool;
+
+    /**
+     * Creates an executor that runs partitions on the common ForkJoinPool.
+     */
+    PartitionedExecutor() {
+        this.pool = ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Sets the number of worker threads. One means partitions run inline on the calling thread.
+     * @param threads The number of threads (at least 1).
+     */
+    void setParallelism(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + threads);
+        }
+        close();
+        if (threads > 1) {
+            pool = new ForkJoinPool(threads);
+            ownsPool = true;
+        }
+    }
+
+    /**
+     * Shuts down the worker threads this executor started, if any. Later passes run inline on the calling
+     * thread until the parallelism is set again.
+     */
+    void close() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+        pool = null;
+        ownsPool = false;
+    }
+
+    /**
+     * Returns the number of worker threads used.
+     * @return The parallelism.
+     */
+    int getParallelism() {
+        return pool == null ? 1 : pool.getParallelism();
+    }
+
+    /**
+     * Returns the number of partitions a pass over the given number of items is split into.
+     * @param count The number of items.
+     * @return The partition count.
+     */
+    static int partitionCount(int count) {
+        return (count + PARTITION_SIZE - 1) / PARTITION_SIZE;
+    }
+
+    /**
+     * Runs a task over every partition of [0, count) and waits for all of them to finish.
+     * @param count The number of items.
+     * @param random The generator the partition streams are split from.
+     * @param task The work to perform per partition.
+     */
+    void run(int count, SplitMixRandom random, PartitionTask task) {
+        int partitions = partitionCount(count);
+        if (partitions == 0) return;
+        SplitMixRandom[] streams = new SplitMixRandom[partitions];
+        for (int p = 0; p < partitions; p++) {
+            streams[p] = random.split();
+        }
+        if (pool == null || partitions == 1) {
+            for (int p = 0; p < partitions; p++) {
+                runPartition(p, count, streams[p], task);
+            }
+        } else {
+            pool.invoke(new PartitionRange(0, partitions, count, streams, task));
+        }
+    }
+
+    /**
+     * Runs a task over [0, count) in ranges of a given size and waits for all of them to finish.
+     * Used for passes whose items are much coarser than particles, such as rows of a field.
+     * @param count The number of items.
+     * @param grain The number of items per range (at least 1).
+     * @param task The work to perform per range.
+     */
+    void run(int count, int grain, RangeTask task) {
+        int ranges = (count + grain - 1) / grain;
+        if (ranges == 0) return;
+        if (pool == null || ranges == 1) {
+            task.run(0, count);
+        } else {
+            pool.invoke(new RangeSplit(0, ranges, count, grain, task));
+        }
+    }
+
+    private static void runPartition(int partition, int count, SplitMixRandom random, PartitionTask task) {
+        int from = partition * PARTITION_SIZE;
+        int to = Math.min(count, from + PARTITION_SIZE);
+        task.run(partition, from, to, random);
+    }
+
+    /**
+     * Splits a range of partitions in halves until single partitions remain.
+     */
+    @SuppressWarnings("serial")
+    private static final class PartitionRange extends RecursiveAction {
+        private final int lo;
+        private final int hi;
+        private final int count;
+        private final SplitMixRandom[] streams;
+        private final PartitionTask task;
+
+        PartitionRange(int lo, int hi, int count, SplitMixRandom[] streams, PartitionTask task) {
+            this.lo = lo;
+            this.hi = hi;
+            this.count = count;
+            this.streams = streams;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                runPartition(lo, count, streams[lo], task);
+            } else {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new PartitionRange(lo, mid, count, streams, task),
+                          new PartitionRange(mid, hi, count, streams, task));
+            }
+        }
+    }
+
+    /**
+     * Splits a run of ranges in halves until single ranges remain.
+     */
+    @SuppressWarnings("serial")
+    private static final class RangeSplit extends RecursiveAction {
+        private final int lo;
+        private final int hi;
+        private final int count;
+        private final int grain;
+        private final RangeTask task;
+
+        RangeSplit(int lo, int hi, int count, int grain, RangeTask task) {
+            this.lo = lo;
+            this.hi = hi;
+            this.count = count;
+            this.grain = grain;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                task.run(lo * grain, Math.min(count, (lo + 1) * grain));
+            } else {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new RangeSplit(lo, mid, count, grain, task), new RangeSplit(mid, hi, count, grain, task));
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.AminoAcidMolecule;
+import com.abiogenesis.model.Molecule;
+import com.abiogenesis.model.ParticleStore;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Population statistics maintained incrementally as molecules are added, removed or mutated,
+ * so that reading them costs O(1) instead of a scan over the whole soup.
+ *
+ * Amino acid chains are counted by length; other molecules are counted by name.
+ */
+public class PopulationCounters {
+    private final int[] typeCounts = new int[2];
+    private int[] lengthCounts = new int[32];
+    private int maxLength;
+    private final Map<String, Integer> moleculeNameCounts = new HashMap<>();
+
+    /**
+     * Counts a molecule entering the soup.
+     * @param molecule The molecule added.
+     */
+    void add(Molecule molecule) {
+        if (molecule instanceof AminoAcidMolecule) {
+            typeCounts[ParticleStore.TYPE_AMINO_ACID]++;
+            addLength(((AminoAcidMolecule) molecule).getLength(), 1);
+        } else {
+            typeCounts[ParticleStore.TYPE_MOLECULE]++;
+            moleculeNameCounts.merge(molecule.getName(), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Uncounts a molecule leaving the soup.
+     * @param molecule The molecule removed.
+     */
+    void remove(Molecule molecule) {
+        if (molecule instanceof AminoAcidMolecule) {
+            typeCounts[ParticleStore.TYPE_AMINO_ACID]--;
+            addLength(((AminoAcidMolecule) molecule).getLength(), -1);
+        } else {
+            typeCounts[ParticleStore.TYPE_MOLECULE]--;
+            moleculeNameCounts.computeIfPresent(molecule.getName(), (name, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    /**
+     * Records a chain whose length changed through mutation.
+     * @param oldLength The length before the mutation.
+     * @param newLength The length after the mutation.
+     */
+    void changeLength(int oldLength, int newLength) {
+        if (oldLength != newLength) {
+            addLength(oldLength, -1);
+            addLength(newLength, 1);
+        }
+    }
+
+    /**
+     * Resets every counter to zero.
+     */
+    void clear() {
+        Arrays.fill(typeCounts, 0);
+        Arrays.fill(lengthCounts, 0);
+        maxLength = 0;
+        moleculeNameCounts.clear();
+    }
+
+    /**
+     * Returns the number of amino acid chains.
+     * @return The chain count.
+     */
+    public int getAminoAcidCount() {
+        return typeCounts[ParticleStore.TYPE_AMINO_ACID];
+    }
+
+    /**
+     * Returns the number of molecules with a given type code.
+     * @param type The type code (see {@link ParticleStore}).
+     * @return The count.
+     */
+    public int getCount(byte type) {
+        return typeCounts[type];
+    }
+
+    /**
+     * Returns the total number of molecules.
+     * @return The total count.
+     */
+    public int getTotal() {
+        return typeCounts[ParticleStore.TYPE_AMINO_ACID] + typeCounts[ParticleStore.TYPE_MOLECULE];
+    }
+
+    /**
+     * Returns the number of chains of a given length.
+     * @param length The chain length.
+     * @return The count.
+     */
+    public int getLengthCount(int length) {
+        return length < lengthCounts.length ? lengthCounts[length] : 0;
+    }
+
+    /**
+     * Returns the length of the longest chain currently in the soup.
+     * @return The longest chain length, or 0 if there are no chains.
+     */
+    public int getMaxLength() {
+        while (maxLength > 0 && lengthCounts[maxLength] == 0) {
+            maxLength--;
+        }
+        return maxLength;
+    }
+
+    /**
+     * Returns the number of molecules by name ("AA12", "H2O", ...), sorted by name.
+     * Builds a new map, so it is meant for periodic reporting rather than per-step use.
+     * @return The counts by name.
+     */
+    public Map<String, Integer> getNameCounts() {
+        Map<String, Integer> counts = new TreeMap<>(moleculeNameCounts);
+        for (int length = 0, longest = getMaxLength(); length <= longest; length++) {
+            if (lengthCounts[length] > 0) {
+                counts.put("AA" + length, lengthCounts[length]);
+            }
+        }
+        return counts;
+    }
+
+    private void addLength(int length, int delta) {
+        if (length >= lengthCounts.length) {
+            lengthCounts = Arrays.copyOf(lengthCounts, Math.max(length + 1, lengthCounts.length * 2));
+        }
+        lengthCounts[length] += delta;
+        if (delta > 0 && length > maxLength) {
+            maxLength = length;
+        }
+    }
+}
@@ -2,11 +2,18 @@ package com.abiogenesis.simulation;
 
 import com.abiogenesis.model.Molecule;
 import com.abiogenesis.model.AminoAcidMolecule;
-
+import com.abiogenesis.model.AminoAcidSequence;
+import com.abiogenesis.model.ParticleStore;
 import com.abiogenesis.model.Position;
+import com.abiogenesis.model.SplitMixRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 /**
  * The PrimordialSoup class simulates a 2D environment where amino acid chains are generated, move randomly,
@@ -16,74 +23,223 @@ import java.util.Random;
  * - Random generation of amino acid chains up to a maximum population.
  * - Temperature-dependent Brownian motion for all molecules.
  * - Mutation (substitution, insertion, deletion) and recombination (crossover) of chains.
- * - Pattern tracking for the emergence of specific sequences (e.g., "METHINKS").
+ * - Condensation and hydrolysis reactions between nearby chains, driven by temperature and pH
+ *   (see {@link ReactionEngine}).
+ * - Motif tracking for the emergence of specific sequences (e.g., "METHINKS"), scanning only changed chains.
+ *   Chains with the same sequence share one copy of it, and a sequence already scanned is not scanned again
+ *   (see {@link SequenceCache}).
  * - Population control to prevent runaway growth.
+ * - Optional grid of local temperature, pH and nutrient that diffuses every step and sets the local rates of
+ *   movement and reactions (see {@link #setEnvironment(EnvironmentField)}).
+ * - Optional cycles of temperature, pH and wet and dry phases, each following a {@link Schedule}
+ *   (see {@link #setTemperatureSchedule(Schedule)}).
+ * - Optional lineage tracking, recording how each chain arose (see {@link #setLineageTracking(boolean)}).
+ *
+ * Molecule state is held in a structure-of-arrays {@link ParticleStore}; per-step passes over positions
+ * run directly on its primitive arrays. A {@link SpatialGrid} over the store is kept up to date as molecules
+ * move, so recombination partners are found among nearby chains rather than across the whole soup.
+ *
+ * Instead of stepping, the soup can sample its events directly (see {@link #setKinetics(Kinetics)}), covering
+ * many steps per call when rates are low.
+ *
+ * Mutation, movement and pattern scanning run over fixed-size partitions of the particle store on a
+ * ForkJoinPool, each partition with its own random stream, so a given seed gives bit-identical results
+ * regardless of the number of threads.
+ *
+ * A renderer on another thread never touches the live molecules: the thread driving the simulation calls
+ * {@link #publishSnapshot()} and the renderer reads the latest {@link FrameSnapshot} through
+ * {@link #getLatestSnapshot()}. Neither side blocks the other.
+ *
+ * A soup given more than one thread starts a pool of its own; {@link #close()} stops it when the soup is no
+ * longer needed.
  */
-public class PrimordialSoup {
-    private List<Molecule> molecules;
+public class PrimordialSoup implements AutoCloseable {
+    /**
+     * How the soup advances in time.
+     */
+    public enum Kinetics {
+        /** Every chain gets a trial for every process in every step. */
+        STEPPED,
+        /** Events are sampled one at a time with the Gillespie algorithm (see {@link KineticsEngine}). */
+        GILLESPIE,
+        /** Event counts are sampled per leap with frozen rates (tau-leaping, see {@link KineticsEngine}). */
+        TAU_LEAPING
+    }
+
+    private final ParticleStore particles;
+    private final SpatialGrid grid;
     private double temperature;
     private double pH;
     private int width;
     private int height;
-    private Random random;
+    // Serial generator for generation, recombination and external setup; all other streams are split from it
+    private final SplitMixRandom random;
+    // Root of the per-partition random streams used by the parallel passes
+    private final SplitMixRandom partitionRandom;
+    private final PartitionedExecutor executor;
+    private final long seed;
+    private int maxAminoAcids = MAX_AMINO_ACIDS;
+    // Per-instance rates, so soups with different parameters can run side by side
+    private double generationRate = AMINO_ACID_GENERATION_RATE;
+    private double mutationRate = MUTATION_RATE;
+    private double combinationRate = COMBINATION_RATE;
+    private int maxCombinationsPerStep = MAX_COMBINATIONS_PER_STEP;
+    private long stepCount = 0;
+    // Region new chains appear in, as {x, y, width, height}, or null for the whole soup
+    private double[] generationArea;
+    private MotifTracker motifTracker = new MotifTracker(List.of(TARGET_PATTERN));
+    // Shared instances of recent sequences and their motif scan results
+    private final SequenceCache sequenceCache = new SequenceCache(SEQUENCE_CACHE_SIZE);
+    // Slots of chains created or mutated since the last motif scan
+    private final IntList changedSlots = new IntList();
+    private final BitSet changedFlags = new BitSet();
+    // Per-partition slots mutated during the parallel mutation pass and the chains they replaced,
+    // merged in partition order
+    private IntList[] partitionChanges = new IntList[0];
+    private final List<List<AminoAcidMolecule>> partitionPrevious = new ArrayList<>();
+    private final List<SoupListener> listeners = new CopyOnWriteArrayList<>();
+    // Ancestry of every chain, or null while lineage tracking is off
+    private LineageTable lineage;
+    private final PopulationCounters counters = new PopulationCounters();
+    // Local conditions per grid cell, or null for the same temperature and pH everywhere
+    private EnvironmentField environment;
+    // Fraction of the surface under water, from 1 (wet) down to 0 (dried out)
+    private double wetness = 1.0;
+    // Evaluated at the start of every step or leap; null leaves the value as it is
+    private Schedule temperatureSchedule;
+    private Schedule pHSchedule;
+    private Schedule wetnessSchedule;
+    // Frames handed to the renderer without locking; only filled when publishSnapshot() is called
+    private final FrameExchange frames = new FrameExchange();
+    private volatile ColorScheme colorScheme;
     private static final double MOVEMENT_SPEED = 2.0;
-    private int totalReactions = 0;
+    // Fraction of the wet movement left when the soup is completely dried out
+    private static final double DRY_MOBILITY = 0.1;
+    private final ReactionEngine reactionEngine;
+    private final KineticsEngine kineticsEngine;
+    private Kinetics kinetics = Kinetics.STEPPED;
+    private int leapSteps = DEFAULT_LEAP_STEPS;
+    private long totalReactions = 0;
     private int reactionsThisStep = 0;
-    private static final int INITIAL_AMINO_ACIDS = 20;
+    // Number of chains a new soup starts with
+    static final int INITIAL_AMINO_ACIDS = 20;
     
-    // Controls how often new amino acid chains are generated (probability per step)
+    // Default for how often new amino acid chains are generated (probability per step)
     private static final double AMINO_ACID_GENERATION_RATE = 0.005; // Slower generation
-    // Maximum number of amino acid chains allowed in the simulation at any time
+    // Default maximum number of amino acid chains allowed in the simulation at any time
     private static final int MAX_AMINO_ACIDS = 50; // Temporary threshold
-    // The sequence we want to track for spontaneous emergence
+    // The sequence we track for spontaneous emergence unless other motifs are configured
     private static final String TARGET_PATTERN = "METHINKS";
-    // Probability that a chain will mutate each step
+    // Default probability that a chain will mutate each step
     private static final double MUTATION_RATE = 0.01; // 1% chance per step per chain
-    // Probability that a pair of chains will recombine each step
+    // Default probability that a pair of chains will recombine each step
     private static final double COMBINATION_RATE = 0.01; // 1% chance per step per pair
+    // Default maximum number of recombinations per step
+    private static final int MAX_COMBINATIONS_PER_STEP = 10;
+    // Default number of steps covered by one call to simulateStep() with event-driven kinetics
+    private static final int DEFAULT_LEAP_STEPS = 100;
+    // Default number of distinct sequences kept in the sequence cache; a few times the distinct sequences
+    // alive at once is enough, a much larger table mostly keeps dead sequences reachable
+    private static final int SEQUENCE_CACHE_SIZE = 4096;
+    // Chains must be within this distance of each other to recombine; also the spatial grid's cell size
+    private static final double COMBINATION_RADIUS = 30.0;
 
     /**
      * Creates a new PrimordialSoup simulation environment.
      * @param width The width of the simulation area.
      * @param height The height of the simulation area.
-     * @param temperature The temperature of the environment (affects movement).
-     * @param pH The pH of the environment (not currently used).
+     * @param temperature The temperature of the environment (affects movement and reaction rates).
+     * @param pH The pH of the environment (affects reaction rates).
      */
     public PrimordialSoup(int width, int height, double temperature, double pH) {
-        this.width = width;
-        this.height = height;
-        this.temperature = temperature;
-        this.pH = pH;
-        this.molecules = new ArrayList<>();
-        this.random = new Random();
+        this(width, height, temperature, pH, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Creates a new PrimordialSoup simulation environment whose evolution is reproducible from a seed.
+     * @param width The width of the simulation area.
+     * @param height The height of the simulation area.
+     * @param temperature The temperature of the environment (affects movement and reaction rates).
+     * @param pH The pH of the environment (affects reaction rates).
+     * @param seed The random seed; equal seeds give identical runs.
+     */
+    public PrimordialSoup(int width, int height, double temperature, double pH, long seed) {
+        this(width, height, temperature, pH, seed, new SplitMixRandom(seed));
         
         // Start the simulation with a handful of random amino acid chains, scattered throughout the soup
         for (int i = 0; i < INITIAL_AMINO_ACIDS; i++) {
-            AminoAcidMolecule aa = AminoAcidMolecule.generateRandom(1, 3);
+            AminoAcidMolecule aa = AminoAcidMolecule.generateRandom(1, 3, random);
             aa.getPosition().setX(random.nextDouble() * width);
             aa.getPosition().setY(random.nextDouble() * height);
-            molecules.add(aa);
+            addParticle(aa, SoupListener.Origin.GENERATED, -1, -1);
         }
     }
 
+    private PrimordialSoup(int width, int height, double temperature, double pH, long seed, SplitMixRandom random) {
+        this(width, height, temperature, pH, seed, random, random.split());
+    }
+
+    /**
+     * Creates an empty soup around existing random generators, for restoring a checkpoint.
+     * @param width The width of the simulation area.
+     * @param height The height of the simulation area.
+     * @param temperature The temperature of the environment.
+     * @param pH The pH of the environment.
+     * @param seed The seed the original soup was created with.
+     * @param random The main random generator.
+     * @param partitionRandom The root of the per-partition random streams.
+     */
+    PrimordialSoup(int width, int height, double temperature, double pH, long seed,
+                   SplitMixRandom random, SplitMixRandom partitionRandom) {
+        this.width = width;
+        this.height = height;
+        this.temperature = temperature;
+        this.pH = pH;
+        this.particles = new ParticleStore();
+        this.grid = new SpatialGrid(particles, width, height, COMBINATION_RADIUS);
+        this.seed = seed;
+        this.random = random;
+        this.partitionRandom = partitionRandom;
+        this.executor = new PartitionedExecutor();
+        this.reactionEngine = new ReactionEngine(this);
+        this.kineticsEngine = new KineticsEngine(this, reactionEngine);
+    }
+
     /**
      * Attempts to generate a new amino acid chain, but only if the population is below the maximum allowed.
      * The new chain is placed at a random location in the soup.
      */
     private void generateAminoAcids() {
-        int aminoAcidCount = 0;
-        for (Molecule m : molecules) {
-            if (m instanceof AminoAcidMolecule) {
-                aminoAcidCount++;
-            }
-        }
         // Only add a new chain if we have room for it
-        if (aminoAcidCount < MAX_AMINO_ACIDS && random.nextDouble() < AMINO_ACID_GENERATION_RATE) {
-            AminoAcidMolecule newAA = AminoAcidMolecule.generateRandom(1, 3);
+        if (counters.getAminoAcidCount() < maxAminoAcids && random.nextDouble() < generationRate) {
+            generateChain();
+        }
+    }
+
+    /**
+     * Adds a new random amino acid chain at a random location in the soup.
+     */
+    void generateChain() {
+        AminoAcidMolecule newAA = AminoAcidMolecule.generateRandom(1, 3, random);
+        if (generationArea == null) {
             newAA.getPosition().setX(random.nextDouble() * width);
             newAA.getPosition().setY(random.nextDouble() * height);
-            molecules.add(newAA);
+        } else {
+            newAA.getPosition().setX(generationArea[0] + random.nextDouble() * generationArea[2]);
+            newAA.getPosition().setY(generationArea[1] + random.nextDouble() * generationArea[3]);
         }
+        addParticle(newAA, SoupListener.Origin.GENERATED, -1, -1);
+    }
+
+    /**
+     * Restricts where new chains appear, such as to the part of a tile a {@link DistributedSoup} owns.
+     * @param x The left edge of the region.
+     * @param y The top edge of the region.
+     * @param regionWidth The width of the region.
+     * @param regionHeight The height of the region.
+     */
+    void setGenerationArea(double x, double y, double regionWidth, double regionHeight) {
+        generationArea = new double[] {x, y, regionWidth, regionHeight};
     }
 
     /**
@@ -92,102 +248,543 @@ public class PrimordialSoup {
      */
     public void addMolecule(Molecule molecule) {
         if (isValidPosition(molecule.getPosition())) {
-            molecules.add(molecule);
+            addParticle(molecule, SoupListener.Origin.ADDED, -1, -1);
+        }
+    }
+
+    /**
+     * Adds a molecule that has already been scanned for motifs elsewhere, such as one migrating from a
+     * neighbouring tile, without queueing it for another scan. Its position is not checked.
+     * @param molecule The molecule to add.
+     */
+    void addMigrant(Molecule molecule) {
+        int slot = addParticle(molecule, SoupListener.Origin.ADDED, -1, -1);
+        if (changedFlags.get(slot)) {
+            changedFlags.clear(slot);
+            changedSlots.removeAt(changedSlots.size() - 1);
+        }
+    }
+
+    /**
+     * Places a molecule in the particle store, indexes it in the spatial grid, counts it,
+     * queues it for the motif scan and notifies listeners.
+     * @param molecule The molecule to add.
+     * @param origin Where the molecule came from.
+     * @param parentA The slot of the first parent, or -1.
+     * @param parentB The slot of the second parent, or -1.
+     * @return The slot the molecule was placed in.
+     */
+    private int addParticle(Molecule molecule, SoupListener.Origin origin, int parentA, int parentB) {
+        if (molecule instanceof AminoAcidMolecule) {
+            share((AminoAcidMolecule) molecule);
+        }
+        int slot = particles.add(molecule);
+        grid.insert(slot);
+        counters.add(molecule);
+        if (molecule instanceof AminoAcidMolecule) {
+            markChanged(slot);
+        }
+        for (SoupListener listener : listeners) {
+            listener.onBirth(stepCount, slot, molecule, origin, parentA, parentB);
+        }
+        return slot;
+    }
+
+    /**
+     * Moves the molecule in a slot and re-files it in the spatial grid.
+     * @param slot The slot of the molecule.
+     * @param x The new x coordinate.
+     * @param y The new y coordinate.
+     */
+    void moveParticle(int slot, double x, double y) {
+        particles.getXArray()[slot] = x;
+        particles.getYArray()[slot] = y;
+        grid.update(slot);
+    }
+
+    /**
+     * Adds the product of a reaction. Called by the {@link ReactionEngine}.
+     * @param product The new chain, already positioned.
+     * @param origin The reaction that produced it.
+     * @param parentA The slot of the first reactant.
+     * @param parentB The slot of the second reactant, or -1.
+     */
+    void addProduct(AminoAcidMolecule product, SoupListener.Origin origin, int parentA, int parentB) {
+        addParticle(product, origin, parentA, parentB);
+    }
+
+    /**
+     * Removes the molecule in a slot, mirroring the particle store's swap-removal in the spatial grid
+     * and in the motif scan queue, updates the counters and notifies listeners.
+     * @param slot The slot to remove; the last molecule moves into it.
+     * @return The removed molecule.
+     */
+    Molecule removeParticle(int slot) {
+        int last = particles.size() - 1;
+        Molecule removed = particles.remove(slot);
+        grid.remove(slot);
+        counters.remove(removed);
+        if (changedFlags.get(slot)) {
+            changedFlags.clear(slot);
+            for (int i = 0; i < changedSlots.size(); i++) {
+                if (changedSlots.get(i) == slot) {
+                    changedSlots.removeAt(i);
+                    break;
+                }
+            }
+        }
+        if (slot != last && changedFlags.get(last)) {
+            // The queued chain moved from the last slot; keep its place in the queue
+            changedFlags.clear(last);
+            changedFlags.set(slot);
+            for (int i = 0; i < changedSlots.size(); i++) {
+                if (changedSlots.get(i) == last) {
+                    changedSlots.set(i, slot);
+                    break;
+                }
+            }
+        }
+        for (SoupListener listener : listeners) {
+            listener.onRemoval(stepCount, slot, removed);
+        }
+        return removed;
+    }
+
+    /**
+     * Makes a chain share the cached instance of its sequence, if an equal one is cached.
+     * @param chain The new or mutated chain.
+     */
+    private void share(AminoAcidMolecule chain) {
+        chain.shareSequence(sequenceCache.intern(chain.getPackedSequence()));
+    }
+
+    /**
+     * Extends an array of per-partition lists.
+     * @param lists The current lists.
+     * @param count The number of lists required.
+     * @return An array of at least count lists, reusing the existing ones.
+     */
+    private static IntList[] growIntLists(IntList[] lists, int count) {
+        IntList[] grown = Arrays.copyOf(lists, count);
+        for (int p = lists.length; p < count; p++) {
+            grown[p] = new IntList();
+        }
+        return grown;
+    }
+
+    /**
+     * Queues a slot for this step's motif scan, at most once.
+     * @param slot The slot holding a new or mutated chain.
+     */
+    private void markChanged(int slot) {
+        if (!changedFlags.get(slot)) {
+            changedFlags.set(slot);
+            changedSlots.add(slot);
         }
     }
 
     /**
      * Advances the simulation by one step: generates new chains, mutates and recombines chains,
-     * moves all molecules, and checks for the emergence of the target pattern.
+     * runs condensation and hydrolysis reactions, moves all molecules, and scans new or changed chains
+     * for tracked motifs. With event-driven kinetics, one call covers a whole leap (see {@link #setLeapSteps}).
      */
     public void simulateStep() {
+        if (kinetics == Kinetics.STEPPED) {
+            step();
+        } else {
+            advance(leapSteps);
+        }
+    }
+
+    /**
+     * Advances the simulation by a number of steps. With stepped kinetics this runs the steps one by one;
+     * with event-driven kinetics it samples the events of the whole span, moves the molecules once and
+     * scans the changed chains once, so listeners see a single step end.
+     * @param steps The number of steps (at least 1).
+     */
+    public void advance(int steps) {
+        if (steps < 1) {
+            throw new IllegalArgumentException("Steps must be at least 1: " + steps);
+        }
+        if (kinetics == Kinetics.STEPPED) {
+            for (int i = 0; i < steps; i++) {
+                step();
+            }
+            return;
+        }
+        long end = stepCount + steps;
+        // Conditions are held for the whole leap at their value for its first step
+        applySchedules(stepCount + 1);
+        reactionsThisStep = kineticsEngine.leap(steps, kinetics == Kinetics.GILLESPIE);
+        totalReactions += reactionsThisStep;
+        stepCount = end;
+        diffuse(steps);
+        if (environment != null) {
+            environment.update(steps, executor);
+        }
+        scanChangedChains();
+        for (SoupListener listener : listeners) {
+            listener.onStepEnd(stepCount);
+        }
+    }
+
+    /**
+     * Runs one step of the stepped kinetics.
+     */
+    private void step() {
+        stepCount++;
         reactionsThisStep = 0; // Reset reaction counter for this step
+        applySchedules(stepCount);
         
         // Try to add a new amino acid chain if there's room
         generateAminoAcids();
         
         // --- Mutation ---
-        // Each chain has a small chance to mutate (substitution, insertion, or deletion)
-        List<Molecule> mutatedMolecules = new ArrayList<>();
-        for (Molecule molecule : molecules) {
-            if (molecule instanceof AminoAcidMolecule) {
-                AminoAcidMolecule aa = (AminoAcidMolecule) molecule;
-                double r = random.nextDouble();
-                if (r < MUTATION_RATE) {
-                    int mutType = random.nextInt(3);
-                    AminoAcidMolecule mutated;
-                    if (mutType == 0) mutated = aa.mutateSubstitution();
-                    else if (mutType == 1) mutated = aa.mutateInsertion();
-                    else mutated = aa.mutateDeletion();
-                    mutated.getPosition().setX(aa.getPosition().getX());
-                    mutated.getPosition().setY(aa.getPosition().getY());
-                    mutatedMolecules.add(mutated);
-                } else {
-                    mutatedMolecules.add(aa);
-                }
-            } else {
-                mutatedMolecules.add(molecule);
+        // Each chain has a small chance to mutate (substitution, insertion, or deletion).
+        // The mutated chain takes over the original's slot, and with it the original's position.
+        // Partitions only touch their own slots, so they can run in parallel. Only the slots that mutate are
+        // visited: the gap between them is sampled directly.
+        int partitions = PartitionedExecutor.partitionCount(particles.size());
+        if (partitionChanges.length < partitions) {
+            partitionChanges = growIntLists(partitionChanges, partitions);
+            while (partitionPrevious.size() < partitions) {
+                partitionPrevious.add(new ArrayList<>());
             }
         }
-        molecules = mutatedMolecules;
-        
-        // --- Combination (crossover) ---
-        // Randomly select up to 10 pairs of chains to recombine, but only if under the population cap
-        List<Molecule> currentMolecules = new ArrayList<>(molecules);
-        int combinations = 0;
-        int maxCombinations = 10;
-        while (combinations < maxCombinations && molecules.size() < MAX_AMINO_ACIDS) {
-            if (currentMolecules.size() < 2) break;
-            int i = random.nextInt(currentMolecules.size());
-            int j = random.nextInt(currentMolecules.size());
-            if (i == j) continue;
-            Molecule m1 = currentMolecules.get(i);
-            Molecule m2 = currentMolecules.get(j);
-            if (m1 instanceof AminoAcidMolecule && m2 instanceof AminoAcidMolecule) {
-                if (random.nextDouble() < COMBINATION_RATE) {
-                    AminoAcidMolecule aa1 = (AminoAcidMolecule) m1;
-                    AminoAcidMolecule aa2 = (AminoAcidMolecule) m2;
-                    AminoAcidMolecule child = aa1.crossover(aa2);
-                    child.getPosition().setX((aa1.getPosition().getX() + aa2.getPosition().getX()) / 2.0);
-                    child.getPosition().setY((aa1.getPosition().getY() + aa2.getPosition().getY()) / 2.0);
-                    molecules.add(child);
-                    combinations++;
-                }
+        executor.run(particles.size(), partitionRandom, this::mutatePartition);
+        for (int p = 0; p < partitions; p++) {
+            IntList mutated = partitionChanges[p];
+            List<AminoAcidMolecule> previous = partitionPrevious.get(p);
+            for (int i = 0; i < mutated.size(); i++) {
+                recordMutation(mutated.get(i), previous.get(i));
             }
+            mutated.clear();
+            previous.clear();
         }
         
+        // --- Combination (crossover) ---
+        // Randomly select pairs of nearby chains to recombine until maxCombinationsPerStep have done so, but
+        // only while under the population cap. A pair is a random chain and a random chain within
+        // COMBINATION_RADIUS of it; parents are drawn from the chains present before this step's children.
+        recombinePairs(particles.size());
+        
+        // --- Reactions ---
+        // Nearby chains condense into one and chains hydrolyse, at rates set by temperature and pH
+        reactionsThisStep = reactionEngine.react();
+        totalReactions += reactionsThisStep;
+
         // Move every molecule in a random direction, with the amount of movement depending on temperature
-        for (Molecule molecule : molecules) {
-            moveRandomly(molecule);
+        moveMolecules();
+        // Let local conditions spread between neighbouring cells
+        if (environment != null) {
+            environment.update(1, executor);
         }
         // --- Pattern Emergence Tracking ---
-        // After all changes, check if any chain contains the target pattern
-        for (Molecule molecule : molecules) {
-            if (molecule instanceof AminoAcidMolecule) {
-                AminoAcidMolecule aa = (AminoAcidMolecule) molecule;
-                if (aa.getSequence().contains(TARGET_PATTERN)) {
-                    System.out.println("Pattern '" + TARGET_PATTERN + "' found in chain: " + aa.getSequence());
+        // Only chains created or mutated during this step can contain a new motif occurrence
+        scanChangedChains();
+        for (SoupListener listener : listeners) {
+            listener.onStepEnd(stepCount);
+        }
+    }
+
+    /**
+     * Sets the scheduled conditions for a step. Without an environment field the soup-wide temperature and pH
+     * take the scheduled values; with one, the field is offset by the scheduled values minus the soup-wide
+     * ones, so a schedule means the same with or without a field.
+     * @param step The step about to run.
+     */
+    private void applySchedules(long step) {
+        if (temperatureSchedule != null) {
+            double value = temperatureSchedule.valueAt(step);
+            if (environment == null) {
+                temperature = value;
+            } else {
+                environment.setOffset(EnvironmentField.Quantity.TEMPERATURE, value - temperature);
+            }
+        }
+        if (pHSchedule != null) {
+            double value = pHSchedule.valueAt(step);
+            if (environment == null) {
+                pH = value;
+            } else {
+                environment.setOffset(EnvironmentField.Quantity.PH, value - pH);
+            }
+        }
+        if (wetnessSchedule != null) {
+            wetness = Math.max(0.0, Math.min(1.0, wetnessSchedule.valueAt(step)));
+        }
+    }
+
+    /**
+     * Draws random pairs of nearby chains until maxCombinationsPerStep pairs have recombined or the population
+     * cap is reached. Each drawn pair recombines with probability combinationRate, and draws go on until the
+     * cap, so any positive rate yields the same children; the draws that would fail change nothing and are not
+     * made. A draw that lands on another molecule, or on a chain with no neighbour, fails. When draws keep
+     * failing, the soup is checked for any chain with a partner, so a soup without one cannot stall the step.
+     * @param parentCount Only slots below this bound are drawn, as chains or as partners.
+     */
+    private void recombinePairs(int parentCount) {
+        if (combinationRate == 0 || parentCount == 0) return;
+        byte[] types = particles.getTypeArray();
+        int combinations = 0;
+        int failures = 0;
+        while (combinations < maxCombinationsPerStep && counters.getAminoAcidCount() < maxAminoAcids) {
+            int i = random.nextInt(parentCount);
+            if (types[i] == ParticleStore.TYPE_AMINO_ACID && recombine(i, parentCount)) {
+                combinations++;
+                failures = 0;
+            } else if (++failures == parentCount) {
+                if (!anyPartner(parentCount)) return;
+                failures = 0;
+            }
+        }
+    }
+
+    /**
+     * Checks whether any chain has another chain within COMBINATION_RADIUS.
+     * @param parentCount Only slots below this bound are considered.
+     * @return True if at least one pair of chains is close enough to recombine.
+     */
+    private boolean anyPartner(int parentCount) {
+        byte[] types = particles.getTypeArray();
+        double[] xs = particles.getXArray();
+        double[] ys = particles.getYArray();
+        boolean[] found = {false};
+        for (int slot = 0; slot < parentCount && !found[0]; slot++) {
+            if (types[slot] != ParticleStore.TYPE_AMINO_ACID) continue;
+            int self = slot;
+            grid.forEachInRadius(xs[slot], ys[slot], COMBINATION_RADIUS, other -> {
+                if (other != self && other < parentCount && types[other] == ParticleStore.TYPE_AMINO_ACID) {
+                    found[0] = true;
                 }
+            });
+        }
+        return found[0];
+    }
+
+    /**
+     * Recombines a chain with a partner picked among its neighbours, adding the child between them.
+     * @param slot The slot of the chain.
+     * @param parentCount Only slots below this bound are eligible partners.
+     * @return True if a partner was found and a child added.
+     */
+    private boolean recombine(int slot, int parentCount) {
+        int j = pickPartner(slot, parentCount);
+        if (j < 0) return false;
+        AminoAcidMolecule aa1 = (AminoAcidMolecule) particles.get(slot);
+        AminoAcidMolecule aa2 = (AminoAcidMolecule) particles.get(j);
+        AminoAcidMolecule child = aa1.crossover(aa2, random);
+        double[] xs = particles.getXArray();
+        double[] ys = particles.getYArray();
+        child.getPosition().setX((xs[slot] + xs[j]) / 2.0);
+        child.getPosition().setY((ys[slot] + ys[j]) / 2.0);
+        addParticle(child, SoupListener.Origin.CROSSOVER, slot, j);
+        return true;
+    }
+
+    /**
+     * Recombines a chain with any chain near it straight away. Called by the {@link KineticsEngine}.
+     * @param slot The slot of the chain.
+     * @return True if a partner was found and a child added.
+     */
+    boolean recombine(int slot) {
+        return recombine(slot, particles.size());
+    }
+
+    /**
+     * Mutates a chain straight away with the main random generator. Called by the {@link KineticsEngine}.
+     * @param slot The slot of the chain.
+     */
+    void mutateChain(int slot) {
+        AminoAcidMolecule aa = (AminoAcidMolecule) particles.get(slot);
+        AminoAcidMolecule mutated = mutate(aa, random);
+        if (mutated != aa) {
+            particles.set(slot, mutated);
+            recordMutation(slot, aa);
+        }
+    }
+
+    /**
+     * Applies one of the three mutation kinds, chosen uniformly.
+     * @param aa The chain.
+     * @param rng The random stream.
+     * @return The mutated chain, or the chain itself if the mutation changed nothing.
+     */
+    private static AminoAcidMolecule mutate(AminoAcidMolecule aa, SplitMixRandom rng) {
+        int mutType = rng.nextInt(3);
+        if (mutType == 0) return aa.mutateSubstitution(rng);
+        if (mutType == 1) return aa.mutateInsertion(rng);
+        return aa.mutateDeletion(rng);
+    }
+
+    /**
+     * Shares, queues, counts and reports a chain that has just replaced its unmutated original in a slot.
+     * @param slot The slot.
+     * @param previous The chain before the mutation.
+     */
+    private void recordMutation(int slot, AminoAcidMolecule previous) {
+        AminoAcidMolecule chain = (AminoAcidMolecule) particles.get(slot);
+        share(chain);
+        markChanged(slot);
+        counters.changeLength(previous.getLength(), chain.getLength());
+        for (SoupListener listener : listeners) {
+            listener.onMutation(stepCount, slot, previous, chain);
+        }
+    }
+
+    /**
+     * Sets the step reported with the events of an event-driven leap. Called by the {@link KineticsEngine}.
+     * @param step The step-equivalent the next events fall in.
+     */
+    void setEventStep(long step) {
+        stepCount = step;
+    }
+
+    /**
+     * Runs the motif tracker over the chains created or mutated during this step, in queue order.
+     * Sequences found in the sequence cache reuse their earlier scan result.
+     */
+    private void scanChangedChains() {
+        for (int i = 0; i < changedSlots.size(); i++) {
+            int slot = changedSlots.get(i);
+            long lineageId = lineage == null ? -1 : lineage.getId(slot);
+            AminoAcidMolecule chain = (AminoAcidMolecule) particles.get(slot);
+            AminoAcidSequence sequence = chain.getPackedSequence();
+            int[] hits = sequenceCache.getMotifHits(sequence);
+            if (hits == null) {
+                hits = motifTracker.match(sequence);
+                sequenceCache.putMotifHits(sequence, hits);
+            }
+            motifTracker.record(stepCount, chain, lineageId, hits);
+            changedFlags.clear(slot);
+        }
+        changedSlots.clear();
+    }
+
+    /**
+     * Applies one step of temperature-dependent Brownian motion to every molecule
+     * and re-files the molecules that changed cell in the spatial grid.
+     */
+    public void moveMolecules() {
+        executor.run(particles.size(), partitionRandom, this::movePartition);
+        grid.updateAll();
+    }
+
+    /**
+     * Moves every molecule by the Brownian displacement accumulated over several steps, in one pass: a
+     * Gaussian with the variance of that many stepped moves. Molecules are kept inside the soup.
+     * @param steps The number of steps the displacement covers.
+     */
+    private void diffuse(int steps) {
+        // Each stepped move is uniform over a movementScale-wide interval, with variance movementScale^2 / 12
+        double deviation = MOVEMENT_SPEED * mobility() * (temperature / 300.0) * Math.sqrt(steps / 12.0);
+        double localDeviation = MOVEMENT_SPEED * mobility() / 300.0 * Math.sqrt(steps / 12.0);
+        double[] xs = particles.getXArray();
+        double[] ys = particles.getYArray();
+        float[] temperatures = environment == null ? null : environment.values(EnvironmentField.Quantity.TEMPERATURE);
+        double offset = environment == null ? 0 : environment.offset(EnvironmentField.Quantity.TEMPERATURE);
+        executor.run(particles.size(), partitionRandom, (partition, from, to, rng) -> {
+            for (int i = from; i < to; i++) {
+                double d = temperatures == null ? deviation
+                    : localDeviation * (temperatures[environment.cellAt(xs[i], ys[i], width, height)] + offset);
+                xs[i] = Math.max(0, Math.min(width, xs[i] + rng.nextGaussian() * d));
+                ys[i] = Math.max(0, Math.min(height, ys[i] + rng.nextGaussian() * d));
+            }
+        });
+        grid.updateAll();
+    }
+
+    /**
+     * Mutates the chains in one partition of the particle store. Rather than drawing for every slot, the gap
+     * to the next mutating slot is drawn from a geometric distribution, so each chain still mutates with
+     * probability mutationRate but a partition costs a few operations per mutation. Slots holding other
+     * molecules are passed over if picked.
+     * @param partition The partition index.
+     * @param from The first slot (inclusive).
+     * @param to The last slot (exclusive).
+     * @param rng The partition's random stream.
+     */
+    private void mutatePartition(int partition, int from, int to, SplitMixRandom rng) {
+        byte[] types = particles.getTypeArray();
+        double logMiss = Math.log1p(-mutationRate);
+        for (long candidate = from + Sampling.geometricSkip(rng, logMiss); candidate < to;
+                candidate += 1 + Sampling.geometricSkip(rng, logMiss)) {
+            int slot = (int) candidate;
+            if (types[slot] != ParticleStore.TYPE_AMINO_ACID) continue;
+            AminoAcidMolecule aa = (AminoAcidMolecule) particles.get(slot);
+            AminoAcidMolecule mutated = mutate(aa, rng);
+            if (mutated != aa) {
+                particles.set(slot, mutated);
+                partitionChanges[partition].add(slot);
+                partitionPrevious.get(partition).add(aa);
             }
         }
     }
 
     /**
-     * Moves a molecule in a random direction, with the distance scaled by the current temperature.
-     * Ensures the molecule stays within the simulation boundaries.
-     * @param molecule The molecule to move.
+     * Picks a recombination partner for a chain uniformly among the other chains within COMBINATION_RADIUS.
+     * @param slot The slot of the chain looking for a partner.
+     * @param parentCount Only slots below this bound are eligible.
+     * @return The partner's slot, or -1 if no chain is close enough.
      */
-    private void moveRandomly(Molecule molecule) {
-        Position pos = molecule.getPosition();
-        // The higher the temperature, the more energetic the movement
-        double movementScale = MOVEMENT_SPEED * (temperature / 300.0);
-        double dx = (random.nextDouble() - 0.5) * movementScale;
-        double dy = (random.nextDouble() - 0.5) * movementScale;
-        // Keep the molecule inside the soup
-        double newX = Math.max(0, Math.min(width, pos.getX() + dx));
-        double newY = Math.max(0, Math.min(height, pos.getY() + dy));
-        pos.setX(newX);
-        pos.setY(newY);
+    private int pickPartner(int slot, int parentCount) {
+        byte[] types = particles.getTypeArray();
+        int[] chosen = {-1};
+        int[] seen = {0};
+        // Reservoir sampling keeps the choice uniform without collecting the neighbours
+        grid.forEachInRadius(particles.getXArray()[slot], particles.getYArray()[slot], COMBINATION_RADIUS, other -> {
+            if (other == slot || other >= parentCount || types[other] != ParticleStore.TYPE_AMINO_ACID) return;
+            seen[0]++;
+            if (random.nextInt(seen[0]) == 0) {
+                chosen[0] = other;
+            }
+        });
+        return chosen[0];
+    }
+
+    /**
+     * Moves the molecules in one partition in a random direction, with the distance scaled by the current
+     * temperature. Ensures molecules stay within the simulation boundaries. Runs directly over the particle arrays.
+     * @param partition The partition index.
+     * @param from The first slot (inclusive).
+     * @param to The last slot (exclusive).
+     * @param rng The partition's random stream.
+     */
+    private void movePartition(int partition, int from, int to, SplitMixRandom rng) {
+        double[] xs = particles.getXArray();
+        double[] ys = particles.getYArray();
+        if (environment != null) {
+            // Each molecule moves according to the temperature of its own cell
+            float[] temperatures = environment.values(EnvironmentField.Quantity.TEMPERATURE);
+            double offset = environment.offset(EnvironmentField.Quantity.TEMPERATURE);
+            double speed = MOVEMENT_SPEED * mobility();
+            for (int i = from; i < to; i++) {
+                double local = temperatures[environment.cellAt(xs[i], ys[i], width, height)] + offset;
+                double movementScale = speed * (local / 300.0);
+                double dx = (rng.nextDouble() - 0.5) * movementScale;
+                double dy = (rng.nextDouble() - 0.5) * movementScale;
+                xs[i] = Math.max(0, Math.min(width, xs[i] + dx));
+                ys[i] = Math.max(0, Math.min(height, ys[i] + dy));
+            }
+            return;
+        }
+        // The higher the temperature, the more energetic the movement; drying out slows it down
+        double movementScale = MOVEMENT_SPEED * mobility() * (temperature / 300.0);
+        for (int i = from; i < to; i++) {
+            double dx = (rng.nextDouble() - 0.5) * movementScale;
+            double dy = (rng.nextDouble() - 0.5) * movementScale;
+            // Keep the molecule inside the soup
+            xs[i] = Math.max(0, Math.min(width, xs[i] + dx));
+            ys[i] = Math.max(0, Math.min(height, ys[i] + dy));
+        }
+    }
+
+    /**
+     * Returns how much of the wet movement is left at the current wetness.
+     * @return 1 when wet, down to DRY_MOBILITY when dried out.
+     */
+    private double mobility() {
+        return 1.0 - (1.0 - DRY_MOBILITY) * (1.0 - wetness);
     }
 
     /**
@@ -201,11 +798,137 @@ public class PrimordialSoup {
     }
 
     /**
-     * Returns the list of all molecules currently in the simulation.
+     * Returns the main random generator with its full state, for checkpointing.
+     * @return The main generator.
+     */
+    SplitMixRandom getMainRandom() {
+        return random;
+    }
+
+    /**
+     * Returns the root of the per-partition random streams, for checkpointing.
+     * @return The partition generator.
+     */
+    SplitMixRandom getPartitionRandom() {
+        return partitionRandom;
+    }
+
+    /**
+     * Returns the slots queued for the next motif scan, for checkpointing.
+     * @return The changed slots, in queue order.
+     */
+    IntList getChangedSlots() {
+        return changedSlots;
+    }
+
+    /**
+     * Puts a molecule back at the next slot while restoring a checkpoint. The spatial grid is not
+     * updated; the caller restores its order once all molecules are in place.
+     * @param molecule The molecule.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     */
+    void restoreParticle(Molecule molecule, double x, double y) {
+        if (molecule instanceof AminoAcidMolecule) {
+            share((AminoAcidMolecule) molecule);
+        }
+        int slot = particles.add(molecule);
+        particles.getXArray()[slot] = x;
+        particles.getYArray()[slot] = y;
+        counters.add(molecule);
+    }
+
+    /**
+     * Re-queues a slot for the next motif scan while restoring a checkpoint.
+     * @param slot The slot.
+     */
+    void restoreChanged(int slot) {
+        markChanged(slot);
+    }
+
+    /**
+     * Installs a lineage table restored from a checkpoint.
+     * @param table The lineage table.
+     */
+    void restoreLineage(LineageTable table) {
+        setLineageTracking(false);
+        lineage = table;
+        addListener(table);
+    }
+
+    /**
+     * Restores the step and reaction counters from a checkpoint.
+     * @param stepCount The number of steps simulated.
+     * @param totalReactions The total number of reactions.
+     * @param reactionsThisStep The number of reactions in the last step.
+     */
+    void restoreCounters(long stepCount, long totalReactions, int reactionsThisStep) {
+        this.stepCount = stepCount;
+        this.totalReactions = totalReactions;
+        this.reactionsThisStep = reactionsThisStep;
+    }
+
+    /**
+     * Returns a read-only view of all molecules currently in the simulation.
      * @return The list of molecules.
      */
     public List<Molecule> getMolecules() {
-        return molecules;
+        return particles.asList();
+    }
+
+    /**
+     * Returns the molecule closest to a point, using the spatial grid.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param maxDistance The largest distance considered.
+     * @return The nearest molecule, or null if none lies within maxDistance.
+     */
+    public Molecule findNearest(double x, double y, double maxDistance) {
+        int slot = grid.nearest(x, y, maxDistance);
+        return slot < 0 ? null : particles.get(slot);
+    }
+
+    /**
+     * Copies the current positions, energies and colours into a frame and makes it the latest snapshot.
+     * Must be called from the thread driving the simulation, between steps.
+     */
+    public void publishSnapshot() {
+        FrameSnapshot frame = frames.beginWrite();
+        frame.fill(particles, colorScheme, stepCount, width, height);
+        frames.publish();
+    }
+
+    /**
+     * Returns the most recently published frame. Meant for a single rendering thread: the frame stays
+     * unchanged until that thread calls this method again.
+     * @return The latest snapshot (empty until the first publish).
+     */
+    public FrameSnapshot getLatestSnapshot() {
+        return frames.acquire();
+    }
+
+    /**
+     * Sets how molecules are coloured in published snapshots.
+     * @param colorScheme The colour scheme, or null to draw everything white.
+     */
+    public void setColorScheme(ColorScheme colorScheme) {
+        this.colorScheme = colorScheme;
+    }
+
+    /**
+     * Returns the spatial index over the soup's molecules, for radius and nearest-neighbour queries.
+     * @return The spatial grid.
+     */
+    public SpatialGrid getSpatialGrid() {
+        return grid;
+    }
+
+    /**
+     * Returns the structure-of-arrays store holding the molecules' positions, energies and types.
+     * @return The particle store.
+     */
+    public ParticleStore getParticles() {
+        return particles;
     }
 
     /**
@@ -240,6 +963,356 @@ public class PrimordialSoup {
         this.pH = pH;
     }
 
+    /**
+     * Gets the population cap applied to chain generation and recombination.
+     * @return The maximum number of amino acid chains.
+     */
+    public int getMaxAminoAcids() {
+        return maxAminoAcids;
+    }
+
+    /**
+     * Sets the population cap applied to chain generation and recombination.
+     * @param maxAminoAcids The maximum number of amino acid chains.
+     */
+    public void setMaxAminoAcids(int maxAminoAcids) {
+        this.maxAminoAcids = maxAminoAcids;
+    }
+
+    /**
+     * Sets the probability per step that a new chain is generated while the population is under its cap.
+     * @param generationRate The generation probability, between 0 and 1 (default 0.005).
+     */
+    public void setGenerationRate(double generationRate) {
+        this.generationRate = checkProbability("Generation rate", generationRate);
+    }
+
+    /**
+     * Gets the probability per step that a new chain is generated.
+     * @return The generation probability.
+     */
+    public double getGenerationRate() {
+        return generationRate;
+    }
+
+    /**
+     * Sets the probability per step that a chain mutates.
+     * @param mutationRate The mutation probability, between 0 and 1 (default 0.01).
+     */
+    public void setMutationRate(double mutationRate) {
+        this.mutationRate = checkProbability("Mutation rate", mutationRate);
+    }
+
+    /**
+     * Gets the probability per step that a chain mutates.
+     * @return The mutation probability.
+     */
+    public double getMutationRate() {
+        return mutationRate;
+    }
+
+    /**
+     * Sets the probability that a randomly drawn pair of nearby chains recombines. Pairs are drawn until
+     * {@link #getMaxCombinationsPerStep()} of them have recombined, so every positive rate gives that many
+     * recombinations per step while under the population cap, and 0 disables recombination.
+     * @param combinationRate The recombination probability, between 0 and 1 (default 0.01).
+     */
+    public void setCombinationRate(double combinationRate) {
+        this.combinationRate = checkProbability("Combination rate", combinationRate);
+    }
+
+    /**
+     * Gets the probability that a randomly drawn pair of nearby chains recombines.
+     * @return The recombination probability.
+     */
+    public double getCombinationRate() {
+        return combinationRate;
+    }
+
+    /**
+     * Sets the largest number of recombinations per step.
+     * @param maxCombinationsPerStep The cap (at least 0, default 10).
+     */
+    public void setMaxCombinationsPerStep(int maxCombinationsPerStep) {
+        if (maxCombinationsPerStep < 0) {
+            throw new IllegalArgumentException("Combination cap must not be negative: " + maxCombinationsPerStep);
+        }
+        this.maxCombinationsPerStep = maxCombinationsPerStep;
+    }
+
+    /**
+     * Gets the largest number of recombinations per step.
+     * @return The cap.
+     */
+    public int getMaxCombinationsPerStep() {
+        return maxCombinationsPerStep;
+    }
+
+    private static double checkProbability(String name, double value) {
+        if (!(value >= 0 && value <= 1)) {
+            throw new IllegalArgumentException(name + " must be between 0 and 1: " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Replaces the set of tracked motifs. Statistics start over; registered listeners are kept.
+     * @param motifs The motifs to track, as single-letter amino acid sequences.
+     */
+    public void setMotifs(Collection<String> motifs) {
+        MotifTracker tracker = new MotifTracker(motifs);
+        tracker.copyListenersFrom(motifTracker);
+        this.motifTracker = tracker;
+        sequenceCache.clearMotifHits();
+    }
+
+    /**
+     * Registers a listener for births, mutations, removals and step ends.
+     * @param listener The listener.
+     */
+    public void addListener(SoupListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     * @param listener The listener.
+     */
+    public void removeListener(SoupListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Turns lineage tracking on or off. While it is on, every chain born or mutated gets a node in a
+     * {@link LineageTable} linking it to its parents, and motif hits carry the chain's lineage id.
+     * Chains already in the soup when tracking starts become roots. Turning it off discards the table.
+     * @param enabled True to track lineage.
+     */
+    public void setLineageTracking(boolean enabled) {
+        if (enabled && lineage == null) {
+            lineage = new LineageTable(this);
+            addListener(lineage);
+        } else if (!enabled && lineage != null) {
+            removeListener(lineage);
+            lineage = null;
+        }
+    }
+
+    /**
+     * Attaches a grid of local conditions, or detaches it. While a field is attached, molecules move and react
+     * according to the temperature, pH and nutrient of their own cell and the field diffuses every step. The
+     * soup-wide temperature and pH are then only the reference that temperature and pH schedules are measured
+     * from (see {@link #setTemperatureSchedule(Schedule)}).
+     * @param environment The environment field, covering the whole soup; null for uniform conditions.
+     */
+    public void setEnvironment(EnvironmentField environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Returns the grid of local conditions.
+     * @return The environment field, or null if conditions are uniform.
+     */
+    public EnvironmentField getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * Makes the temperature follow a schedule, evaluated at the start of every step (with event-driven kinetics,
+     * once per leap at its first step). Without an environment field the schedule sets the soup-wide temperature;
+     * with one, every cell is shifted by the scheduled value minus the soup-wide temperature. Schedules are not
+     * saved in checkpoints and must be set again after a restore.
+     * @param schedule The temperature schedule in Kelvin; null stops scheduling and keeps the current value.
+     */
+    public void setTemperatureSchedule(Schedule schedule) {
+        this.temperatureSchedule = schedule;
+    }
+
+    /**
+     * Returns the schedule the temperature follows.
+     * @return The temperature schedule, or null if there is none.
+     */
+    public Schedule getTemperatureSchedule() {
+        return temperatureSchedule;
+    }
+
+    /**
+     * Makes the pH follow a schedule, in the same way as {@link #setTemperatureSchedule(Schedule)}.
+     * @param schedule The pH schedule; null stops scheduling and keeps the current value.
+     */
+    public void setPHSchedule(Schedule schedule) {
+        this.pHSchedule = schedule;
+    }
+
+    /**
+     * Returns the schedule the pH follows.
+     * @return The pH schedule, or null if there is none.
+     */
+    public Schedule getPHSchedule() {
+        return pHSchedule;
+    }
+
+    /**
+     * Makes the wetness follow a schedule, such as alternating wet and dry phases, evaluated in the same way
+     * as {@link #setTemperatureSchedule(Schedule)}. Scheduled values are clamped to [0, 1].
+     * @param schedule The wetness schedule; null stops scheduling and keeps the current value.
+     */
+    public void setWetnessSchedule(Schedule schedule) {
+        this.wetnessSchedule = schedule;
+    }
+
+    /**
+     * Returns the schedule the wetness follows.
+     * @return The wetness schedule, or null if there is none.
+     */
+    public Schedule getWetnessSchedule() {
+        return wetnessSchedule;
+    }
+
+    /**
+     * Sets how wet the soup is. Drying out concentrates the chains: hydrolysis needs water and slows down
+     * in proportion to the wetness, condensation (which releases water) speeds up, and molecules move less.
+     * @param wetness The fraction of the surface under water, from 1 (wet, the default) to 0 (dried out).
+     */
+    public void setWetness(double wetness) {
+        if (wetness < 0 || wetness > 1) {
+            throw new IllegalArgumentException("Wetness must be between 0 and 1: " + wetness);
+        }
+        this.wetness = wetness;
+    }
+
+    /**
+     * Returns how wet the soup is.
+     * @return The fraction of the surface under water, from 1 (wet) to 0 (dried out).
+     */
+    public double getWetness() {
+        return wetness;
+    }
+
+    /**
+     * Returns the ancestry of the soup's chains.
+     * @return The lineage table, or null if lineage tracking is off.
+     */
+    public LineageTable getLineage() {
+        return lineage;
+    }
+
+    /**
+     * Returns the tracker holding the motif set, its statistics and its listeners.
+     * @return The motif tracker.
+     */
+    public MotifTracker getMotifTracker() {
+        return motifTracker;
+    }
+
+    /**
+     * Returns the table of shared sequences and their cached motif scans. Its capacity can be changed,
+     * or set to 0 to turn sharing and caching off.
+     * @return The sequence cache.
+     */
+    public SequenceCache getSequenceCache() {
+        return sequenceCache;
+    }
+
+    /**
+     * Returns the population statistics, maintained incrementally as the soup changes.
+     * @return The population counters.
+     */
+    public PopulationCounters getPopulationCounters() {
+        return counters;
+    }
+
+    /**
+     * Selects how the soup advances in time. Stepped kinetics (the default) gives every chain a trial for
+     * every process in every step. The event-driven modes sample only the events that happen, at the same
+     * per-step rates, and cover {@link #setLeapSteps leap steps} per call to {@link #simulateStep()}, which
+     * is much faster when rates are low; molecules then move once per leap.
+     * @param kinetics The kinetics mode.
+     */
+    public void setKinetics(Kinetics kinetics) {
+        this.kinetics = kinetics;
+    }
+
+    /**
+     * Returns how the soup advances in time.
+     * @return The kinetics mode.
+     */
+    public Kinetics getKinetics() {
+        return kinetics;
+    }
+
+    /**
+     * Sets the number of steps one call to {@link #simulateStep()} covers with event-driven kinetics.
+     * Longer leaps are cheaper, but molecules only move and motifs are only scanned at the end of a leap.
+     * @param leapSteps The number of steps per leap (at least 1).
+     */
+    public void setLeapSteps(int leapSteps) {
+        if (leapSteps < 1) {
+            throw new IllegalArgumentException("Leap steps must be at least 1: " + leapSteps);
+        }
+        this.leapSteps = leapSteps;
+    }
+
+    /**
+     * Returns the number of steps one call to {@link #simulateStep()} covers with event-driven kinetics.
+     * @return The number of steps per leap.
+     */
+    public int getLeapSteps() {
+        return leapSteps;
+    }
+
+    /**
+     * Returns the number of steps simulated so far.
+     * @return The step count.
+     */
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    /**
+     * Returns the seed this soup was created with.
+     * @return The random seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the soup's main random generator. Code that populates the soup (for example placing initial
+     * molecules) should draw from it so that the whole run stays reproducible from the seed.
+     * It is not thread-safe and must only be used from the thread driving the simulation.
+     * @return The random generator.
+     */
+    public RandomGenerator getRandom() {
+        return random;
+    }
+
+    /**
+     * Sets the number of threads used for the partitioned passes of each step.
+     * Results for a given seed do not depend on this setting.
+     * @param threads The number of threads; 1 runs every pass on the calling thread.
+     */
+    public void setParallelism(int threads) {
+        executor.setParallelism(threads);
+    }
+
+    /**
+     * Gets the number of threads used for the partitioned passes of each step.
+     * @return The parallelism.
+     */
+    public int getParallelism() {
+        return executor.getParallelism();
+    }
+
+    /**
+     * Stops the worker threads started by {@link #setParallelism(int)}. The soup can still be stepped
+     * afterwards, on the calling thread.
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+
     /**
      * Gets the width of the simulation area.
      * @return The width.
@@ -257,15 +1330,15 @@ public class PrimordialSoup {
     }
 
     /**
-     * Gets the total number of reactions that have occurred (not used in this phase).
+     * Gets the total number of condensation and hydrolysis reactions that have occurred.
      * @return The total reaction count.
      */
-    public int getTotalReactions() {
+    public long getTotalReactions() {
         return totalReactions;
     }
 
     /**
-     * Gets the number of reactions that occurred in the last step (not used in this phase).
+     * Gets the number of reactions that occurred in the last step.
      * @return The reaction count for the last step.
      */
     public int getReactionsThisStep() {
@@ -279,12 +1352,13 @@ public class PrimordialSoup {
     public void setWidth(int width) {
         if (this.width > 0 && width > 0 && this.width != width) {
             double scale = (double) width / this.width;
-            for (Molecule molecule : molecules) {
-                double newX = molecule.getPosition().getX() * scale;
-                molecule.getPosition().setX(newX);
+            double[] xs = particles.getXArray();
+            for (int i = 0, n = particles.size(); i < n; i++) {
+                xs[i] *= scale;
             }
         }
         this.width = width;
+        grid.resize(this.width, this.height);
     }
 
     /**
@@ -294,11 +1368,12 @@ public class PrimordialSoup {
     public void setHeight(int height) {
         if (this.height > 0 && height > 0 && this.height != height) {
             double scale = (double) height / this.height;
-            for (Molecule molecule : molecules) {
-                double newY = molecule.getPosition().getY() * scale;
-                molecule.getPosition().setY(newY);
+            double[] ys = particles.getYArray();
+            for (int i = 0, n = particles.size(); i < n; i++) {
+                ys[i] *= scale;
             }
         }
         this.height = height;
+        grid.resize(this.width, this.height);
     }
 } 
\ No newline at end of file
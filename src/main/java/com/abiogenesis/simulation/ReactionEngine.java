@@ -0,0 +1,347 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.AminoAcidMolecule;
+import com.abiogenesis.model.ParticleStore;
+import com.abiogenesis.model.SplitMixRandom;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Chemistry between the chains of a soup: condensation of two nearby chains into one
+ * ({@link AminoAcidMolecule#combine}) and hydrolysis of a chain into a shorter one ({@link AminoAcidMolecule#degrade}).
+ *
+ * In every step, each chain degrades with its own {@link AminoAcidMolecule#getDegradationProbability()
+ * degradation probability}, or tries to condense with a partner with a fixed probability. A condensing chain
+ * picks its partner uniformly among the chains within REACTION_RADIUS that
+ * {@link AminoAcidMolecule#canReactWith can react with it}, using the soup's spatial grid.
+ *
+ * Both probabilities are small, so instead of drawing for every chain the engine samples candidates directly:
+ * with q the degradation probability of the longest chain plus the condensation probability, the gap to the
+ * next candidate slot is geometric with parameter q, and each candidate then degrades, condenses or does
+ * nothing in proportion to its own probabilities (thinning). Each chain reacts with exactly the per-chain
+ * probabilities above, but only candidates are touched, so a step costs a few operations per reaction rather
+ * than a pass over every molecule.
+ *
+ * Rates follow the soup's temperature and pH. Both reactions speed up with temperature following an Arrhenius
+ * factor, normalised to 1 at 300 K. Hydrolysis is acid- and base-catalysed and speeds up away from pH 7;
+ * condensation is favoured near neutral pH. With an {@link EnvironmentField} attached, each chain reacts at the
+ * temperature and pH of its own cell, and condensation also scales with the cell's nutrient concentration and
+ * uses some of it up. Candidates are then sampled with rates bounded over the whole field and thinned to the
+ * local rates.
+ *
+ * Rates also follow the soup's {@link PrimordialSoup#getWetness() wetness}: hydrolysis consumes water and
+ * slows in proportion to it, while drying out concentrates the chains and drives off the water condensation
+ * releases, speeding condensation up by up to 1 + DRY_CONDENSATION_BOOST.
+ *
+ * Reactions are decided first, without changing the soup, so every chain reacts at most once per step with
+ * the partners present at the start of the step. Products are then added (taking new slots) and the reactants
+ * removed, highest slot first, so each swap-removal only moves a molecule that is not itself being removed.
+ * Listeners see a product's birth, with its reactants as parents, before the reactants' removals.
+ */
+class ReactionEngine {
+    // Scales getDegradationProbability() (5-10% for typical chains) down to a per-step probability
+    private static final double DEGRADATION_TIME_SCALE = 0.002;
+    // Probability per step that a chain tries to condense with a neighbour
+    private static final double COMBINATION_RATE = 0.002;
+    // Chains must be within this distance of each other to condense
+    static final double REACTION_RADIUS = 10.0;
+    // Activation energies over the gas constant (Kelvin), for the Arrhenius temperature factors
+    private static final double COMBINATION_ACTIVATION = 3000.0;
+    private static final double DEGRADATION_ACTIVATION = 6000.0;
+    private static final double REFERENCE_TEMPERATURE = 300.0;
+    // Change in log10(rate) per pH unit away from neutral
+    private static final double HYDROLYSIS_PH_SLOPE = 0.3;
+    private static final double CONDENSATION_PH_SLOPE = -0.15;
+    // Nutrient taken from its cell by each condensation, relative to the reference concentration
+    private static final double NUTRIENT_PER_CONDENSATION = 0.02;
+    // Extra condensation, relative to the wet rate, when the soup is completely dried out
+    private static final double DRY_CONDENSATION_BOOST = 4.0;
+
+    private final PrimordialSoup soup;
+    // Reactions decided this step: reactant slots in pairs, the second -1 for a degradation
+    private final IntList reactions = new IntList();
+    private final BitSet claimed = new BitSet();
+    private int[] consumed = new int[16];
+    // Reservoir sampling state for the partner search
+    private int partner;
+    private int partnersSeen;
+
+    ReactionEngine(PrimordialSoup soup) {
+        this.soup = soup;
+    }
+
+    /**
+     * Runs one step of reactions.
+     * @return The number of reactions that took place.
+     */
+    int react() {
+        ParticleStore particles = soup.getParticles();
+        SplitMixRandom random = soup.getMainRandom();
+        EnvironmentField environment = soup.getEnvironment();
+        double degradationScale = degradationScale();
+        double combinationProbability = combinationProbability();
+
+        // Decide every reaction against the state at the start of the step, visiting only candidate slots
+        int n = particles.size();
+        byte[] types = particles.getTypeArray();
+        int longest = soup.getPopulationCounters().getMaxLength();
+        double candidateProbability = Math.min(1.0,
+            AminoAcidMolecule.degradationProbability(longest) * degradationScale + combinationProbability);
+        if (candidateProbability <= 0) return 0;
+        double logMiss = Math.log1p(-candidateProbability);
+        for (long candidate = Sampling.geometricSkip(random, logMiss); candidate < n;
+                candidate += 1 + Sampling.geometricSkip(random, logMiss)) {
+            int i = (int) candidate;
+            if (types[i] != ParticleStore.TYPE_AMINO_ACID || claimed.get(i)) continue;
+            AminoAcidMolecule chain = (AminoAcidMolecule) particles.get(i);
+            double degradation;
+            double combination;
+            if (environment == null) {
+                degradation = chain.getDegradationProbability() * degradationScale;
+                combination = combinationProbability;
+            } else {
+                degradation = chain.getDegradationProbability() * localDegradationScale(i);
+                combination = localCombinationProbability(i);
+            }
+            // Uniform over [0, q): a candidate reacts with probability p / q, so each chain reacts with probability p
+            double u = random.nextDouble() * candidateProbability;
+            if (u < degradation) {
+                if (chain.getLength() > 1) {
+                    claimed.set(i);
+                    reactions.add(i);
+                    reactions.add(-1);
+                }
+            } else if (u < degradation + combination) {
+                int j = pickPartner(i, chain, n);
+                if (j >= 0) {
+                    claimed.set(i);
+                    claimed.set(j);
+                    reactions.add(i);
+                    reactions.add(j);
+                }
+            }
+        }
+        int count = reactions.size() / 2;
+        if (count == 0) return 0;
+
+        // Add the products while the reactants still hold their slots
+        double[] xs = particles.getXArray();
+        double[] ys = particles.getYArray();
+        int consumedCount = 0;
+        if (consumed.length < reactions.size()) {
+            consumed = new int[reactions.size()];
+        }
+        for (int r = 0; r < reactions.size(); r += 2) {
+            int a = reactions.get(r);
+            int b = reactions.get(r + 1);
+            AminoAcidMolecule first = (AminoAcidMolecule) particles.get(a);
+            AminoAcidMolecule product;
+            if (b < 0) {
+                product = first.degrade(random);
+                product.getPosition().setX(xs[a]);
+                product.getPosition().setY(ys[a]);
+                soup.addProduct(product, SoupListener.Origin.DEGRADATION, a, -1);
+            } else {
+                product = AminoAcidMolecule.combine(first, (AminoAcidMolecule) particles.get(b));
+                product.getPosition().setX((xs[a] + xs[b]) / 2.0);
+                product.getPosition().setY((ys[a] + ys[b]) / 2.0);
+                consumeNutrient(product);
+                soup.addProduct(product, SoupListener.Origin.COMBINATION, a, b);
+                consumed[consumedCount++] = b;
+            }
+            consumed[consumedCount++] = a;
+        }
+        // Remove the reactants from the highest slot down; every slot above the one being removed
+        // is then either a product or a molecule that did not react
+        Arrays.sort(consumed, 0, consumedCount);
+        for (int k = consumedCount - 1; k >= 0; k--) {
+            soup.removeParticle(consumed[k]);
+        }
+        reactions.clear();
+        claimed.clear();
+        return count;
+    }
+
+    /**
+     * Returns the factor turning a chain's {@link AminoAcidMolecule#getDegradationProbability() degradation
+     * probability} into its probability of hydrolysing in one step, at the soup's temperature and pH.
+     * With an environment field, returns an upper bound over all cells.
+     * @return The degradation scale.
+     */
+    double degradationScale() {
+        EnvironmentField environment = soup.getEnvironment();
+        if (environment == null) {
+            return degradationScale(soup.getTemperature(), soup.getPH()) * soup.getWetness();
+        }
+        // Fastest where it is hottest and the pH furthest from neutral
+        double lowest = environment.getMinimum(EnvironmentField.Quantity.PH);
+        double highest = environment.getMaximum(EnvironmentField.Quantity.PH);
+        return degradationScale(environment.getMaximum(EnvironmentField.Quantity.TEMPERATURE),
+            Math.abs(lowest - 7.0) > Math.abs(highest - 7.0) ? lowest : highest) * soup.getWetness();
+    }
+
+    /**
+     * Returns the probability that a chain tries to condense in one step, at the soup's temperature and pH.
+     * With an environment field, returns an upper bound over all cells.
+     * @return The condensation probability.
+     */
+    double combinationProbability() {
+        EnvironmentField environment = soup.getEnvironment();
+        if (environment == null) {
+            return combinationProbability(soup.getTemperature(), soup.getPH()) * dryingFactor();
+        }
+        // Fastest where it is hottest, the pH closest to neutral and nutrient most plentiful
+        double pH = Math.max(environment.getMinimum(EnvironmentField.Quantity.PH),
+            Math.min(environment.getMaximum(EnvironmentField.Quantity.PH), 7.0));
+        return combinationProbability(environment.getMaximum(EnvironmentField.Quantity.TEMPERATURE), pH)
+            * environment.getMaximum(EnvironmentField.Quantity.NUTRIENT) * dryingFactor();
+    }
+
+    /**
+     * Returns the degradation scale at the position of a chain: the same as {@link #degradationScale()}
+     * without an environment field, otherwise the value for the chain's cell.
+     * @param slot The slot of the chain.
+     * @return The local degradation scale.
+     */
+    double localDegradationScale(int slot) {
+        EnvironmentField environment = soup.getEnvironment();
+        if (environment == null) {
+            return degradationScale();
+        }
+        int cell = cellOf(environment, slot);
+        return degradationScale(local(environment, EnvironmentField.Quantity.TEMPERATURE, cell),
+            local(environment, EnvironmentField.Quantity.PH, cell)) * soup.getWetness();
+    }
+
+    /**
+     * Returns the condensation probability at the position of a chain: the same as
+     * {@link #combinationProbability()} without an environment field, otherwise the value for the chain's cell.
+     * @param slot The slot of the chain.
+     * @return The local condensation probability.
+     */
+    double localCombinationProbability(int slot) {
+        EnvironmentField environment = soup.getEnvironment();
+        if (environment == null) {
+            return combinationProbability();
+        }
+        int cell = cellOf(environment, slot);
+        return combinationProbability(local(environment, EnvironmentField.Quantity.TEMPERATURE, cell),
+            local(environment, EnvironmentField.Quantity.PH, cell))
+            * local(environment, EnvironmentField.Quantity.NUTRIENT, cell) * dryingFactor();
+    }
+
+    /**
+     * Returns the factor by which drying out speeds up condensation.
+     * @return 1 when the soup is wet, up to 1 + DRY_CONDENSATION_BOOST when it is dried out.
+     */
+    private double dryingFactor() {
+        return 1.0 + DRY_CONDENSATION_BOOST * (1.0 - soup.getWetness());
+    }
+
+    private static double local(EnvironmentField environment, EnvironmentField.Quantity quantity, int cell) {
+        return environment.values(quantity)[cell] + environment.offset(quantity);
+    }
+
+    private int cellOf(EnvironmentField environment, int slot) {
+        ParticleStore particles = soup.getParticles();
+        return environment.cellAt(particles.getXArray()[slot], particles.getYArray()[slot],
+            soup.getWidth(), soup.getHeight());
+    }
+
+    /**
+     * Takes the nutrient used by a condensation from the cell its product is placed in.
+     * @param product The product, already positioned.
+     */
+    private void consumeNutrient(AminoAcidMolecule product) {
+        EnvironmentField environment = soup.getEnvironment();
+        if (environment == null) return;
+        environment.consume(environment.cellAt(product.getPosition().getX(), product.getPosition().getY(),
+            soup.getWidth(), soup.getHeight()), NUTRIENT_PER_CONDENSATION);
+    }
+
+    private static double degradationScale(double temperature, double pH) {
+        return DEGRADATION_TIME_SCALE * arrhenius(temperature, DEGRADATION_ACTIVATION)
+            * Math.pow(10, HYDROLYSIS_PH_SLOPE * Math.abs(pH - 7.0));
+    }
+
+    private static double combinationProbability(double temperature, double pH) {
+        return COMBINATION_RATE * arrhenius(temperature, COMBINATION_ACTIVATION)
+            * Math.pow(10, CONDENSATION_PH_SLOPE * Math.abs(pH - 7.0));
+    }
+
+    /**
+     * Hydrolyses one chain straight away, for event-driven kinetics.
+     * @param slot The slot of the chain.
+     * @return True if the chain reacted; a single residue cannot.
+     */
+    boolean degrade(int slot) {
+        ParticleStore particles = soup.getParticles();
+        AminoAcidMolecule chain = (AminoAcidMolecule) particles.get(slot);
+        if (chain.getLength() <= 1) return false;
+        AminoAcidMolecule product = chain.degrade(soup.getMainRandom());
+        product.getPosition().setX(particles.getXArray()[slot]);
+        product.getPosition().setY(particles.getYArray()[slot]);
+        soup.addProduct(product, SoupListener.Origin.DEGRADATION, slot, -1);
+        soup.removeParticle(slot);
+        return true;
+    }
+
+    /**
+     * Condenses one chain with a partner picked among its neighbours straight away, for event-driven kinetics.
+     * @param slot The slot of the chain.
+     * @return True if a partner was found and the chains reacted.
+     */
+    boolean condense(int slot) {
+        ParticleStore particles = soup.getParticles();
+        AminoAcidMolecule chain = (AminoAcidMolecule) particles.get(slot);
+        int other = pickPartner(slot, chain, particles.size());
+        if (other < 0) return false;
+        double[] xs = particles.getXArray();
+        double[] ys = particles.getYArray();
+        AminoAcidMolecule product = AminoAcidMolecule.combine(chain, (AminoAcidMolecule) particles.get(other));
+        product.getPosition().setX((xs[slot] + xs[other]) / 2.0);
+        product.getPosition().setY((ys[slot] + ys[other]) / 2.0);
+        consumeNutrient(product);
+        soup.addProduct(product, SoupListener.Origin.COMBINATION, slot, other);
+        soup.removeParticle(Math.max(slot, other));
+        soup.removeParticle(Math.min(slot, other));
+        return true;
+    }
+
+    /**
+     * Picks a condensation partner uniformly among the unclaimed chains near a chain that can react with it.
+     * @param slot The slot of the chain looking for a partner.
+     * @param chain The chain in that slot.
+     * @param bound Only slots below this bound are eligible.
+     * @return The partner's slot, or -1 if there is none.
+     */
+    private int pickPartner(int slot, AminoAcidMolecule chain, int bound) {
+        ParticleStore particles = soup.getParticles();
+        byte[] types = particles.getTypeArray();
+        SplitMixRandom random = soup.getMainRandom();
+        partner = -1;
+        partnersSeen = 0;
+        soup.getSpatialGrid().forEachInRadius(particles.getXArray()[slot], particles.getYArray()[slot], REACTION_RADIUS,
+            other -> {
+                if (other == slot || other >= bound || types[other] != ParticleStore.TYPE_AMINO_ACID
+                        || claimed.get(other)) return;
+                if (!chain.canReactWith((AminoAcidMolecule) particles.get(other))) return;
+                partnersSeen++;
+                if (random.nextInt(partnersSeen) == 0) {
+                    partner = other;
+                }
+            });
+        return partner;
+    }
+
+    /**
+     * Returns the Arrhenius rate factor relative to the reference temperature.
+     * @param temperature The temperature in Kelvin.
+     * @param activation The activation energy over the gas constant, in Kelvin.
+     * @return The factor; 0 at or below absolute zero.
+     */
+    private static double arrhenius(double temperature, double activation) {
+        if (temperature <= 0) return 0.0;
+        return Math.exp(-activation * (1.0 / temperature - 1.0 / REFERENCE_TEMPERATURE));
+    }
+}
@@ -0,0 +1,102 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.SplitMixRandom;
+
+/**
+ * Random variates for sampling rare events directly instead of drawing once per molecule.
+ */
+final class Sampling {
+    // Below this mean, Poisson variates are drawn by inversion; above it, by transformed rejection
+    private static final double POISSON_INVERSION_LIMIT = 10.0;
+    // log(k!) for small k; larger values come from Stirling's series
+    private static final double[] LOG_FACTORIALS = new double[16];
+
+    static {
+        for (int k = 1; k < LOG_FACTORIALS.length; k++) {
+            LOG_FACTORIALS[k] = LOG_FACTORIALS[k - 1] + Math.log(k);
+        }
+    }
+
+    private Sampling() {
+    }
+
+    /**
+     * Draws the number of trials passed over before the next success.
+     * @param random The random generator.
+     * @param logMiss The log of the probability that a trial is not a success.
+     * @return A geometrically distributed gap, 0 if every trial succeeds; capped at Integer.MAX_VALUE, which is
+     *         also returned without a draw if no trial can succeed.
+     */
+    static long geometricSkip(SplitMixRandom random, double logMiss) {
+        if (logMiss == Double.NEGATIVE_INFINITY) return 0;
+        if (logMiss == 0) return Integer.MAX_VALUE;
+        return (long) Math.min(Integer.MAX_VALUE, Math.floor(Math.log(1.0 - random.nextDouble()) / logMiss));
+    }
+
+    /**
+     * Draws the waiting time until the next event of a Poisson process.
+     * @param random The random generator.
+     * @param rate The event rate; must be positive.
+     * @return An exponentially distributed time.
+     */
+    static double exponential(SplitMixRandom random, double rate) {
+        return -Math.log(1.0 - random.nextDouble()) / rate;
+    }
+
+    /**
+     * Draws the number of events of a Poisson process in a time with the given expected count.
+     * Small means are inverted directly; larger ones use Hoermann's transformed rejection (PTRS),
+     * which takes a couple of draws whatever the mean.
+     * @param random The random generator.
+     * @param mean The expected number of events.
+     * @return A Poisson distributed count; 0 if the mean is not positive.
+     */
+    static long poisson(SplitMixRandom random, double mean) {
+        if (!(mean > 0)) return 0;
+        if (mean < POISSON_INVERSION_LIMIT) {
+            double u = random.nextDouble();
+            double p = Math.exp(-mean);
+            long k = 0;
+            // Stops at the first k whose cumulative probability exceeds u; the bound guards against rounding
+            while (u > p && k < 1000) {
+                u -= p;
+                k++;
+                p *= mean / k;
+            }
+            return k;
+        }
+        double root = Math.sqrt(mean);
+        double logMean = Math.log(mean);
+        double b = 0.931 + 2.53 * root;
+        double a = -0.059 + 0.02483 * b;
+        double inverseAlpha = 1.1239 + 1.1328 / (b - 3.4);
+        double acceptance = 0.9277 - 3.6224 / (b - 2);
+        while (true) {
+            double u = random.nextDouble() - 0.5;
+            double v = random.nextDouble();
+            double us = 0.5 - Math.abs(u);
+            long k = (long) Math.floor((2 * a / us + b) * u + mean + 0.43);
+            if (us >= 0.07 && v <= acceptance) return k;
+            if (k < 0 || (us < 0.013 && v > us)) continue;
+            if (Math.log(v) + Math.log(inverseAlpha) - Math.log(a / (us * us) + b)
+                    <= -mean + k * logMean - logFactorial(k)) {
+                return k;
+            }
+        }
+    }
+
+    /**
+     * Returns log(k!).
+     * @param k A non-negative integer.
+     * @return The log of its factorial.
+     */
+    static double logFactorial(long k) {
+        if (k < LOG_FACTORIALS.length) return LOG_FACTORIALS[(int) k];
+        double x = k + 1.0;
+        double inverse = 1.0 / x;
+        double inverseSquare = inverse * inverse;
+        // Stirling's series for log(Gamma(x)) with x = k + 1; accurate to double precision for k >= 16
+        return (x - 0.5) * Math.log(x) - x + 0.5 * Math.log(2 * Math.PI)
+            + inverse * (1.0 / 12 - inverseSquare * (1.0 / 360 - inverseSquare / 1260));
+    }
+}
@@ -0,0 +1,19 @@
+package com.abiogenesis.simulation;
+
+/**
+ * A value that varies with simulation time, such as a daily temperature cycle or alternating wet and dry
+ * phases. Soups evaluate their schedules once per step (once per leap with event-driven kinetics), see
+ * {@link PrimordialSoup#setTemperatureSchedule(Schedule)}.
+ *
+ * Implementations should be immutable and cheap to evaluate at any step, so that one instance can be shared
+ * by many soups running concurrently. {@link Schedules} provides the common shapes.
+ */
+@FunctionalInterface
+public interface Schedule {
+    /**
+     * Returns the scheduled value at a step.
+     * @param step The step number, counted from 0 when the soup was created.
+     * @return The value.
+     */
+    double valueAt(long step);
+}
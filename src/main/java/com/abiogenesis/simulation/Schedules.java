@@ -0,0 +1,221 @@
+package com.abiogenesis.simulation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Factories for the common {@link Schedule} shapes: constant values, sinusoids, cycles between two levels,
+ * piecewise-linear profiles and traces recorded in a file.
+ *
+ * Every schedule returned is immutable and costs the same at any step: sinusoids with a period of up to
+ * TABLE_LIMIT steps are tabulated over one period when created, so evaluating them is an array lookup, and
+ * piecewise-linear profiles find their segment by binary search. A schedule can therefore be built once, a
+ * large trace file read once, and the result shared by every soup of a parameter sweep.
+ */
+public final class Schedules {
+    // Longest period, in steps, for which a sinusoid is tabulated instead of evaluated on every call
+    private static final int TABLE_LIMIT = 1 << 16;
+
+    private Schedules() {
+    }
+
+    /**
+     * Returns a schedule that never changes.
+     * @param value The value.
+     * @return The schedule.
+     */
+    public static Schedule constant(double value) {
+        return step -> value;
+    }
+
+    /**
+     * Returns a sinusoidal cycle.
+     * @param mean The value the cycle oscillates around.
+     * @param amplitude The largest deviation from the mean.
+     * @param period The length of one cycle in steps; must be positive.
+     * @param phase The step at which a cycle starts, rising through the mean.
+     * @return The schedule.
+     */
+    public static Schedule sinusoidal(double mean, double amplitude, long period, long phase) {
+        if (period < 1) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        if (period > TABLE_LIMIT) {
+            return step -> mean + amplitude * Math.sin(2 * Math.PI * Math.floorMod(step - phase, period) / period);
+        }
+        double[] table = new double[(int) period];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = mean + amplitude * Math.sin(2 * Math.PI * i / period);
+        }
+        return step -> table[(int) Math.floorMod(step - phase, period)];
+    }
+
+    /**
+     * Returns a cycle that holds one value for a number of steps and then another, such as alternating wet
+     * and dry phases. The first phase starts at step 0.
+     * @param first The value during the first phase.
+     * @param firstSteps The length of the first phase in steps.
+     * @param second The value during the second phase.
+     * @param secondSteps The length of the second phase in steps.
+     * @return The schedule.
+     */
+    public static Schedule stepCycle(double first, long firstSteps, double second, long secondSteps) {
+        if (firstSteps < 0 || secondSteps < 0 || firstSteps + secondSteps < 1) {
+            throw new IllegalArgumentException("Phase lengths must be non-negative with a positive total: "
+                + firstSteps + ", " + secondSteps);
+        }
+        long period = firstSteps + secondSteps;
+        return step -> Math.floorMod(step, period) < firstSteps ? first : second;
+    }
+
+    /**
+     * Returns a profile through a list of points, interpolated linearly between them. Before the first point
+     * the first value holds, and after the last point the last value holds unless the profile repeats.
+     * @param steps The steps of the points, strictly increasing.
+     * @param values The values at those steps.
+     * @param repeat True to repeat the profile with a period of the last step minus the first.
+     * @return The schedule.
+     */
+    public static Schedule piecewiseLinear(long[] steps, double[] values, boolean repeat) {
+        if (steps.length == 0 || steps.length != values.length) {
+            throw new IllegalArgumentException("Need matching, non-empty steps and values: "
+                + steps.length + " steps, " + values.length + " values");
+        }
+        for (int i = 1; i < steps.length; i++) {
+            if (steps[i] <= steps[i - 1]) {
+                throw new IllegalArgumentException("Steps must increase: " + steps[i - 1] + " then " + steps[i]);
+            }
+        }
+        return new PiecewiseLinear(steps.clone(), values.clone(), repeat);
+    }
+
+    /**
+     * Reads a piecewise-linear profile from a text file with one point per line: the step and the value,
+     * separated by whitespace, a comma or a semicolon. Blank lines and lines starting with # are ignored.
+     * @param file The trace file.
+     * @param repeat True to repeat the trace (see {@link #piecewiseLinear}).
+     * @return The schedule.
+     * @throws IOException If the file cannot be read or is not a valid trace.
+     */
+    public static Schedule trace(Path file, boolean repeat) throws IOException {
+        List<String> lines = Files.readAllLines(file);
+        long[] steps = new long[lines.size()];
+        double[] values = new double[lines.size()];
+        int count = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] fields = line.split("[\\s,;]+");
+            try {
+                if (fields.length != 2) throw new NumberFormatException();
+                steps[count] = Long.parseLong(fields[0]);
+                values[count] = Double.parseDouble(fields[1]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid trace line " + (i + 1) + " in " + file + ": " + line);
+            }
+            if (count > 0 && steps[count] <= steps[count - 1]) {
+                throw new IOException("Steps must increase in " + file + " at line " + (i + 1));
+            }
+            count++;
+        }
+        if (count == 0) {
+            throw new IOException("No points in trace " + file);
+        }
+        return new PiecewiseLinear(Arrays.copyOf(steps, count), Arrays.copyOf(values, count), repeat);
+    }
+
+    /**
+     * Builds a schedule from a textual description, as used on the command line:
+     * <ul>
+     *   <li>{@code V} or {@code constant:V}: a constant value.</li>
+     *   <li>{@code sin:MEAN,AMPLITUDE,PERIOD[,PHASE]}: see {@link #sinusoidal}.</li>
+     *   <li>{@code step:FIRST,FIRST_STEPS,SECOND,SECOND_STEPS}: see {@link #stepCycle}.</li>
+     *   <li>{@code linear:STEP=VALUE,STEP=VALUE,...[,repeat]}: see {@link #piecewiseLinear}.</li>
+     *   <li>{@code trace:FILE[,repeat]}: see {@link #trace}.</li>
+     * </ul>
+     * @param spec The description.
+     * @return The schedule.
+     * @throws IllegalArgumentException If the description is not valid.
+     * @throws IOException If a trace file cannot be read or is not a valid trace.
+     */
+    public static Schedule parse(String spec) throws IOException {
+        int colon = spec.indexOf(':');
+        String kind = colon < 0 ? "constant" : spec.substring(0, colon);
+        String[] arguments = spec.substring(colon + 1).split(",");
+        try {
+            switch (kind) {
+                case "constant":
+                    if (arguments.length != 1) break;
+                    return constant(Double.parseDouble(arguments[0]));
+                case "sin":
+                    if (arguments.length != 3 && arguments.length != 4) break;
+                    return sinusoidal(Double.parseDouble(arguments[0]), Double.parseDouble(arguments[1]),
+                        Long.parseLong(arguments[2]), arguments.length == 4 ? Long.parseLong(arguments[3]) : 0);
+                case "step":
+                    if (arguments.length != 4) break;
+                    return stepCycle(Double.parseDouble(arguments[0]), Long.parseLong(arguments[1]),
+                        Double.parseDouble(arguments[2]), Long.parseLong(arguments[3]));
+                case "linear": {
+                    boolean repeat = arguments[arguments.length - 1].equals("repeat");
+                    int points = repeat ? arguments.length - 1 : arguments.length;
+                    long[] steps = new long[points];
+                    double[] values = new double[points];
+                    for (int i = 0; i < points; i++) {
+                        String[] point = arguments[i].split("=");
+                        if (point.length != 2) throw new NumberFormatException();
+                        steps[i] = Long.parseLong(point[0]);
+                        values[i] = Double.parseDouble(point[1]);
+                    }
+                    return piecewiseLinear(steps, values, repeat);
+                }
+                case "trace": {
+                    boolean repeat = arguments.length == 2 && arguments[1].equals("repeat");
+                    if (arguments.length != 1 && !repeat) break;
+                    return trace(Paths.get(arguments[0]), repeat);
+                }
+                default:
+                    break;
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid schedule " + spec
+                + (e instanceof NumberFormatException ? "" : ": " + e.getMessage()));
+        }
+        throw new IllegalArgumentException("Invalid schedule " + spec);
+    }
+
+    /**
+     * Linear interpolation between points, found by binary search.
+     */
+    private static final class PiecewiseLinear implements Schedule {
+        private final long[] steps;
+        private final double[] values;
+        // Length of one repetition, or 0 if the profile does not repeat
+        private final long period;
+
+        PiecewiseLinear(long[] steps, double[] values, boolean repeat) {
+            this.steps = steps;
+            this.values = values;
+            this.period = repeat ? steps[steps.length - 1] - steps[0] : 0;
+        }
+
+        @Override
+        public double valueAt(long step) {
+            int last = steps.length - 1;
+            if (period > 0) {
+                step = steps[0] + Math.floorMod(step - steps[0], period);
+            }
+            if (step <= steps[0]) return values[0];
+            if (step >= steps[last]) return values[last];
+            int found = Arrays.binarySearch(steps, step);
+            if (found >= 0) return values[found];
+            int upper = -found - 1;
+            int lower = upper - 1;
+            double fraction = (double) (step - steps[lower]) / (steps[upper] - steps[lower]);
+            return values[lower] + fraction * (values[upper] - values[lower]);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.AminoAcidSequence;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least-recently-used table of the sequences in a soup, with data derived from each sequence.
+ *
+ * Interning a sequence returns the table's instance of an equal sequence, so chains that converge on the same
+ * sequence share one packed copy instead of each holding its own. The table also remembers the motifs found in
+ * each sequence, so a chain whose sequence was already scanned is not scanned again. When the table is full,
+ * the sequence used least recently is dropped; chains holding it keep it, they just stop sharing it with
+ * later duplicates.
+ *
+ * Only used from the thread driving the simulation.
+ */
+public class SequenceCache {
+    private final Map<AminoAcidSequence, Entry> entries;
+    private int capacity;
+    private long scanHits;
+    private long scanMisses;
+
+    /**
+     * The canonical instance of a sequence and its derived data.
+     */
+    private static final class Entry {
+        final AminoAcidSequence sequence;
+        // Motif hits as found by MotifTracker.match, or null if not scanned with the current motif set
+        int[] motifHits;
+
+        Entry(AminoAcidSequence sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Creates an empty cache.
+     * @param capacity The largest number of sequences kept; 0 disables the cache.
+     */
+    SequenceCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<AminoAcidSequence, Entry> eldest) {
+                return size() > SequenceCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the shared instance of a sequence, adding it to the table if no equal sequence is there.
+     * @param sequence The sequence.
+     * @return An equal sequence, shared by all chains interned while it stays in the table.
+     */
+    AminoAcidSequence intern(AminoAcidSequence sequence) {
+        if (capacity == 0) return sequence;
+        return entry(sequence).sequence;
+    }
+
+    /**
+     * Returns the motif hits recorded for a sequence, counting the lookup as a cache hit or miss.
+     * @param sequence The sequence.
+     * @return The hits, or null if the sequence has not been scanned with the current motif set.
+     */
+    int[] getMotifHits(AminoAcidSequence sequence) {
+        Entry entry = capacity == 0 ? null : entries.get(sequence);
+        if (entry == null || entry.motifHits == null) {
+            scanMisses++;
+            return null;
+        }
+        scanHits++;
+        return entry.motifHits;
+    }
+
+    /**
+     * Records the motif hits of a sequence.
+     * @param sequence The sequence.
+     * @param motifHits The hits, as returned by {@link MotifTracker#match}.
+     */
+    void putMotifHits(AminoAcidSequence sequence, int[] motifHits) {
+        if (capacity == 0) return;
+        entry(sequence).motifHits = motifHits;
+    }
+
+    /**
+     * Forgets all recorded motif hits, for when the motif set changes. Interned sequences are kept.
+     */
+    void clearMotifHits() {
+        for (Entry entry : entries.values()) {
+            entry.motifHits = null;
+        }
+    }
+
+    private Entry entry(AminoAcidSequence sequence) {
+        Entry entry = entries.get(sequence);
+        if (entry == null) {
+            entry = new Entry(sequence);
+            entries.put(sequence, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Changes the largest number of sequences kept, dropping the least recently used ones if needed.
+     * @param capacity The new capacity; 0 disables the cache.
+     */
+    public void setCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Negative capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        if (capacity == 0) {
+            entries.clear();
+            return;
+        }
+        Iterator<AminoAcidSequence> iterator = entries.keySet().iterator();
+        while (entries.size() > capacity) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Returns the largest number of sequences kept.
+     * @return The capacity; 0 if the cache is disabled.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of sequences currently in the table.
+     * @return The size.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns how many motif scans were answered from the table.
+     * @return The number of hits.
+     */
+    public long getScanHits() {
+        return scanHits;
+    }
+
+    /**
+     * Returns how many motif scans had to run the matcher.
+     * @return The number of misses.
+     */
+    public long getScanMisses() {
+        return scanMisses;
+    }
+}
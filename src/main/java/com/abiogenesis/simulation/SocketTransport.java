@@ -0,0 +1,208 @@
+package com.abiogenesis.simulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A {@link Transport} over TCP, for nodes in separate processes. Every pair of nodes shares one connection:
+ * node r listens on base port + r, connects to every lower-ranked node and accepts a connection from every
+ * higher-ranked one. Messages are framed by their length.
+ *
+ * Each connection has a daemon thread that reads incoming messages into a queue as soon as they arrive, so
+ * a node blocked sending a large message is never waiting for a peer that is itself blocked sending.
+ */
+public class SocketTransport implements Transport {
+    // How long to keep retrying connections to nodes that have not started listening yet
+    private static final long CONNECT_TIMEOUT_MILLIS = 60_000;
+    private static final long RETRY_DELAY_MILLIS = 100;
+    // Queued after the last message of a connection that has been closed or has failed
+    private static final byte[] CLOSED = new byte[0];
+    // Longest message accepted from a peer; a larger length prefix means the stream is corrupt
+    private static final int MAX_MESSAGE_BYTES = 1 << 30;
+
+    private final int rank;
+    private final Socket[] sockets;
+    private final DataOutputStream[] outputs;
+    private final List<BlockingQueue<byte[]>> inboxes;
+    private final IOException[] failures;
+
+    private SocketTransport(int rank, int size) {
+        this.rank = rank;
+        this.sockets = new Socket[size];
+        this.outputs = new DataOutputStream[size];
+        this.inboxes = new ArrayList<>(Collections.nCopies(size, null));
+        this.failures = new IOException[size];
+    }
+
+    /**
+     * Connects this node to all the others. Blocks until every node of the group has connected.
+     * @param rank The rank of this node.
+     * @param size The number of nodes.
+     * @param hosts The host of each node, indexed by rank (only lower ranks are used).
+     * @param basePort Node r listens on this port + r.
+     * @return The connected transport.
+     * @throws IOException If a connection cannot be made in time.
+     */
+    public static SocketTransport connect(int rank, int size, String[] hosts, int basePort) throws IOException {
+        if (rank < 0 || rank >= size || hosts.length != size) {
+            throw new IllegalArgumentException("Rank " + rank + " out of " + size + " nodes with "
+                + hosts.length + " hosts");
+        }
+        SocketTransport transport = new SocketTransport(rank, size);
+        try (ServerSocket server = new ServerSocket()) {
+            server.setReuseAddress(true);
+            server.bind(new InetSocketAddress(basePort + rank), size);
+            for (int peer = 0; peer < rank; peer++) {
+                Socket socket = connectWithRetry(hosts[peer], basePort + peer);
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeInt(rank);
+                out.flush();
+                transport.attach(peer, socket);
+            }
+            for (int i = rank + 1; i < size; i++) {
+                Socket socket = server.accept();
+                int peer = new DataInputStream(socket.getInputStream()).readInt();
+                if (peer <= rank || peer >= size || transport.sockets[peer] != null) {
+                    socket.close();
+                    throw new IOException("Unexpected connection from node " + peer);
+                }
+                transport.attach(peer, socket);
+            }
+        } catch (IOException e) {
+            transport.close();
+            throw e;
+        }
+        return transport;
+    }
+
+    /**
+     * Connects a node to the others, all on this machine.
+     * @param rank The rank of this node.
+     * @param size The number of nodes.
+     * @param basePort Node r listens on this port + r.
+     * @return The connected transport.
+     * @throws IOException If a connection cannot be made in time.
+     */
+    public static SocketTransport connectLocal(int rank, int size, int basePort) throws IOException {
+        String[] hosts = new String[size];
+        Arrays.fill(hosts, "localhost");
+        return connect(rank, size, hosts, basePort);
+    }
+
+    private static Socket connectWithRetry(String host, int port) throws IOException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                return new Socket(host, port);
+            } catch (ConnectException e) {
+                // The node has not started listening yet
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IOException("Could not connect to " + host + ":" + port, e);
+                }
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while connecting to " + host + ":" + port);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets up the streams of a connection and starts reading from it.
+     * @param peer The rank of the node at the other end.
+     * @param socket The connected socket.
+     * @throws IOException If the streams cannot be opened.
+     */
+    private void attach(int peer, Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        sockets[peer] = socket;
+        outputs[peer] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        BlockingQueue<byte[]> inbox = new LinkedBlockingQueue<>();
+        inboxes.set(peer, inbox);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        Thread reader = new Thread(() -> {
+            try {
+                while (true) {
+                    int length = in.readInt();
+                    if (length < 0 || length > MAX_MESSAGE_BYTES) {
+                        throw new IOException("Invalid message length " + length + " from node " + peer);
+                    }
+                    byte[] message = new byte[length];
+                    in.readFully(message);
+                    inbox.add(message);
+                }
+            } catch (IOException e) {
+                failures[peer] = e instanceof EOFException ? new EOFException("Node " + peer + " disconnected") : e;
+            } finally {
+                // Wakes the receiver whatever ended the loop, even an unexpected error
+                inbox.add(CLOSED);
+            }
+        }, "transport-" + rank + "-" + peer);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    public int getRank() {
+        return rank;
+    }
+
+    @Override
+    public int getSize() {
+        return sockets.length;
+    }
+
+    @Override
+    public void send(int destination, byte[] message) throws IOException {
+        DataOutputStream out = outputs[destination];
+        synchronized (out) {
+            out.writeInt(message.length);
+            out.write(message);
+            out.flush();
+        }
+    }
+
+    @Override
+    public byte[] receive(int source) throws IOException {
+        try {
+            BlockingQueue<byte[]> inbox = inboxes.get(source);
+            byte[] message = inbox.take();
+            if (message == CLOSED) {
+                // Leave the marker for later calls
+                inbox.add(CLOSED);
+                IOException failure = failures[source];
+                throw failure != null ? failure : new EOFException("Node " + source + " disconnected");
+            }
+            return message;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for node " + source);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Socket socket : sockets) {
+            if (socket != null) {
+                socket.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,606 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.AminoAcidMolecule;
+import com.abiogenesis.model.AminoAcidSequence;
+import com.abiogenesis.model.Atom;
+import com.abiogenesis.model.Molecule;
+import com.abiogenesis.model.ParticleStore;
+import com.abiogenesis.model.SplitMixRandom;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Saves and restores the complete state of a {@link PrimordialSoup} in a compact binary file, so a long run
+ * can be resumed after the process dies. A restored soup continues bit-identically: it holds the same
+ * molecules in the same slots, the same random generator states, the same spatial grid order (which feeds
+ * partner sampling) and the same pending motif scans and motif statistics.
+ *
+ * The format is little-endian and written through a {@link FileChannel} with one direct buffer; per-particle
+ * arrays are copied in bulk, and sequences are stored as their packed 5-bit words. A file is first written
+ * next to the target and then moved into place, so an interrupted checkpoint never replaces a good one.
+ * Listeners, schedules, the colour scheme and the thread count are not part of the state and are not saved.
+ *
+ * Layout: header (magic, version), parameters, counters, kinetics mode, wetness, rates, random generator states,
+ * motifs and their statistics, particle arrays (x, y, energy, type), chain sequences and plain molecules in slot
+ * order, grid cell order, pending motif scans, the lineage table if lineage is tracked, the environment field if
+ * one is attached, and a trailing magic number that guards against truncation.
+ */
+public final class SoupCheckpoint {
+    // Identifies a checkpoint file ("ABSC")
+    private static final int MAGIC = 0x41425343;
+    private static final int VERSION = 1;
+    // Size of the direct buffer used for reading and writing
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private SoupCheckpoint() {
+    }
+
+    /**
+     * Writes the state of a soup to a file, replacing it if it exists.
+     * Must be called from the thread driving the simulation, between steps.
+     * @param soup The soup to save.
+     * @param file The checkpoint file.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void save(PrimordialSoup soup, Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            write(soup, out);
+            out.flush();
+            channel.force(false);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads a soup from a checkpoint file.
+     * @param file The checkpoint file.
+     * @return The restored soup, ready to continue stepping.
+     * @throws IOException If the file cannot be read or is not a valid checkpoint.
+     */
+    public static PrimordialSoup load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(new Input(channel));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt checkpoint " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void write(PrimordialSoup soup, Output out) throws IOException {
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+
+        out.putInt(soup.getWidth());
+        out.putInt(soup.getHeight());
+        out.putDouble(soup.getTemperature());
+        out.putDouble(soup.getPH());
+        out.putLong(soup.getSeed());
+        out.putInt(soup.getMaxAminoAcids());
+        out.putLong(soup.getStepCount());
+        out.putLong(soup.getTotalReactions());
+        out.putInt(soup.getReactionsThisStep());
+        out.putInt(soup.getKinetics().ordinal());
+        out.putInt(soup.getLeapSteps());
+        out.putDouble(soup.getWetness());
+        out.putDouble(soup.getGenerationRate());
+        out.putDouble(soup.getMutationRate());
+        out.putDouble(soup.getCombinationRate());
+        out.putInt(soup.getMaxCombinationsPerStep());
+        writeRandom(soup.getMainRandom(), out);
+        writeRandom(soup.getPartitionRandom(), out);
+
+        MotifTracker tracker = soup.getMotifTracker();
+        List<String> motifs = tracker.getMatcher().getMotifs();
+        out.putInt(motifs.size());
+        for (int i = 0; i < motifs.size(); i++) {
+            out.putString(motifs.get(i));
+            out.putLong(tracker.getFirstSeenStep(i));
+            out.putLong(tracker.getChainCount(i));
+            out.putLong(tracker.getOccurrenceCount(i));
+        }
+        out.putLong(tracker.getChainsScanned());
+
+        ParticleStore particles = soup.getParticles();
+        int n = particles.size();
+        out.putInt(n);
+        out.putDoubles(particles.getXArray(), n);
+        out.putDoubles(particles.getYArray(), n);
+        out.putDoubles(particles.getEnergyArray(), n);
+        out.putBytes(particles.getTypeArray(), n);
+        long[] words = new long[16];
+        for (int slot = 0; slot < n; slot++) {
+            Molecule molecule = particles.get(slot);
+            if (molecule instanceof AminoAcidMolecule) {
+                AminoAcidSequence sequence = ((AminoAcidMolecule) molecule).getPackedSequence();
+                int count = AminoAcidSequence.wordCount(sequence.length());
+                if (count > words.length) {
+                    words = new long[Math.max(count, words.length * 2)];
+                }
+                sequence.copyWords(words, 0);
+                out.putInt(sequence.length());
+                out.putLongs(words, count);
+            } else {
+                out.putString(molecule.getName());
+                List<Atom> atoms = molecule.getAtoms();
+                out.putInt(atoms.size());
+                for (Atom atom : atoms) {
+                    out.putString(atom.getElement());
+                    out.putInt(atom.getAtomicNumber());
+                    out.putDouble(atom.getAtomicMass());
+                }
+            }
+        }
+
+        int[] order = new int[n];
+        soup.getSpatialGrid().copyCellOrder(order);
+        out.putInts(order, n);
+
+        IntList changed = soup.getChangedSlots();
+        out.putInt(changed.size());
+        for (int i = 0; i < changed.size(); i++) {
+            out.putInt(changed.get(i));
+        }
+        writeLineage(soup.getLineage(), out);
+        writeEnvironment(soup.getEnvironment(), out);
+        out.putInt(MAGIC);
+    }
+
+    private static PrimordialSoup read(Input in) throws IOException {
+        if (in.getInt() != MAGIC) {
+            throw new IOException("Not a soup checkpoint");
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version);
+        }
+
+        int width = in.getInt();
+        int height = in.getInt();
+        double temperature = in.getDouble();
+        double pH = in.getDouble();
+        long seed = in.getLong();
+        int maxAminoAcids = in.getInt();
+        long stepCount = in.getLong();
+        long totalReactions = in.getLong();
+        int reactionsThisStep = in.getInt();
+        int mode = in.getInt();
+        if (mode < 0 || mode >= PrimordialSoup.Kinetics.values().length) {
+            throw new IOException("Unknown kinetics mode " + mode);
+        }
+        PrimordialSoup.Kinetics kinetics = PrimordialSoup.Kinetics.values()[mode];
+        int leapSteps = in.getInt();
+        double wetness = in.getDouble();
+        double generationRate = in.getDouble();
+        double mutationRate = in.getDouble();
+        double combinationRate = in.getDouble();
+        int maxCombinations = in.getInt();
+        SplitMixRandom random = readRandom(in);
+        SplitMixRandom partitionRandom = readRandom(in);
+        PrimordialSoup soup = new PrimordialSoup(width, height, temperature, pH, seed, random, partitionRandom);
+        soup.setMaxAminoAcids(maxAminoAcids);
+        soup.restoreCounters(stepCount, totalReactions, reactionsThisStep);
+        soup.setKinetics(kinetics);
+        soup.setWetness(wetness);
+        soup.setGenerationRate(generationRate);
+        soup.setMutationRate(mutationRate);
+        soup.setCombinationRate(combinationRate);
+        soup.setMaxCombinationsPerStep(maxCombinations);
+        soup.setLeapSteps(leapSteps);
+
+        int motifCount = checkCount(in.getInt());
+        List<String> motifs = new ArrayList<>(motifCount);
+        long[] firstSeen = new long[motifCount];
+        long[] chains = new long[motifCount];
+        long[] occurrences = new long[motifCount];
+        for (int i = 0; i < motifCount; i++) {
+            motifs.add(in.getString());
+            firstSeen[i] = in.getLong();
+            chains[i] = in.getLong();
+            occurrences[i] = in.getLong();
+        }
+        soup.setMotifs(motifs);
+        soup.getMotifTracker().restoreStatistics(firstSeen, chains, occurrences, in.getLong());
+
+        int n = checkCount(in.getInt());
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        double[] energies = new double[n];
+        byte[] types = new byte[n];
+        in.getDoubles(xs, n);
+        in.getDoubles(ys, n);
+        in.getDoubles(energies, n);
+        in.getBytes(types, n);
+        long[] words = new long[16];
+        for (int slot = 0; slot < n; slot++) {
+            Molecule molecule;
+            if (types[slot] == ParticleStore.TYPE_AMINO_ACID) {
+                int length = checkCount(in.getInt());
+                int count = AminoAcidSequence.wordCount(length);
+                if (count > words.length) {
+                    words = new long[Math.max(count, words.length * 2)];
+                }
+                in.getLongs(words, count);
+                molecule = new AminoAcidMolecule(AminoAcidSequence.fromWords(words, 0, length), energies[slot]);
+            } else {
+                String name = in.getString();
+                Atom[] atoms = new Atom[checkCount(in.getInt())];
+                for (int i = 0; i < atoms.length; i++) {
+                    atoms[i] = Atom.valueOf(in.getString(), in.getInt(), in.getDouble());
+                }
+                molecule = new Molecule(name, energies[slot], Arrays.asList(atoms));
+            }
+            soup.restoreParticle(molecule, xs[slot], ys[slot]);
+        }
+
+        int[] order = new int[n];
+        in.getInts(order, n);
+        // A repeated slot would link a grid cell to itself and hang every later query on it
+        boolean[] listed = new boolean[n];
+        for (int slot : order) {
+            if (slot < 0 || slot >= n || listed[slot]) {
+                throw new IOException("Corrupt checkpoint: grid order is not a permutation of the slots");
+            }
+            listed[slot] = true;
+        }
+        soup.getSpatialGrid().restoreCellOrder(order);
+
+        int changedCount = checkCount(in.getInt());
+        for (int i = 0; i < changedCount; i++) {
+            int slot = in.getInt();
+            if (slot < 0 || slot >= n || types[slot] != ParticleStore.TYPE_AMINO_ACID) {
+                throw new IOException("Corrupt checkpoint: pending scan of slot " + slot + ", which holds no chain");
+            }
+            soup.restoreChanged(slot);
+        }
+        if (in.getInt() != 0) {
+            soup.restoreLineage(readLineage(in, n));
+        }
+        if (in.getInt() != 0) {
+            soup.setEnvironment(readEnvironment(in));
+        }
+        if (in.getInt() != MAGIC) {
+            throw new IOException("Checkpoint is truncated or corrupt");
+        }
+        return soup;
+    }
+
+    private static void writeLineage(LineageTable lineage, Output out) throws IOException {
+        if (lineage == null) {
+            out.putInt(0);
+            return;
+        }
+        out.putInt(1);
+        int nodes = lineage.getNodeLimit();
+        out.putInt(nodes);
+        out.putInts(lineage.getParentAArray(), nodes);
+        out.putInts(lineage.getParentBArray(), nodes);
+        out.putLongs(lineage.getBirthStepArray(), nodes);
+        out.putBytes(lineage.getKindArray(), nodes);
+        out.putInts(lineage.getReferenceArray(), nodes);
+        out.putInts(lineage.getGenerationArray(), nodes);
+        // Sequences of nodes in use, in node order; free nodes have none
+        int[] references = lineage.getReferenceArray();
+        AminoAcidSequence[] sequences = lineage.getSequenceArray();
+        long[] words = new long[16];
+        for (int node = 0; node < nodes; node++) {
+            if (references[node] == 0) continue;
+            AminoAcidSequence sequence = sequences[node];
+            int count = AminoAcidSequence.wordCount(sequence.length());
+            if (count > words.length) {
+                words = new long[Math.max(count, words.length * 2)];
+            }
+            sequence.copyWords(words, 0);
+            out.putInt(sequence.length());
+            out.putLongs(words, count);
+        }
+        IntList free = lineage.getFreeNodes();
+        out.putInt(free.size());
+        for (int i = 0; i < free.size(); i++) {
+            out.putInt(free.get(i));
+        }
+        out.putLong(lineage.getPrunedCount());
+        out.putInts(lineage.getSlotNodeArray(), lineage.getSlotCount());
+    }
+
+    private static LineageTable readLineage(Input in, int slotCount) throws IOException {
+        int nodes = checkCount(in.getInt());
+        int capacity = Math.max(nodes, 64);
+        int[] parentA = new int[capacity];
+        int[] parentB = new int[capacity];
+        long[] birthSteps = new long[capacity];
+        byte[] kinds = new byte[capacity];
+        int[] references = new int[capacity];
+        int[] generations = new int[capacity];
+        AminoAcidSequence[] sequences = new AminoAcidSequence[capacity];
+        in.getInts(parentA, nodes);
+        in.getInts(parentB, nodes);
+        in.getLongs(birthSteps, nodes);
+        in.getBytes(kinds, nodes);
+        in.getInts(references, nodes);
+        in.getInts(generations, nodes);
+        long[] words = new long[16];
+        for (int node = 0; node < nodes; node++) {
+            if (references[node] == 0) continue;
+            int length = checkCount(in.getInt());
+            int count = AminoAcidSequence.wordCount(length);
+            if (count > words.length) {
+                words = new long[Math.max(count, words.length * 2)];
+            }
+            in.getLongs(words, count);
+            sequences[node] = AminoAcidSequence.fromWords(words, 0, length);
+        }
+        int[] free = new int[checkCount(in.getInt())];
+        for (int i = 0; i < free.length; i++) {
+            free[i] = in.getInt();
+        }
+        long pruned = in.getLong();
+        int[] slotNodes = new int[Math.max(slotCount, 64)];
+        in.getInts(slotNodes, slotCount);
+        return new LineageTable(parentA, parentB, birthSteps, kinds, references, generations, sequences,
+            nodes, free, pruned, slotNodes, slotCount);
+    }
+
+    private static void writeEnvironment(EnvironmentField environment, Output out) throws IOException {
+        if (environment == null) {
+            out.putInt(0);
+            return;
+        }
+        out.putInt(1);
+        out.putInt(environment.getColumns());
+        out.putInt(environment.getRows());
+        int cells = environment.getColumns() * environment.getRows();
+        for (EnvironmentField.Quantity quantity : EnvironmentField.Quantity.values()) {
+            out.putDouble(environment.getDiffusionRate(quantity));
+            // The bounds steer reaction sampling, so they are saved as they are rather than recomputed
+            out.putDouble(environment.cellMinimum(quantity));
+            out.putDouble(environment.cellMaximum(quantity));
+            out.putDouble(environment.getOffset(quantity));
+            out.putFloats(environment.values(quantity), cells);
+        }
+    }
+
+    private static EnvironmentField readEnvironment(Input in) throws IOException {
+        int columns = checkCount(in.getInt());
+        int rows = checkCount(in.getInt());
+        if ((long) columns * rows > Integer.MAX_VALUE) {
+            throw new IOException("Environment field too large: " + columns + "x" + rows);
+        }
+        EnvironmentField environment = new EnvironmentField(columns, rows, 0, 0, 0);
+        for (EnvironmentField.Quantity quantity : EnvironmentField.Quantity.values()) {
+            environment.setDiffusionRate(quantity, in.getDouble());
+            double minimum = in.getDouble();
+            double maximum = in.getDouble();
+            double offset = in.getDouble();
+            float[] cells = new float[columns * rows];
+            in.getFloats(cells, cells.length);
+            environment.restore(quantity, cells, minimum, maximum, offset);
+        }
+        return environment;
+    }
+
+    private static void writeRandom(SplitMixRandom random, Output out) throws IOException {
+        out.putLong(random.getSeed());
+        out.putLong(random.getGamma());
+    }
+
+    private static SplitMixRandom readRandom(Input in) throws IOException {
+        long seed = in.getLong();
+        return new SplitMixRandom(seed, in.getLong());
+    }
+
+    private static int checkCount(int count) throws IOException {
+        if (count < 0) {
+            throw new IOException("Corrupt checkpoint: negative count " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Buffered little-endian writer over a file channel.
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            putBytes(bytes, bytes.length);
+        }
+
+        void putBytes(byte[] values, int count) throws IOException {
+            for (int i = 0; i < count; ) {
+                ensure(1);
+                int chunk = Math.min(count - i, buffer.remaining());
+                buffer.put(values, i, chunk);
+                i += chunk;
+            }
+        }
+
+        void putInts(int[] values, int count) throws IOException {
+            for (int i = 0; i < count; ) {
+                ensure(Integer.BYTES);
+                int chunk = Math.min(count - i, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().put(values, i, chunk);
+                buffer.position(buffer.position() + chunk * Integer.BYTES);
+                i += chunk;
+            }
+        }
+
+        void putLongs(long[] values, int count) throws IOException {
+            for (int i = 0; i < count; ) {
+                ensure(Long.BYTES);
+                int chunk = Math.min(count - i, buffer.remaining() / Long.BYTES);
+                buffer.asLongBuffer().put(values, i, chunk);
+                buffer.position(buffer.position() + chunk * Long.BYTES);
+                i += chunk;
+            }
+        }
+
+        void putFloats(float[] values, int count) throws IOException {
+            for (int i = 0; i < count; ) {
+                ensure(Float.BYTES);
+                int chunk = Math.min(count - i, buffer.remaining() / Float.BYTES);
+                buffer.asFloatBuffer().put(values, i, chunk);
+                buffer.position(buffer.position() + chunk * Float.BYTES);
+                i += chunk;
+            }
+        }
+
+        void putDoubles(double[] values, int count) throws IOException {
+            for (int i = 0; i < count; ) {
+                ensure(Double.BYTES);
+                int chunk = Math.min(count - i, buffer.remaining() / Double.BYTES);
+                buffer.asDoubleBuffer().put(values, i, chunk);
+                buffer.position(buffer.position() + chunk * Double.BYTES);
+                i += chunk;
+            }
+        }
+    }
+
+    /**
+     * Buffered little-endian reader over a file channel.
+     */
+    private static final class Input {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        Input(FileChannel channel) {
+            this.channel = channel;
+            buffer.limit(0);
+        }
+
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return;
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Checkpoint ends unexpectedly");
+                }
+            }
+            buffer.flip();
+        }
+
+        int getInt() throws IOException {
+            require(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            require(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        double getDouble() throws IOException {
+            require(Double.BYTES);
+            return buffer.getDouble();
+        }
+
+        String getString() throws IOException {
+            int length = checkCount(getInt());
+            byte[] bytes = new byte[length];
+            getBytes(bytes, length);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        void getBytes(byte[] values, int count) throws IOException {
+            for (int i = 0; i < count; ) {
+                require(1);
+                int chunk = Math.min(count - i, buffer.remaining());
+                buffer.get(values, i, chunk);
+                i += chunk;
+            }
+        }
+
+        void getInts(int[] values, int count) throws IOException {
+            for (int i = 0; i < count; ) {
+                require(Integer.BYTES);
+                int chunk = Math.min(count - i, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().get(values, i, chunk);
+                buffer.position(buffer.position() + chunk * Integer.BYTES);
+                i += chunk;
+            }
+        }
+
+        void getLongs(long[] values, int count) throws IOException {
+            for (int i = 0; i < count; ) {
+                require(Long.BYTES);
+                int chunk = Math.min(count - i, buffer.remaining() / Long.BYTES);
+                buffer.asLongBuffer().get(values, i, chunk);
+                buffer.position(buffer.position() + chunk * Long.BYTES);
+                i += chunk;
+            }
+        }
+
+        void getFloats(float[] values, int count) throws IOException {
+            for (int i = 0; i < count; ) {
+                require(Float.BYTES);
+                int chunk = Math.min(count - i, buffer.remaining() / Float.BYTES);
+                buffer.asFloatBuffer().get(values, i, chunk);
+                buffer.position(buffer.position() + chunk * Float.BYTES);
+                i += chunk;
+            }
+        }
+
+        void getDoubles(double[] values, int count) throws IOException {
+            for (int i = 0; i < count; ) {
+                require(Double.BYTES);
+                int chunk = Math.min(count - i, buffer.remaining() / Double.BYTES);
+                buffer.asDoubleBuffer().get(values, i, chunk);
+                buffer.position(buffer.position() + chunk * Double.BYTES);
+                i += chunk;
+            }
+        }
+    }
+}
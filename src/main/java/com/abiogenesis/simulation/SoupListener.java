@@ -0,0 +1,70 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.AminoAcidMolecule;
+import com.abiogenesis.model.Molecule;
+
+/**
+ * Receives the changes a {@link PrimordialSoup} makes to its population, in the order they happen.
+ * Events are delivered on the thread driving the simulation, from the serial parts of a step, so their
+ * order is deterministic for a given seed. Slots follow the particle store: a removal moves the last
+ * molecule into the removed slot.
+ *
+ * All methods have empty defaults, so listeners only implement the events they need.
+ */
+public interface SoupListener {
+    /**
+     * Where a new molecule came from.
+     */
+    enum Origin {
+        /** Added from outside the simulation (see {@link PrimordialSoup#addMolecule}). */
+        ADDED,
+        /** Generated spontaneously by the soup. */
+        GENERATED,
+        /** Created by recombining two parent chains. */
+        CROSSOVER,
+        /** Condensed from two reactant chains, which leave the soup. */
+        COMBINATION,
+        /** Left by the hydrolysis of a chain, which leaves the soup. */
+        DEGRADATION
+    }
+
+    /**
+     * Called when a molecule enters the soup. It always takes the next free slot.
+     * @param step The current step.
+     * @param slot The slot the molecule was placed in.
+     * @param molecule The new molecule.
+     * @param origin Where it came from.
+     * @param parentA The slot of the first parent, or -1.
+     * @param parentB The slot of the second parent, or -1.
+     */
+    default void onBirth(long step, int slot, Molecule molecule, Origin origin, int parentA, int parentB) {
+    }
+
+    /**
+     * Called when a chain is replaced by its mutated copy.
+     * @param step The current step.
+     * @param slot The slot holding the chain.
+     * @param previous The chain before the mutation.
+     * @param mutated The chain now in the slot.
+     */
+    default void onMutation(long step, int slot, AminoAcidMolecule previous, AminoAcidMolecule mutated) {
+    }
+
+    /**
+     * Called after a molecule has left the soup. If it was not in the last slot, the molecule
+     * previously in the last slot now occupies its slot.
+     * @param step The current step.
+     * @param slot The slot that was vacated.
+     * @param molecule The removed molecule.
+     */
+    default void onRemoval(long step, int slot, Molecule molecule) {
+    }
+
+    /**
+     * Called at the end of every step, after movement and motif scanning. With event-driven kinetics a step
+     * covers a whole leap, so consecutive step numbers may differ by more than one.
+     * @param step The step that just finished.
+     */
+    default void onStepEnd(long step) {
+    }
+}
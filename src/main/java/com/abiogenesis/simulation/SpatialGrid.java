@@ -0,0 +1,267 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.ParticleStore;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Uniform-grid spatial index (cell list) over the slots of a {@link ParticleStore}.
+ * The soup is divided into square cells; each cell keeps a doubly linked list of the slots inside it,
+ * stored in primitive arrays so that inserting, removing and relocating a particle are O(1).
+ *
+ * The grid is kept in sync incrementally: the soup inserts new slots, mirrors swap-removals,
+ * and calls {@link #updateAll()} after moving particles, which only relinks particles that changed cell.
+ * Radius and nearest-neighbour queries then only visit the cells overlapping the search area.
+ */
+public class SpatialGrid {
+    private static final int NONE = -1;
+
+    private final ParticleStore store;
+    private final double cellSize;
+    private int cols;
+    private int rows;
+    private int[] cellHead;
+    // Per-slot links and cell index, grown alongside the particle store
+    private int[] next = new int[64];
+    private int[] prev = new int[64];
+    private int[] cellOf = new int[64];
+    private int size;
+
+    /**
+     * Creates a grid covering a width x height area and indexes every particle already in the store.
+     * @param store The particle store whose slots are indexed.
+     * @param width The width of the indexed area.
+     * @param height The height of the indexed area.
+     * @param cellSize The edge length of a grid cell (ideally the typical query radius).
+     */
+    public SpatialGrid(ParticleStore store, double width, double height, double cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+        }
+        this.store = store;
+        this.cellSize = cellSize;
+        resize(width, height);
+    }
+
+    /**
+     * Changes the indexed area and re-indexes every particle in the store.
+     * @param width The new width.
+     * @param height The new height.
+     */
+    public void resize(double width, double height) {
+        this.cols = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        this.cellHead = new int[cols * rows];
+        rebuild();
+    }
+
+    /**
+     * Discards the current index and re-inserts every particle in the store.
+     */
+    public void rebuild() {
+        Arrays.fill(cellHead, NONE);
+        size = 0;
+        for (int slot = 0, n = store.size(); slot < n; slot++) {
+            insert(slot);
+        }
+    }
+
+    /**
+     * Indexes a slot that was just appended to the particle store.
+     * @param slot The new slot (must equal the number of slots indexed so far).
+     */
+    public void insert(int slot) {
+        if (slot != size) {
+            throw new IllegalStateException("Slots must be inserted in order: expected " + size + " but got " + slot);
+        }
+        ensureCapacity(slot + 1);
+        size++;
+        link(slot, cellIndex(store.getXArray()[slot], store.getYArray()[slot]));
+    }
+
+    /**
+     * Mirrors {@link ParticleStore#remove(int)}: unlinks the slot and re-links the last slot in its place.
+     * Must be called after the store removal, with the same slot.
+     * @param slot The removed slot.
+     */
+    public void remove(int slot) {
+        int last = --size;
+        unlink(slot);
+        if (slot != last) {
+            int cell = cellOf[last];
+            unlink(last);
+            link(slot, cell);
+        }
+    }
+
+    /**
+     * Re-files a single slot after its position changed.
+     * @param slot The slot that moved.
+     */
+    public void update(int slot) {
+        int cell = cellIndex(store.getXArray()[slot], store.getYArray()[slot]);
+        if (cell != cellOf[slot]) {
+            unlink(slot);
+            link(slot, cell);
+        }
+    }
+
+    /**
+     * Re-files every slot whose position moved it into a different cell.
+     */
+    public void updateAll() {
+        double[] xs = store.getXArray();
+        double[] ys = store.getYArray();
+        for (int slot = 0; slot < size; slot++) {
+            int cell = cellIndex(xs[slot], ys[slot]);
+            if (cell != cellOf[slot]) {
+                unlink(slot);
+                link(slot, cell);
+            }
+        }
+    }
+
+    /**
+     * Calls the action for every slot within the given distance of a point.
+     * @param x The x coordinate of the query point.
+     * @param y The y coordinate of the query point.
+     * @param radius The search radius.
+     * @param action Receives each matching slot.
+     */
+    public void forEachInRadius(double x, double y, double radius, IntConsumer action) {
+        double[] xs = store.getXArray();
+        double[] ys = store.getYArray();
+        double radiusSq = radius * radius;
+        int minCol = clampCol((int) Math.floor((x - radius) / cellSize));
+        int maxCol = clampCol((int) Math.floor((x + radius) / cellSize));
+        int minRow = clampRow((int) Math.floor((y - radius) / cellSize));
+        int maxRow = clampRow((int) Math.floor((y + radius) / cellSize));
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                for (int slot = cellHead[row * cols + col]; slot != NONE; slot = next[slot]) {
+                    double dx = xs[slot] - x;
+                    double dy = ys[slot] - y;
+                    if (dx * dx + dy * dy <= radiusSq) {
+                        action.accept(slot);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the slot closest to a point, searching outward ring by ring from the point's cell.
+     * @param x The x coordinate of the query point.
+     * @param y The y coordinate of the query point.
+     * @param maxDistance The largest distance considered.
+     * @return The nearest slot, or -1 if no particle lies within maxDistance.
+     */
+    public int nearest(double x, double y, double maxDistance) {
+        double[] xs = store.getXArray();
+        double[] ys = store.getYArray();
+        int centerCol = clampCol((int) Math.floor(x / cellSize));
+        int centerRow = clampRow((int) Math.floor(y / cellSize));
+        int maxRing = (int) Math.ceil(maxDistance / cellSize) + 1;
+        int best = NONE;
+        double bestSq = maxDistance * maxDistance;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Every particle in rings beyond this one is at least (ring - 1) cells away
+            double ringDistance = (ring - 1) * cellSize;
+            if (ring > 0 && ringDistance > 0 && ringDistance * ringDistance > bestSq) break;
+            for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                if (row < 0 || row >= rows) continue;
+                boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                for (int col = centerCol - ring; col <= centerCol + ring; col += step) {
+                    if (col < 0 || col >= cols) continue;
+                    for (int slot = cellHead[row * cols + col]; slot != NONE; slot = next[slot]) {
+                        double dx = xs[slot] - x;
+                        double dy = ys[slot] - y;
+                        double distSq = dx * dx + dy * dy;
+                        if (distSq <= bestSq) {
+                            bestSq = distSq;
+                            best = slot;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Lists every slot cell by cell, in the order queries visit them. Together with the positions this
+     * captures the grid exactly, which matters because the order of radius queries feeds random sampling.
+     * @param order Receives the slots; must hold at least as many entries as there are particles.
+     */
+    void copyCellOrder(int[] order) {
+        int k = 0;
+        for (int cell = 0; cell < cellHead.length; cell++) {
+            for (int slot = cellHead[cell]; slot != NONE; slot = next[slot]) {
+                order[k++] = slot;
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the grid from the particle store with the cell order captured by {@link #copyCellOrder}.
+     * @param order The slots, cell by cell.
+     */
+    void restoreCellOrder(int[] order) {
+        Arrays.fill(cellHead, NONE);
+        size = store.size();
+        ensureCapacity(size);
+        double[] xs = store.getXArray();
+        double[] ys = store.getYArray();
+        // Linking prepends, so walking backwards reproduces each cell's order
+        for (int k = size - 1; k >= 0; k--) {
+            int slot = order[k];
+            link(slot, cellIndex(xs[slot], ys[slot]));
+        }
+    }
+
+    /**
+     * Returns the edge length of a grid cell.
+     * @return The cell size.
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    private int cellIndex(double x, double y) {
+        return clampRow((int) (y / cellSize)) * cols + clampCol((int) (x / cellSize));
+    }
+
+    private int clampCol(int col) {
+        return col < 0 ? 0 : (col >= cols ? cols - 1 : col);
+    }
+
+    private int clampRow(int row) {
+        return row < 0 ? 0 : (row >= rows ? rows - 1 : row);
+    }
+
+    private void link(int slot, int cell) {
+        int head = cellHead[cell];
+        next[slot] = head;
+        prev[slot] = NONE;
+        if (head != NONE) prev[head] = slot;
+        cellHead[cell] = slot;
+        cellOf[slot] = cell;
+    }
+
+    private void unlink(int slot) {
+        int p = prev[slot];
+        int n = next[slot];
+        if (p != NONE) next[p] = n;
+        else cellHead[cellOf[slot]] = n;
+        if (n != NONE) prev[n] = p;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= next.length) return;
+        int capacity = Math.max(required, next.length + (next.length >> 1));
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        cellOf = Arrays.copyOf(cellOf, capacity);
+    }
+}
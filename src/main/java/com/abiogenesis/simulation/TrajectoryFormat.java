@@ -0,0 +1,149 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.AminoAcidMolecule;
+import com.abiogenesis.model.AminoAcidSequence;
+import com.abiogenesis.model.Atom;
+import com.abiogenesis.model.Molecule;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Layout of trajectory segment files, shared by {@link TrajectoryRecorder} and {@link TrajectoryReplay}.
+ *
+ * A segment starts with a header (magic, version, segment index) followed by records. Each record is a type
+ * byte, the payload length, the step and the payload; records never span segments, and a zero type byte
+ * (the zero padding of a partly filled segment) ends it. All values are little-endian.
+ *
+ * <pre>
+ * KEYFRAME  width, height, temperature, pH, count, count x (x, y, energy, molecule)
+ * POSITIONS count, count x (float x, float y)
+ * BIRTH     slot, origin, parentA, parentB, x, y, energy, molecule
+ * MUTATION  slot, energy, molecule
+ * REMOVAL   slot
+ * STEP      count                  (closes a step; the state after it is the state after that step)
+ * molecule: type byte, then for chains length and packed words, otherwise name and atoms
+ * </pre>
+ */
+final class TrajectoryFormat {
+    // Identifies a segment file ("ABTR")
+    static final int MAGIC = 0x41425452;
+    static final int VERSION = 1;
+    static final int SEGMENT_HEADER_SIZE = 12;
+    // Type byte, payload length and step
+    static final int RECORD_HEADER_SIZE = 1 + 4 + 8;
+
+    static final byte END = 0;
+    static final byte KEYFRAME = 1;
+    static final byte POSITIONS = 2;
+    static final byte BIRTH = 3;
+    static final byte MUTATION = 4;
+    static final byte REMOVAL = 5;
+    static final byte STEP = 6;
+
+    private static final byte MOLECULE = 0;
+    private static final byte CHAIN = 1;
+
+    private TrajectoryFormat() {
+    }
+
+    /**
+     * Returns the path of a segment file.
+     * @param directory The trajectory directory.
+     * @param index The segment index.
+     * @return The segment path.
+     */
+    static Path segmentPath(Path directory, int index) {
+        return directory.resolve(String.format("segment-%06d.traj", index));
+    }
+
+    /**
+     * Returns the number of bytes {@link #putMolecule} writes for a molecule.
+     * @param molecule The molecule.
+     * @return The encoded size.
+     */
+    static int moleculeSize(Molecule molecule) {
+        if (molecule instanceof AminoAcidMolecule) {
+            int length = ((AminoAcidMolecule) molecule).getLength();
+            return 1 + 4 + AminoAcidSequence.wordCount(length) * Long.BYTES;
+        }
+        int size = 1 + stringSize(molecule.getName()) + 4;
+        for (Atom atom : molecule.getAtoms()) {
+            size += stringSize(atom.getElement()) + 4 + 8;
+        }
+        return size;
+    }
+
+    /**
+     * Writes a molecule's identity (sequence or name and atoms); position and energy are written separately.
+     * @param buffer The buffer to write to.
+     * @param molecule The molecule.
+     * @param words Scratch space for packed words, at least as long as the longest chain needs.
+     */
+    static void putMolecule(ByteBuffer buffer, Molecule molecule, long[] words) {
+        if (molecule instanceof AminoAcidMolecule) {
+            AminoAcidSequence sequence = ((AminoAcidMolecule) molecule).getPackedSequence();
+            buffer.put(CHAIN);
+            buffer.putInt(sequence.length());
+            int count = sequence.copyWords(words, 0);
+            for (int i = 0; i < count; i++) {
+                buffer.putLong(words[i]);
+            }
+        } else {
+            buffer.put(MOLECULE);
+            putString(buffer, molecule.getName());
+            List<Atom> atoms = molecule.getAtoms();
+            buffer.putInt(atoms.size());
+            for (Atom atom : atoms) {
+                putString(buffer, atom.getElement());
+                buffer.putInt(atom.getAtomicNumber());
+                buffer.putDouble(atom.getAtomicMass());
+            }
+        }
+    }
+
+    /**
+     * Reads a molecule written by {@link #putMolecule}.
+     * @param buffer The buffer to read from.
+     * @param energy The molecule's energy.
+     * @return The new, detached molecule.
+     */
+    static Molecule getMolecule(ByteBuffer buffer, double energy) {
+        byte type = buffer.get();
+        if (type == CHAIN) {
+            int length = buffer.getInt();
+            long[] words = new long[AminoAcidSequence.wordCount(length)];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = buffer.getLong();
+            }
+            return new AminoAcidMolecule(AminoAcidSequence.fromWords(words, 0, length), energy);
+        }
+        if (type != MOLECULE) {
+            throw new IllegalArgumentException("Unknown molecule type " + type);
+        }
+        String name = getString(buffer);
+        Atom[] atoms = new Atom[buffer.getInt()];
+        for (int i = 0; i < atoms.length; i++) {
+            atoms[i] = Atom.valueOf(getString(buffer), buffer.getInt(), buffer.getDouble());
+        }
+        return new Molecule(name, energy, Arrays.asList(atoms));
+    }
+
+    private static int stringSize(String value) {
+        return 4 + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
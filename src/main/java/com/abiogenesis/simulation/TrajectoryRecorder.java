@@ -0,0 +1,255 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.AminoAcidMolecule;
+import com.abiogenesis.model.AminoAcidSequence;
+import com.abiogenesis.model.Molecule;
+import com.abiogenesis.model.ParticleStore;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records the evolution of a soup as an append-only log of per-step deltas in memory-mapped segment files,
+ * for replay ({@link TrajectoryReplay}) and offline analysis.
+ *
+ * Every birth and mutation is logged as it happens, so sequences can be followed exactly. Positions change
+ * every step and are only logged every {@code positionInterval} steps (as floats), plus a full keyframe
+ * every {@code keyframeInterval} steps that a reader can seek to. Writing a record is a bounds check and a
+ * few puts into a mapped buffer; the operating system writes the pages back in the background.
+ *
+ * The recorder listens to the soup from construction until {@link #close()}, and must be used from the
+ * thread driving the simulation.
+ */
+public class TrajectoryRecorder implements SoupListener, Closeable {
+    // Default size of a segment file; a record larger than this gets a segment of its own
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    private final PrimordialSoup soup;
+    private final Path directory;
+    private final int segmentSize;
+    private final int positionInterval;
+    private final int keyframeInterval;
+    private int segmentIndex = -1;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long[] words = new long[16];
+    private boolean closed;
+    // The step of the last step end, to detect interval boundaries crossed by event-driven leaps
+    private long lastStep;
+
+    /**
+     * Starts recording a soup into a directory, beginning with a keyframe of its current state.
+     * @param soup The soup to record.
+     * @param directory The directory for the segment files (created if missing; existing segments are overwritten).
+     * @param positionInterval Log positions every this many steps; 0 to log them with keyframes only.
+     * @param keyframeInterval Log a full keyframe every this many steps (at least 1).
+     * @throws IOException If the directory or the first segment cannot be created.
+     */
+    public TrajectoryRecorder(PrimordialSoup soup, Path directory, int positionInterval, int keyframeInterval)
+            throws IOException {
+        this(soup, directory, positionInterval, keyframeInterval, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Starts recording a soup into a directory, with a custom segment size.
+     * @param soup The soup to record.
+     * @param directory The directory for the segment files.
+     * @param positionInterval Log positions every this many steps; 0 to log them with keyframes only.
+     * @param keyframeInterval Log a full keyframe every this many steps (at least 1).
+     * @param segmentSize The size of each segment file in bytes.
+     * @throws IOException If the directory or the first segment cannot be created.
+     */
+    public TrajectoryRecorder(PrimordialSoup soup, Path directory, int positionInterval, int keyframeInterval,
+                              int segmentSize) throws IOException {
+        if (positionInterval < 0 || keyframeInterval < 1) {
+            throw new IllegalArgumentException("Position interval must be non-negative and keyframe interval positive");
+        }
+        if (segmentSize < TrajectoryFormat.SEGMENT_HEADER_SIZE + TrajectoryFormat.RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        this.soup = soup;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.positionInterval = positionInterval;
+        this.keyframeInterval = keyframeInterval;
+        Files.createDirectories(directory);
+        // Remove the segments of an earlier recording, so a reader never mixes two runs
+        int stale = 0;
+        while (Files.deleteIfExists(TrajectoryFormat.segmentPath(directory, stale))) {
+            stale++;
+        }
+        openSegment(0);
+        writeKeyframe(soup.getStepCount());
+        writeStep(soup.getStepCount());
+        lastStep = soup.getStepCount();
+        soup.addListener(this);
+    }
+
+    @Override
+    public void onBirth(long step, int slot, Molecule molecule, Origin origin, int parentA, int parentB) {
+        ParticleStore particles = soup.getParticles();
+        begin(TrajectoryFormat.BIRTH, step, 4 + 1 + 4 + 4 + 3 * 8 + TrajectoryFormat.moleculeSize(molecule));
+        segment.putInt(slot);
+        segment.put((byte) origin.ordinal());
+        segment.putInt(parentA);
+        segment.putInt(parentB);
+        segment.putDouble(particles.getXArray()[slot]);
+        segment.putDouble(particles.getYArray()[slot]);
+        segment.putDouble(particles.getEnergyArray()[slot]);
+        putMolecule(molecule);
+    }
+
+    @Override
+    public void onMutation(long step, int slot, AminoAcidMolecule previous, AminoAcidMolecule mutated) {
+        begin(TrajectoryFormat.MUTATION, step, 4 + 8 + TrajectoryFormat.moleculeSize(mutated));
+        segment.putInt(slot);
+        segment.putDouble(soup.getParticles().getEnergyArray()[slot]);
+        putMolecule(mutated);
+    }
+
+    @Override
+    public void onRemoval(long step, int slot, Molecule molecule) {
+        begin(TrajectoryFormat.REMOVAL, step, 4);
+        segment.putInt(slot);
+    }
+
+    @Override
+    public void onStepEnd(long step) {
+        // A leap may cover many steps, so log whenever a multiple of the interval was passed since the last one
+        if (step / keyframeInterval != lastStep / keyframeInterval) {
+            writeKeyframe(step);
+        } else if (positionInterval > 0 && step / positionInterval != lastStep / positionInterval) {
+            writePositions(step);
+        }
+        writeStep(step);
+        lastStep = step;
+    }
+
+    private void writeKeyframe(long step) {
+        ParticleStore particles = soup.getParticles();
+        int n = particles.size();
+        long size = 4 + 4 + 8 + 8 + 4;
+        for (int i = 0; i < n; i++) {
+            size += 3 * 8 + TrajectoryFormat.moleculeSize(particles.get(i));
+        }
+        if (size > Integer.MAX_VALUE - TrajectoryFormat.RECORD_HEADER_SIZE - TrajectoryFormat.SEGMENT_HEADER_SIZE) {
+            throw new IllegalStateException("Soup too large for a single keyframe record");
+        }
+        begin(TrajectoryFormat.KEYFRAME, step, (int) size);
+        segment.putInt(soup.getWidth());
+        segment.putInt(soup.getHeight());
+        segment.putDouble(soup.getTemperature());
+        segment.putDouble(soup.getPH());
+        segment.putInt(n);
+        double[] xs = particles.getXArray();
+        double[] ys = particles.getYArray();
+        double[] energies = particles.getEnergyArray();
+        for (int i = 0; i < n; i++) {
+            segment.putDouble(xs[i]);
+            segment.putDouble(ys[i]);
+            segment.putDouble(energies[i]);
+            putMolecule(particles.get(i));
+        }
+    }
+
+    private void writePositions(long step) {
+        ParticleStore particles = soup.getParticles();
+        int n = particles.size();
+        begin(TrajectoryFormat.POSITIONS, step, 4 + n * 2 * Float.BYTES);
+        segment.putInt(n);
+        double[] xs = particles.getXArray();
+        double[] ys = particles.getYArray();
+        for (int i = 0; i < n; i++) {
+            segment.putFloat((float) xs[i]);
+            segment.putFloat((float) ys[i]);
+        }
+    }
+
+    private void writeStep(long step) {
+        begin(TrajectoryFormat.STEP, step, 4);
+        segment.putInt(soup.getParticles().size());
+    }
+
+    private void putMolecule(Molecule molecule) {
+        if (molecule instanceof AminoAcidMolecule) {
+            int count = AminoAcidSequence.wordCount(((AminoAcidMolecule) molecule).getLength());
+            if (count > words.length) {
+                words = new long[Math.max(count, words.length * 2)];
+            }
+        }
+        TrajectoryFormat.putMolecule(segment, molecule, words);
+    }
+
+    /**
+     * Writes a record header, first moving to a new segment if the record does not fit in the current one.
+     */
+    private void begin(byte type, long step, int payloadSize) {
+        if (closed) {
+            throw new IllegalStateException("Trajectory recorder is closed");
+        }
+        int recordSize = TrajectoryFormat.RECORD_HEADER_SIZE + payloadSize;
+        if (segment.remaining() < recordSize) {
+            try {
+                openSegment(segmentIndex + 1, TrajectoryFormat.SEGMENT_HEADER_SIZE + recordSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create trajectory segment", e);
+            }
+        }
+        segment.put(type);
+        segment.putInt(payloadSize);
+        segment.putLong(step);
+    }
+
+    private void openSegment(int index) throws IOException {
+        openSegment(index, segmentSize);
+    }
+
+    private void openSegment(int index, int minimumSize) throws IOException {
+        closeSegment();
+        segmentIndex = index;
+        channel = FileChannel.open(TrajectoryFormat.segmentPath(directory, index), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, minimumSize));
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segment.putInt(TrajectoryFormat.MAGIC);
+        segment.putInt(TrajectoryFormat.VERSION);
+        segment.putInt(index);
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Returns the directory the segments are written to.
+     * @return The trajectory directory.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Stops listening to the soup and flushes the current segment to disk.
+     * @throws IOException If the segment cannot be flushed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        soup.removeListener(this);
+        closeSegment();
+    }
+}
@@ -0,0 +1,279 @@
+package com.abiogenesis.simulation;
+
+import com.abiogenesis.model.Molecule;
+import com.abiogenesis.model.ParticleStore;
+import com.abiogenesis.model.SplitMixRandom;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plays back a trajectory written by {@link TrajectoryRecorder} without re-running the simulation.
+ *
+ * The segments are memory-mapped read-only and indexed once on opening (record headers only), so
+ * {@link #seek(long)} jumps to the closest keyframe at or before the target and applies the logged deltas
+ * from there. The replayed state lives in an ordinary {@link PrimordialSoup} that is never stepped: it can be
+ * handed to the view, which renders it through published snapshots like a live soup.
+ *
+ * Between position records, molecules stay where they were last logged. Not thread-safe; drive it from
+ * one thread (for example the view's simulation loop).
+ */
+public class TrajectoryReplay implements Closeable {
+    private final List<FileChannel> channels = new ArrayList<>();
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    // Keyframe locations, in step order
+    private final List<long[]> keyframes = new ArrayList<>();
+    private final long firstStep;
+    private final long lastStep;
+    private PrimordialSoup soup;
+    // Read position: segment index and offset of the next record
+    private int segmentIndex;
+    private int offset;
+    private long step = -1;
+
+    /**
+     * Opens a trajectory and positions it at its first recorded step.
+     * @param directory The directory holding the segment files.
+     * @throws IOException If the segments cannot be read or are not trajectory segments.
+     */
+    public TrajectoryReplay(Path directory) throws IOException {
+        for (int i = 0; Files.exists(TrajectoryFormat.segmentPath(directory, i)); i++) {
+            FileChannel channel = FileChannel.open(TrajectoryFormat.segmentPath(directory, i), StandardOpenOption.READ);
+            channels.add(channel);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < TrajectoryFormat.SEGMENT_HEADER_SIZE || buffer.getInt(0) != TrajectoryFormat.MAGIC) {
+                close();
+                throw new IOException("Not a trajectory segment: " + TrajectoryFormat.segmentPath(directory, i));
+            }
+            if (buffer.getInt(4) != TrajectoryFormat.VERSION) {
+                close();
+                throw new IOException("Unsupported trajectory version " + buffer.getInt(4));
+            }
+            segments.add(buffer);
+        }
+        long first = -1;
+        long last = -1;
+        for (int s = 0; s < segments.size(); s++) {
+            ByteBuffer buffer = segments.get(s);
+            int pos = TrajectoryFormat.SEGMENT_HEADER_SIZE;
+            while (pos + TrajectoryFormat.RECORD_HEADER_SIZE <= buffer.limit()) {
+                byte type = buffer.get(pos);
+                if (type == TrajectoryFormat.END) break;
+                int length = buffer.getInt(pos + 1);
+                long recordStep = buffer.getLong(pos + 5);
+                if (type == TrajectoryFormat.KEYFRAME) {
+                    keyframes.add(new long[] {recordStep, s, pos});
+                } else if (type == TrajectoryFormat.STEP) {
+                    if (first < 0) first = recordStep;
+                    last = recordStep;
+                }
+                pos += TrajectoryFormat.RECORD_HEADER_SIZE + length;
+            }
+        }
+        if (keyframes.isEmpty() || first < 0) {
+            close();
+            throw new IOException("No complete steps in trajectory " + directory);
+        }
+        this.firstStep = first;
+        this.lastStep = last;
+        seek(firstStep);
+    }
+
+    /**
+     * Moves the replay to the state after a step, loading the nearest earlier keyframe and applying the
+     * deltas recorded since.
+     * @param target The step; clamped to the recorded range.
+     */
+    public void seek(long target) {
+        target = Math.max(firstStep, Math.min(lastStep, target));
+        if (target < step || keyframeBefore(target)[0] > step) {
+            long[] keyframe = keyframeBefore(target);
+            segmentIndex = (int) keyframe[1];
+            offset = (int) keyframe[2];
+            step = -1;
+        }
+        while (step < target) {
+            if (!next()) break;
+        }
+    }
+
+    /**
+     * Advances the replay by one recorded step.
+     * @return False if the end of the trajectory has been reached, true otherwise.
+     */
+    public boolean next() {
+        while (segmentIndex < segments.size()) {
+            ByteBuffer buffer = segments.get(segmentIndex);
+            if (offset + TrajectoryFormat.RECORD_HEADER_SIZE > buffer.limit()
+                    || buffer.get(offset) == TrajectoryFormat.END) {
+                segmentIndex++;
+                offset = TrajectoryFormat.SEGMENT_HEADER_SIZE;
+                continue;
+            }
+            byte type = buffer.get(offset);
+            int length = buffer.getInt(offset + 1);
+            long recordStep = buffer.getLong(offset + 5);
+            ByteBuffer payload = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            payload.position(offset + TrajectoryFormat.RECORD_HEADER_SIZE);
+            offset += TrajectoryFormat.RECORD_HEADER_SIZE + length;
+            if (apply(type, recordStep, payload)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Applies one record to the replayed soup.
+     * @return True if the record closed a step.
+     */
+    private boolean apply(byte type, long recordStep, ByteBuffer in) {
+        switch (type) {
+            case TrajectoryFormat.KEYFRAME:
+                loadKeyframe(in);
+                return false;
+            case TrajectoryFormat.POSITIONS: {
+                ParticleStore particles = soup.getParticles();
+                int n = in.getInt();
+                checkCount(n, particles.size());
+                double[] xs = particles.getXArray();
+                double[] ys = particles.getYArray();
+                for (int i = 0; i < n; i++) {
+                    xs[i] = in.getFloat();
+                    ys[i] = in.getFloat();
+                }
+                return false;
+            }
+            case TrajectoryFormat.BIRTH: {
+                int slot = in.getInt();
+                checkCount(slot, soup.getParticles().size());
+                in.get();
+                in.getInt();
+                in.getInt();
+                double x = in.getDouble();
+                double y = in.getDouble();
+                double energy = in.getDouble();
+                soup.restoreParticle(TrajectoryFormat.getMolecule(in, energy), x, y);
+                return false;
+            }
+            case TrajectoryFormat.MUTATION: {
+                int slot = in.getInt();
+                double energy = in.getDouble();
+                Molecule previous = soup.getParticles().set(slot, TrajectoryFormat.getMolecule(in, energy));
+                soup.getPopulationCounters().remove(previous);
+                soup.getPopulationCounters().add(soup.getParticles().get(slot));
+                return false;
+            }
+            case TrajectoryFormat.REMOVAL: {
+                Molecule removed = soup.getParticles().remove(in.getInt());
+                soup.getPopulationCounters().remove(removed);
+                return false;
+            }
+            case TrajectoryFormat.STEP:
+                checkCount(in.getInt(), soup.getParticles().size());
+                step = recordStep;
+                soup.restoreCounters(recordStep, 0, 0);
+                soup.getSpatialGrid().rebuild();
+                return true;
+            default:
+                throw new IllegalStateException("Unknown trajectory record type " + type);
+        }
+    }
+
+    private void loadKeyframe(ByteBuffer in) {
+        int width = in.getInt();
+        int height = in.getInt();
+        double temperature = in.getDouble();
+        double pH = in.getDouble();
+        if (soup == null) {
+            soup = new PrimordialSoup(width, height, temperature, pH, 0, new SplitMixRandom(0), new SplitMixRandom(1));
+        } else {
+            soup.getParticles().clear();
+            soup.getPopulationCounters().clear();
+            soup.setWidth(width);
+            soup.setHeight(height);
+            soup.setTemperature(temperature);
+            soup.setPH(pH);
+        }
+        int n = in.getInt();
+        for (int i = 0; i < n; i++) {
+            double x = in.getDouble();
+            double y = in.getDouble();
+            double energy = in.getDouble();
+            soup.restoreParticle(TrajectoryFormat.getMolecule(in, energy), x, y);
+        }
+    }
+
+    private static void checkCount(int recorded, int actual) {
+        if (recorded != actual) {
+            throw new IllegalStateException("Trajectory out of sync: expected " + recorded + " molecules but have " + actual);
+        }
+    }
+
+    private long[] keyframeBefore(long target) {
+        long[] best = keyframes.get(0);
+        for (long[] keyframe : keyframes) {
+            if (keyframe[0] > target) break;
+            best = keyframe;
+        }
+        return best;
+    }
+
+    /**
+     * Returns the soup holding the replayed state. It is never stepped; render it by publishing snapshots.
+     * @return The replayed soup.
+     */
+    public PrimordialSoup getSoup() {
+        return soup;
+    }
+
+    /**
+     * Returns the step the replayed state belongs to.
+     * @return The current step.
+     */
+    public long getStep() {
+        return step;
+    }
+
+    /**
+     * Returns the first recorded step.
+     * @return The first step.
+     */
+    public long getFirstStep() {
+        return firstStep;
+    }
+
+    /**
+     * Returns the last recorded step.
+     * @return The last step.
+     */
+    public long getLastStep() {
+        return lastStep;
+    }
+
+    /**
+     * Returns the number of keyframes that can be seeked to directly.
+     * @return The keyframe count.
+     */
+    public int getKeyframeCount() {
+        return keyframes.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        segments.clear();
+        for (FileChannel channel : channels) {
+            channel.close();
+        }
+        channels.clear();
+    }
+}
@@ -0,0 +1,42 @@
+package com.abiogenesis.simulation;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Carries messages between the nodes of a {@link DistributedSoup}, each of which owns one tile of the world.
+ * Nodes are numbered from 0 (their rank). Messages between two nodes arrive in the order they were sent, and
+ * sending never waits for the receiver, so every node can send to all the others before receiving.
+ *
+ * {@link InProcessTransport} connects nodes running on threads of one process; {@link SocketTransport}
+ * connects nodes over TCP, one process (or machine) per tile.
+ */
+public interface Transport extends Closeable {
+    /**
+     * Returns the number of this node.
+     * @return The rank, from 0 to {@link #getSize()} - 1.
+     */
+    int getRank();
+
+    /**
+     * Returns the number of nodes.
+     * @return The node count.
+     */
+    int getSize();
+
+    /**
+     * Sends a message to another node.
+     * @param destination The rank of the receiving node.
+     * @param message The message; it must not be modified afterwards.
+     * @throws IOException If the message cannot be sent.
+     */
+    void send(int destination, byte[] message) throws IOException;
+
+    /**
+     * Waits for the next message from another node.
+     * @param source The rank of the sending node.
+     * @return The message.
+     * @throws IOException If the connection fails or is closed, or the wait is interrupted.
+     */
+    byte[] receive(int source) throws IOException;
+}
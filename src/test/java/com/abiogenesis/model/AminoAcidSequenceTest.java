@@ -0,0 +1,109 @@
+package com.abiogenesis.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the packed sequence against the same edits made on a plain String.
+ */
+class AminoAcidSequenceTest {
+    private static final String RESIDUES = "ARNDCQEGHILKMFPSTWYV";
+
+    @Test
+    void packsAndUnpacksAcrossWordBoundaries() {
+        SplitMixRandom random = new SplitMixRandom(1);
+        for (int length = 0; length <= 50; length++) {
+            String expected = randomString(length, random);
+            AminoAcidSequence sequence = AminoAcidSequence.of(expected);
+            assertEquals(length, sequence.length());
+            assertEquals(expected, sequence.toString());
+            for (int i = 0; i < length; i++) {
+                assertEquals(expected.charAt(i), sequence.charAt(i));
+                assertEquals(RESIDUES.indexOf(expected.charAt(i)), sequence.codeAt(i));
+            }
+            long[] words = new long[AminoAcidSequence.wordCount(length) + 1];
+            sequence.copyWords(words, 1);
+            assertEquals(sequence, AminoAcidSequence.fromWords(words, 1, length));
+        }
+    }
+
+    @Test
+    void editsMatchStringBaseline() {
+        SplitMixRandom random = new SplitMixRandom(2);
+        String expected = randomString(5, random);
+        AminoAcidSequence sequence = AminoAcidSequence.of(expected);
+        for (int round = 0; round < 2000; round++) {
+            int code = random.nextInt(RESIDUES.length());
+            switch (random.nextInt(4)) {
+                case 0:
+                    if (expected.isEmpty()) continue;
+                    int index = random.nextInt(expected.length());
+                    expected = expected.substring(0, index) + RESIDUES.charAt(code) + expected.substring(index + 1);
+                    sequence = sequence.substitute(index, code);
+                    break;
+                case 1:
+                    index = random.nextInt(expected.length() + 1);
+                    expected = expected.substring(0, index) + RESIDUES.charAt(code) + expected.substring(index);
+                    sequence = sequence.insert(index, code);
+                    break;
+                case 2:
+                    if (expected.length() < 2) continue;
+                    index = random.nextInt(expected.length());
+                    expected = expected.substring(0, index) + expected.substring(index + 1);
+                    sequence = sequence.delete(index);
+                    break;
+                default:
+                    String other = randomString(random.nextInt(30), random);
+                    int headEnd = random.nextInt(expected.length() + 1);
+                    int tailStart = random.nextInt(other.length() + 1);
+                    expected = expected.substring(0, headEnd) + other.substring(tailStart);
+                    sequence = AminoAcidSequence.splice(sequence, headEnd, AminoAcidSequence.of(other), tailStart);
+                    if (expected.length() > 60) {
+                        expected = expected.substring(0, 30);
+                        sequence = sequence.prefix(30);
+                    }
+                    break;
+            }
+            assertEquals(expected, sequence.toString());
+            assertEquals(AminoAcidSequence.of(expected), sequence);
+            assertEquals(AminoAcidSequence.of(expected).hashCode(), sequence.hashCode());
+        }
+    }
+
+    @Test
+    void containsMatchesString() {
+        SplitMixRandom random = new SplitMixRandom(3);
+        for (int round = 0; round < 2000; round++) {
+            // A small alphabet makes matches common
+            String text = randomString(random.nextInt(40), random, 3);
+            String pattern = randomString(random.nextInt(4), random, 3);
+            assertEquals(text.contains(pattern), AminoAcidSequence.of(text).contains(AminoAcidSequence.of(pattern)),
+                text + " / " + pattern);
+        }
+    }
+
+    @Test
+    void rejectsCodesOutsideTheAlphabet() {
+        AminoAcidSequence sequence = AminoAcidSequence.of("MET");
+        assertThrows(IllegalArgumentException.class, () -> sequence.substitute(0, -1));
+        assertThrows(IllegalArgumentException.class, () -> sequence.substitute(0, AminoAcidSequence.ALPHABET_SIZE));
+        assertThrows(IllegalArgumentException.class, () -> sequence.insert(3, AminoAcidSequence.ALPHABET_SIZE));
+        assertThrows(IllegalArgumentException.class, () -> sequence.insert(0, 31));
+        assertThrows(IllegalArgumentException.class, () -> AminoAcidSequence.of("MEBT"));
+        assertEquals("MET", sequence.toString());
+    }
+
+    private static String randomString(int length, SplitMixRandom random) {
+        return randomString(length, random, RESIDUES.length());
+    }
+
+    private static String randomString(int length, SplitMixRandom random, int alphabet) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(RESIDUES.charAt(random.nextInt(alphabet)));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,38 @@
+package com.abiogenesis.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Position references handed out for stored molecules must survive removal and slot reuse.
+ */
+class ParticleStoreTest {
+    @Test
+    void positionStaysValidAfterRemoval() {
+        ParticleStore store = new ParticleStore();
+        Molecule removed = new Molecule("H2O", 1.0);
+        removed.getPosition().setX(3);
+        removed.getPosition().setY(4);
+        Molecule kept = new Molecule("CH4", 1.5);
+        kept.getPosition().setX(10);
+        store.add(removed);
+        store.add(kept);
+
+        Position position = removed.getPosition();
+        position.setX(5);
+        store.remove(0);
+        assertEquals(5.0, position.getX());
+        assertEquals(4.0, position.getY());
+        assertSame(position, removed.getPosition());
+        // The last molecule moved into the freed slot; its own position is unaffected
+        assertEquals(10.0, kept.getPosition().getX());
+
+        position.setX(7);
+        store.add(removed);
+        assertEquals(7.0, removed.getPosition().getX());
+        assertEquals(7.0, store.getXArray()[1]);
+        assertEquals(10.0, kept.getPosition().getX());
+    }
+}
@@ -0,0 +1,50 @@
+package com.abiogenesis.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Messages arrive in order, and a node that closes its transport wakes the peers waiting for it.
+ */
+class InProcessTransportTest {
+    @Test
+    void deliversMessagesInOrder() throws IOException {
+        List<Transport> nodes = InProcessTransport.create(2);
+        nodes.get(0).send(1, new byte[] {1});
+        nodes.get(0).send(1, new byte[] {2, 3});
+        assertArrayEquals(new byte[] {1}, nodes.get(1).receive(0));
+        assertArrayEquals(new byte[] {2, 3}, nodes.get(1).receive(0));
+    }
+
+    @Test
+    void closingWakesWaitingPeers() {
+        List<Transport> nodes = InProcessTransport.create(3);
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            CompletableFuture<byte[]> waiting = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return nodes.get(1).receive(0);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            nodes.get(0).send(2, new byte[] {4});
+            nodes.get(0).close();
+            ExecutionException failure = assertThrows(ExecutionException.class, waiting::get);
+            assertInstanceOf(EOFException.class, failure.getCause().getCause());
+            // Messages sent before closing are still delivered, and the end is reported on every later call
+            assertArrayEquals(new byte[] {4}, nodes.get(2).receive(0));
+            assertThrows(EOFException.class, () -> nodes.get(2).receive(0));
+            assertThrows(EOFException.class, () -> nodes.get(2).receive(0));
+        });
+    }
+}
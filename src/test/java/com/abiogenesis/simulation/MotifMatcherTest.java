@@ -0,0 +1,78 @@
+package com.abiogenesis.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.abiogenesis.model.AminoAcidSequence;
+import com.abiogenesis.model.SplitMixRandom;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the automaton against a naive search with String.contains and String.indexOf.
+ */
+class MotifMatcherTest {
+    private static final String RESIDUES = "ARNDCQEGHILKMFPSTWYV";
+
+    @Test
+    void findsEveryOccurrenceLikeStringSearch() {
+        SplitMixRandom random = new SplitMixRandom(5);
+        for (int round = 0; round < 500; round++) {
+            // Few letters, so motifs overlap and share prefixes and suffixes
+            int alphabet = 2 + random.nextInt(3);
+            List<String> motifs = new ArrayList<>();
+            for (int i = 1 + random.nextInt(5); i > 0; i--) {
+                motifs.add(randomString(1 + random.nextInt(4), random, alphabet));
+            }
+            MotifMatcher matcher = new MotifMatcher(motifs);
+            String text = randomString(random.nextInt(60), random, alphabet);
+            AminoAcidSequence sequence = AminoAcidSequence.of(text);
+
+            List<String> expected = new ArrayList<>();
+            boolean any = false;
+            for (int end = 1; end <= text.length(); end++) {
+                for (int m = 0; m < matcher.getMotifCount(); m++) {
+                    String motif = matcher.getMotif(m);
+                    if (end >= motif.length() && text.startsWith(motif, end - motif.length())) {
+                        expected.add(m + "@" + end);
+                    }
+                }
+            }
+            for (String motif : matcher.getMotifs()) {
+                any |= text.contains(motif);
+            }
+            List<String> found = new ArrayList<>();
+            matcher.scan(sequence, (motifIndex, end) -> found.add(motifIndex + "@" + end));
+            // Matches ending at the same position may be reported in any order
+            assertEquals(sorted(expected), sorted(found), text + " " + motifs);
+            assertEquals(any, matcher.matchesAny(sequence), text + " " + motifs);
+        }
+    }
+
+    @Test
+    void ignoresDuplicateMotifs() {
+        MotifMatcher matcher = new MotifMatcher(List.of("AK", "MM", "AK"));
+        assertEquals(List.of("AK", "MM"), matcher.getMotifs());
+    }
+
+    @Test
+    void rejectsInvalidMotifs() {
+        assertThrows(IllegalArgumentException.class, () -> new MotifMatcher(List.of("")));
+        assertThrows(IllegalArgumentException.class, () -> new MotifMatcher(List.of("AKB")));
+    }
+
+    private static List<String> sorted(List<String> matches) {
+        List<String> copy = new ArrayList<>(matches);
+        copy.sort(null);
+        return copy;
+    }
+
+    private static String randomString(int length, SplitMixRandom random, int alphabet) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(RESIDUES.charAt(random.nextInt(alphabet)));
+        }
+        return builder.toString();
+    }
+}
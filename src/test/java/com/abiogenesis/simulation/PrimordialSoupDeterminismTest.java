@@ -0,0 +1,63 @@
+package com.abiogenesis.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.abiogenesis.model.AminoAcidMolecule;
+import com.abiogenesis.model.Molecule;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A seed must give the same soup whatever the number of worker threads.
+ */
+class PrimordialSoupDeterminismTest {
+    private static final long SEED = 4;
+    private static final int STEPS = 1500;
+
+    @Test
+    void steppedRunIsIndependentOfThreadCount() {
+        assertEquals(run(1, PrimordialSoup.Kinetics.STEPPED), run(4, PrimordialSoup.Kinetics.STEPPED));
+    }
+
+    @Test
+    void tauLeapingRunIsIndependentOfThreadCount() {
+        assertEquals(run(1, PrimordialSoup.Kinetics.TAU_LEAPING), run(4, PrimordialSoup.Kinetics.TAU_LEAPING));
+    }
+
+    @Test
+    void equalSeedsGiveEqualRuns() {
+        assertEquals(run(3, PrimordialSoup.Kinetics.STEPPED), run(3, PrimordialSoup.Kinetics.STEPPED));
+    }
+
+    private static List<String> run(int threads, PrimordialSoup.Kinetics kinetics) {
+        try (PrimordialSoup soup = new PrimordialSoup(800, 600, 300.0, 7.0, SEED)) {
+            soup.setParallelism(threads);
+            soup.setKinetics(kinetics);
+            soup.setMaxAminoAcids(200);
+            soup.setMotifs(List.of("AK", "MM"));
+            while (soup.getStepCount() < STEPS) {
+                soup.simulateStep();
+            }
+            List<String> state = describe(soup);
+            state.add("reactions " + soup.getTotalReactions());
+            return state;
+        }
+    }
+
+    /**
+     * Lists every molecule with its exact position and energy, in slot order.
+     * @param soup The soup.
+     * @return One line per molecule.
+     */
+    static List<String> describe(PrimordialSoup soup) {
+        List<String> lines = new ArrayList<>();
+        for (Molecule molecule : soup.getMolecules()) {
+            String identity = molecule instanceof AminoAcidMolecule
+                ? ((AminoAcidMolecule) molecule).getSequence() : molecule.getName();
+            lines.add(identity + " " + molecule.getPosition().getX() + " " + molecule.getPosition().getY() + " "
+                + molecule.getEnergy());
+        }
+        return lines;
+    }
+}
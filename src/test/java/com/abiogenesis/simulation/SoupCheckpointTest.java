@@ -0,0 +1,132 @@
+package com.abiogenesis.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * A restored soup must continue exactly as the original would have.
+ */
+class SoupCheckpointTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void restoredSoupContinuesIdentically() throws IOException {
+        try (PrimordialSoup original = newSoup(PrimordialSoup.Kinetics.STEPPED)) {
+            assertRoundTrip(original);
+        }
+    }
+
+    @Test
+    void restoresKineticsLineageAndEnvironment() throws IOException {
+        try (PrimordialSoup original = newSoup(PrimordialSoup.Kinetics.TAU_LEAPING)) {
+            original.setLineageTracking(true);
+            original.setEnvironment(new EnvironmentField(4, 3, original.getTemperature(), original.getPH(), 1.0));
+            original.setWetness(0.5);
+            assertRoundTrip(original);
+        }
+    }
+
+    @Test
+    void rejectsTruncatedFiles() throws IOException {
+        Path file = directory.resolve("soup.ckpt");
+        try (PrimordialSoup soup = newSoup(PrimordialSoup.Kinetics.STEPPED)) {
+            soup.advance(50);
+            SoupCheckpoint.save(soup, file);
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 4));
+        assertThrows(IOException.class, () -> SoupCheckpoint.load(file));
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> SoupCheckpoint.load(file));
+    }
+
+    @Test
+    void rejectsRepeatedSlotsInGridOrder() throws IOException {
+        Path file = directory.resolve("soup.ckpt");
+        int n = saveSteppedSoup(file);
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        // The grid order comes just before the pending scan count, the lineage and environment flags and the magic
+        int order = bytes.limit() - 16 - 4 * n;
+        bytes.putInt(order + 4, bytes.getInt(order));
+        Files.write(file, bytes.array());
+        assertThrows(IOException.class, () -> SoupCheckpoint.load(file));
+    }
+
+    @Test
+    void rejectsPendingScansOfMissingChains() throws IOException {
+        Path file = directory.resolve("soup.ckpt");
+        int n = saveSteppedSoup(file);
+        byte[] original = Files.readAllBytes(file);
+        // No scans are pending after a step; claim one, of the slot just past the last
+        ByteBuffer bytes = ByteBuffer.allocate(original.length + 4).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.put(original, 0, original.length - 16);
+        bytes.putInt(1);
+        bytes.putInt(n);
+        bytes.put(original, original.length - 12, 12);
+        Files.write(file, bytes.array());
+        assertThrows(IOException.class, () -> SoupCheckpoint.load(file));
+    }
+
+    /**
+     * Saves a soup, without lineage or environment, at the end of a step.
+     * @param file The checkpoint file.
+     * @return The number of molecules saved.
+     * @throws IOException If the checkpoint cannot be written.
+     */
+    private static int saveSteppedSoup(Path file) throws IOException {
+        try (PrimordialSoup soup = newSoup(PrimordialSoup.Kinetics.STEPPED)) {
+            soup.advance(50);
+            SoupCheckpoint.save(soup, file);
+            return soup.getMolecules().size();
+        }
+    }
+
+    private static PrimordialSoup newSoup(PrimordialSoup.Kinetics kinetics) {
+        PrimordialSoup soup = new PrimordialSoup(800, 600, 300.0, 7.0, 7);
+        soup.setParallelism(2);
+        soup.setKinetics(kinetics);
+        soup.setMaxAminoAcids(150);
+        soup.setMotifs(List.of("AK", "MM"));
+        return soup;
+    }
+
+    private void assertRoundTrip(PrimordialSoup original) throws IOException {
+        original.advance(500);
+        Path first = directory.resolve("first.ckpt");
+        SoupCheckpoint.save(original, first);
+        try (PrimordialSoup restored = SoupCheckpoint.load(first)) {
+            restored.setParallelism(2);
+            assertEquals(PrimordialSoupDeterminismTest.describe(original),
+                PrimordialSoupDeterminismTest.describe(restored));
+            Path second = directory.resolve("second.ckpt");
+            SoupCheckpoint.save(restored, second);
+            assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+
+            original.advance(1000);
+            restored.advance(1000);
+            assertEquals(PrimordialSoupDeterminismTest.describe(original),
+                PrimordialSoupDeterminismTest.describe(restored));
+            assertEquals(original.getTotalReactions(), restored.getTotalReactions());
+            MotifTracker expected = original.getMotifTracker();
+            MotifTracker actual = restored.getMotifTracker();
+            for (int i = 0; i < expected.getMatcher().getMotifCount(); i++) {
+                assertEquals(expected.getFirstSeenStep(i), actual.getFirstSeenStep(i));
+            }
+            SoupCheckpoint.save(original, first);
+            SoupCheckpoint.save(restored, second);
+            assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+        }
+    }
+}